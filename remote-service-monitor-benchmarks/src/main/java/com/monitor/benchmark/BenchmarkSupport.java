@@ -0,0 +1,77 @@
+package com.monitor.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+
+import com.monitor.model.Client;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.Service;
+
+/**
+ * Shared fixtures of the benchmarks.
+ * @author akshayhiremath
+ *
+ */
+final class BenchmarkSupport {
+
+	private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	});
+
+	private static PrintStream out;
+	private static PrintStream err;
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * The monitor logs every check and notification to the console,
+	 * which would dominate the measured cost.
+	 */
+	static synchronized void silenceConsole() {
+		if(out == null) {
+			out = System.out;
+			err = System.err;
+			System.setOut(DISCARD);
+			System.setErr(DISCARD);
+		}
+	}
+
+	static synchronized void restoreConsole() {
+		if(out != null) {
+			System.setOut(out);
+			System.setErr(err);
+			out = null;
+			err = null;
+		}
+	}
+
+	/**
+	 * Outage window which is over, clients with this window are always notified
+	 */
+	static OutageWindow pastOutageWindow() {
+		return new OutageWindow(LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,14,10,00,00));
+	}
+
+	/**
+	 * Client counting its notifications instead of printing them
+	 */
+	static class CountingClient extends Client {
+		long notifications;
+
+		CountingClient(Service service, int pollingInterval) {
+			super(service, pollingInterval, pastOutageWindow());
+		}
+
+		@Override
+		public void update() {
+			notifications++;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.monitor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.monitor.core.NotificationDispatcher;
+import com.monitor.core.OverflowPolicy;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+/**
+ * Fan-out cost of a DOWN notification of a service to many clients,
+ * as seen by the probing thread.
+ * @author akshayhiremath
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationBenchmark {
+
+	@Param({"10", "1000", "10000"})
+	public int clients;
+
+	/**
+	 * Whether the clients are called on the probing thread or handed to the NotificationDispatcher
+	 */
+	@Param({"false", "true"})
+	public boolean dispatched;
+
+	private Service service;
+	private NotificationDispatcher dispatcher;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		service = new Service("127.0.0.1", 8080);
+		if(dispatched) {
+			dispatcher = new NotificationDispatcher(2, 64, OverflowPolicy.COALESCE);
+			service.setNotifier(dispatcher);
+		}
+		for(int i = 0; i < clients; i++) {
+			service.registerClient(new BenchmarkSupport.CountingClient(service, 1000 + i));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if(dispatcher != null) {
+			dispatcher.shutdown();
+		}
+	}
+
+	/**
+	 * Alternates the service between UP and DOWN, every invocation is a transition
+	 * notified to all the clients
+	 */
+	@Benchmark
+	public Service notifyAllClients() {
+		service.transitionTo(service.getState() == ServiceState.DOWN ? ServiceState.UP : ServiceState.DOWN);
+		return service;
+	}
+}
@@ -0,0 +1,85 @@
+package com.monitor.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.monitor.core.ConnectAndCheck;
+import com.monitor.core.ServiceMonitorConfig;
+import com.monitor.model.Service;
+
+/**
+ * Throughput of ConnectAndCheck against loopback ServerSocket stand-ins,
+ * one which accepts and one closed port which refuses.
+ * @author akshayhiremath
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProbeBenchmark {
+
+	private ServerSocket server;
+	private ConnectAndCheck up;
+	private ConnectAndCheck refused;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BenchmarkSupport.silenceConsole();
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		server = new ServerSocket(0, 4096, loopback);
+		Thread acceptor = new Thread(() -> {
+			while(!server.isClosed()) {
+				try (Socket socket = server.accept()) {
+					//Connection accepted, nothing to serve
+				} catch (IOException e) {
+					//Server closed
+				}
+			}
+		}, "benchmark-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		int closedPort;
+		try (ServerSocket closed = new ServerSocket(0, 1, loopback)) {
+			closedPort = closed.getLocalPort();
+		}
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		up = new ConnectAndCheck(new Service(loopback.getHostAddress(), server.getLocalPort()), config);
+		refused = new ConnectAndCheck(new Service(loopback.getHostAddress(), closedPort), config);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		server.close();
+		BenchmarkSupport.restoreConsole();
+	}
+
+	@Benchmark
+	public long checkUpService() {
+		return up.check();
+	}
+
+	@Benchmark
+	public long checkRefusingService() {
+		return refused.check();
+	}
+}
@@ -0,0 +1,70 @@
+package com.monitor.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.monitor.Exception.MonitorServiceException;
+import com.monitor.configuration.MonitorServiceBuilder;
+import com.monitor.core.ServiceRegistry;
+import com.monitor.interfaces.HostResolver;
+import com.monitor.model.Client;
+import com.monitor.model.Service;
+import com.monitor.service.MonitorServiceImpl;
+
+/**
+ * Cost of registerInterestInExistingService as the service register grows.
+ * The services are spread over many hosts on the same port, as in a fleet of *:443 endpoints.
+ * @author akshayhiremath
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryBenchmark {
+
+	@Param({"100", "1000", "10000"})
+	public int registerSize;
+
+	private MonitorServiceImpl monitorService;
+	private Service[] lookups;
+
+	/**
+	 * Rebuilt every iteration, each invocation registers one more client
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		BenchmarkSupport.silenceConsole();
+		ServiceRegistry register = new ServiceRegistry();
+		lookups = new Service[registerSize];
+		for(int i = 0; i < registerSize; i++) {
+			String host = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+			register.add(new Service(host, 443));
+			lookups[i] = new Service(host, 443);
+		}
+		monitorService = MonitorServiceBuilder.create().serviceRegister(register).hostResolver(HostResolver.SYSTEM).build();
+	}
+
+	@Benchmark
+	public Client registerInterest() throws MonitorServiceException {
+		Service lookup = lookups[ThreadLocalRandom.current().nextInt(lookups.length)];
+		Client client = new Client(lookup, 5000, BenchmarkSupport.pastOutageWindow());
+		monitorService.registerInterestInExistingService(lookup, client);
+		return client;
+	}
+}
@@ -0,0 +1,69 @@
+package com.monitor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.monitor.Exception.InputValidationException;
+import com.monitor.model.Service;
+import com.monitor.util.InputValidator;
+import com.monitor.util.ResolverCache;
+
+/**
+ * Cost of InputValidator.validateInput for a service with pre-registered clients,
+ * with an IP literal and with a host name to resolve.
+ * @author akshayhiremath
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+	@Param({"127.0.0.1", "localhost"})
+	public String host;
+
+	@Param({"1", "100"})
+	public int clients;
+
+	/**
+	 * Whether the host is resolved through the ResolverCache or the system resolver
+	 */
+	@Param({"false", "true"})
+	public boolean cachedResolver;
+
+	private InputValidator inputValidator;
+	private Service service;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		inputValidator = new InputValidator();
+		if(cachedResolver) {
+			inputValidator.setHostResolver(new ResolverCache());
+		}
+		service = new Service(host, 8080);
+		for(int i = 0; i < clients; i++) {
+			service.registerClient(new BenchmarkSupport.CountingClient(service, 1000 + i));
+		}
+	}
+
+	@Benchmark
+	public Service validateInput() throws InputValidationException {
+		inputValidator.validateInput(service);
+		return service;
+	}
+}
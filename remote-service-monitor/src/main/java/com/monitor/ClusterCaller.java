@@ -0,0 +1,45 @@
+package com.monitor;
+
+import java.util.Arrays;
+
+import com.monitor.Exception.MonitorServiceException;
+import com.monitor.cluster.ClusterNode;
+import com.monitor.configuration.MonitorServiceBuilder;
+
+/**
+ * An example node of a monitor cluster, several of them partition the default services.
+ * Run one JVM per node, e.g. on loopback:
+ * java com.monitor.ClusterCaller 127.0.0.1:7701
+ * java com.monitor.ClusterCaller 127.0.0.1:7702 127.0.0.1:7701
+ * @author akshayhiremath
+ *
+ */
+public class ClusterCaller {
+
+	/**
+	 * @param args host:port of the membership endpoint of this node followed by host:port of the seeds
+	 */
+	public static void main(String[] args) {
+		if(args.length == 0) {
+			System.err.println("Usage: ClusterCaller host:port [seed host:port ...]");
+			return;
+		}
+		int separator = args[0].lastIndexOf(':');
+		ClusterNode node = new ClusterNode(args[0].substring(0, separator), Integer.parseInt(args[0].substring(separator + 1)),
+				Arrays.asList(args).subList(1, args.length), MonitorServiceBuilder.create().withDefaultServices().build());
+		try {
+			node.start();
+			//Leave the cluster and hand the services over on Ctrl+C
+			Runtime.getRuntime().addShutdownHook(new Thread(node::leave));
+			while(true) {
+				Thread.sleep(10000);
+				System.out.println("Node "+node.getNodeId()+" of "+node.knownMembers()+" monitors "
+						+node.getMonitoredServices().size()+" of "+node.getInventorySize()+" services.");
+			}
+		} catch (MonitorServiceException e) {
+			System.err.println(e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -3,11 +3,14 @@ package com.monitor;
 
 import static com.monitor.user.util.MonitorServiceUserUtil.prepareServiceWithPreRegisteredClient;
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 import com.monitor.Exception.MonitorServiceException;
 import com.monitor.configuration.MonitorConfiguration;
+import com.monitor.configuration.MonitorServiceBuilder;
 import com.monitor.interfaces.MonitorService;
 import com.monitor.model.Client;
 import com.monitor.model.OutageWindow;
@@ -20,11 +23,21 @@ import com.monitor.model.Service;
  */
 public class MainCaller {
 
+	/**
+	 * @param args --no-spring bootstraps the MonitorService without a Spring context
+	 */
 	public static void main(String[] args) {
 		
-		ApplicationContext ctx = 
-		         new AnnotationConfigApplicationContext(MonitorConfiguration.class);
-		MonitorService ms = (MonitorService)ctx.getBean("monitorService");
+		long bootstrapStart = System.nanoTime();
+		ApplicationContext ctx = null;
+		MonitorService ms;
+		if(args.length > 0 && "--no-spring".equals(args[0])) {
+			ms = MonitorServiceBuilder.create().withDefaultServices().build();
+		}else {
+			ctx = new AnnotationConfigApplicationContext(MonitorConfiguration.class);
+			ms = (MonitorService)ctx.getBean("monitorService");
+		}
+		System.out.println("MonitorService bootstrapped in "+TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bootstrapStart)+" ms.");
 		
 		try {
 				//1. Start the service with initial configuration in MonitorConfiguration class
@@ -54,7 +67,9 @@ public class MainCaller {
 				//5. Stop the MonitorService gracefully
 				ms.stopServiceMonitoring();
 			
-				((AnnotationConfigApplicationContext)ctx).close();
+				if(ctx != null) {
+					((AnnotationConfigApplicationContext)ctx).close();
+				}
 		} catch (MonitorServiceException e) {
 			System.err.println(e.getMessage()+"\n"+e.getCause());
 			e.printStackTrace();
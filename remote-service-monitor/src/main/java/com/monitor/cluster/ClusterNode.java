@@ -0,0 +1,676 @@
+package com.monitor.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.monitor.Exception.MonitorServiceException;
+import com.monitor.core.MonitorThreadFactory;
+import com.monitor.core.RegistrySnapshot;
+import com.monitor.core.ServiceRegistry;
+import com.monitor.model.BulkRegistrationResult;
+import com.monitor.model.Service;
+import com.monitor.service.MonitorServiceImpl;
+
+/**
+ * Node of a cluster of monitors partitioning the services by consistent hashing of host:port.
+ * Every node knows the inventory of the whole cluster and monitors, with its local
+ * MonitorServiceImpl, only the services it owns on the ConsistentHashRing of the members.
+ *
+ * Membership runs over plain TCP, one connection per message:
+ * a node joins through a seed which answers with the members and the inventory,
+ * members ping each other every heartbeat interval and a member missing failureThreshold
+ * heartbeats in a row is removed. On every change of the members each node rebalances:
+ * services it doesn't own anymore are stopped and handed over to their new owner with their
+ * clients and last known state, services it now owns are started from the inventory and
+ * replaced by the handed over service when it arrives. Services of a node which failed
+ * without leaving are started from the inventory, their last state is lost.
+ *
+ * The local MonitorServiceImpl must not be started, the node takes the services of its
+ * register as its contribution to the inventory. The services to start are chosen while
+ * holding the node monitor, they are validated and started after releasing it, so a slow
+ * name service never holds up the membership messages. Clients are handed over as Client,
+ * listeners of a subclass are only notified while the service stays on the node it was added to.
+ * @author akshayhiremath
+ *
+ */
+public class ClusterNode {
+
+	static final byte JOIN = 1;
+	static final byte MEMBERS = 2;
+	static final byte LEAVE = 3;
+	static final byte PING = 4;
+	static final byte ADD = 5;
+	static final byte HANDOVER = 6;
+	private static final byte ACK = 0;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final String host;
+	private final int port;
+	private final List<String> seeds;
+	private final MonitorServiceImpl monitorService;
+
+	/**
+	 * Services of the whole cluster, descriptors which are never monitored themselves
+	 */
+	private final ServiceRegistry inventory = new ServiceRegistry();
+	private final Set<String> members = new TreeSet<>();
+	private final Map<String, Integer> missedHeartbeats = new HashMap<>();
+	private ConsistentHashRing ring;
+	private String nodeId;
+
+	private int virtualNodes = 64;
+	private long heartbeatInterval = 1000;
+	private int failureThreshold = 3;
+	private int timeout = 1000;
+
+	private ServerSocket server;
+	private ExecutorService handlers;
+	private ScheduledExecutorService heartbeats;
+	private volatile boolean running;
+
+	/**
+	 * Creates a node, the services in the register of the monitor service are
+	 * added to the inventory of the cluster when the node starts
+	 * @param host address of the membership endpoint of the node, reachable by the other nodes
+	 * @param port port of the membership endpoint, 0 for any free port
+	 * @param seeds host:port of nodes to join through, the node starts a new cluster if none answers
+	 * @param monitorService local monitor service, not started
+	 */
+	public ClusterNode(String host, int port, Collection<String> seeds, MonitorServiceImpl monitorService) {
+		this.host = host;
+		this.port = port;
+		this.seeds = new ArrayList<>(seeds);
+		this.monitorService = monitorService;
+	}
+
+	public void setVirtualNodes(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+	public void setHeartbeatInterval(long heartbeatInterval) {
+		this.heartbeatInterval = heartbeatInterval;
+	}
+	/**
+	 * @param failureThreshold heartbeats a member may miss in a row before it is removed
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+	/**
+	 * @param timeout connect and read timeout of the messages in milliseconds
+	 */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Starts the membership endpoint, joins the cluster through the seeds and
+	 * starts monitoring the services owned by this node
+	 * @throws MonitorServiceException if the membership endpoint cannot be opened
+	 */
+	public void start() throws MonitorServiceException {
+		try {
+			server = new ServerSocket();
+			server.bind(new InetSocketAddress(host, port));
+		} catch (IOException e) {
+			throw new MonitorServiceException("Unable to open cluster endpoint "+host+":"+port+" Error details: "+e.getMessage());
+		}
+		List<Service> contributed = new ArrayList<>();
+		List<String> others;
+		synchronized (this) {
+			nodeId = host+":"+server.getLocalPort();
+			contributed.addAll(localServices());
+			contributed.forEach(s -> monitorService.getServiceMonitorConfig().getServiceRegister().remove(s));
+			copyOf(contributed).forEach(inventory::add);
+			members.add(nodeId);
+			ring = new ConsistentHashRing(members, virtualNodes);
+			running = true;
+		}
+		handlers = Executors.newCachedThreadPool(new MonitorThreadFactory("cluster-handler", true));
+		Thread acceptor = new MonitorThreadFactory("cluster-acceptor", true).newThread(this::accept);
+		acceptor.start();
+		join();
+		synchronized (this) {
+			others = otherMembers();
+		}
+		//Everybody learns about the new member and its services
+		for(String member : others) {
+			sendQuietly(member, MEMBERS, out -> writeMembers(out, knownMembers()));
+			if(!contributed.isEmpty()) {
+				sendQuietly(member, ADD, out -> RegistrySnapshot.writeTo(contributed, out));
+			}
+		}
+		//The contributed services themselves are monitored, keeping their clients
+		startOwned(contributed);
+		rebalance();
+		heartbeats = Executors.newSingleThreadScheduledExecutor(new MonitorThreadFactory("cluster-heartbeat", true));
+		heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+		System.out.println("Cluster node "+nodeId+" started with "+knownMembers().size()+" members.");
+	}
+
+	/**
+	 * Joins the cluster through the first seed answering, takes over its members and inventory
+	 */
+	private void join() {
+		for(String seed : seeds) {
+			if(seed.equals(nodeId)) {
+				continue;
+			}
+			try {
+				send(seed, JOIN, out -> out.writeUTF(nodeId), in -> {
+					List<String> seedMembers = readMembers(in);
+					List<Service> services = RegistrySnapshot.readFrom(in);
+					synchronized (this) {
+						members.addAll(seedMembers);
+						ring = new ConsistentHashRing(members, virtualNodes);
+						for(Service s : services) {
+							inventory.remove(s);
+							inventory.add(s);
+						}
+					}
+					return null;
+				});
+				return;
+			} catch (IOException e) {
+				System.err.println("Cluster seed "+seed+" not reachable: "+e.getMessage());
+			}
+		}
+		System.out.println("No cluster seed reachable, "+nodeId+" starts a new cluster.");
+	}
+
+	/**
+	 * Adds a service to the inventory of the cluster, it is monitored by its owner
+	 * @param service service with pre-registered clients
+	 * @throws MonitorServiceException if this node owns the service and cannot monitor it
+	 */
+	public void addService(Service service) throws MonitorServiceException {
+		List<String> others;
+		synchronized (this) {
+			inventory.remove(service);
+			copyOf(Collections.singletonList(service)).forEach(inventory::add);
+			others = otherMembers();
+		}
+		List<Service> added = Collections.singletonList(service);
+		for(String member : others) {
+			sendQuietly(member, ADD, out -> RegistrySnapshot.writeTo(added, out));
+		}
+		boolean owned;
+		synchronized (this) {
+			owned = isOwner(service) && monitorService.getServiceMonitorConfig().getServiceRegister().get(service) == null;
+		}
+		if(owned) {
+			monitorService.addAndMonitorNewService(service);
+		}
+	}
+
+	/**
+	 * Leaves the cluster: the monitored services are stopped and handed over with their
+	 * last state to their owners among the remaining members, then the members are told
+	 */
+	public void leave() {
+		Map<String, List<Service>> handovers = new LinkedHashMap<>();
+		List<String> others;
+		synchronized (this) {
+			running = false;
+			others = otherMembers();
+			ConsistentHashRing remaining = new ConsistentHashRing(others, virtualNodes);
+			for(Service s : localServices()) {
+				Service stopped = monitorService.stopMonitoringService(s);
+				if(stopped != null && remaining.ownerOf(stopped) != null) {
+					handovers.computeIfAbsent(remaining.ownerOf(stopped), k -> new ArrayList<>()).add(stopped);
+				}
+			}
+		}
+		//Handed over first, the new owners start them with their state once they learn about the leave
+		sendHandovers(handovers);
+		for(String member : others) {
+			sendQuietly(member, LEAVE, out -> out.writeUTF(nodeId));
+		}
+		close();
+		monitorService.stopServiceMonitoring();
+		System.out.println("Cluster node "+nodeId+" left the cluster.");
+	}
+
+	/**
+	 * Stops the node without telling the members, as a crash would
+	 */
+	void halt() {
+		running = false;
+		close();
+		monitorService.stopServiceMonitoring();
+	}
+
+	private void close() {
+		if(heartbeats != null) {
+			heartbeats.shutdownNow();
+		}
+		try {
+			server.close();
+		} catch (IOException e) {
+			System.err.println("Failed to close cluster endpoint "+nodeId+" Error details: "+e.getMessage());
+		}
+		if(handlers != null) {
+			handlers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops the services this node doesn't own anymore and hands them over to their owners,
+	 * starts the services it owns and doesn't monitor yet from the inventory
+	 */
+	private void rebalance() {
+		Map<String, List<Service>> handovers = new LinkedHashMap<>();
+		List<Service> owned = new ArrayList<>();
+		synchronized (this) {
+			if(!running) {
+				return;
+			}
+			for(Service s : localServices()) {
+				String owner = ring.ownerOf(s);
+				if(!nodeId.equals(owner)) {
+					Service stopped = monitorService.stopMonitoringService(s);
+					if(stopped != null) {
+						handovers.computeIfAbsent(owner, k -> new ArrayList<>()).add(stopped);
+					}
+				}
+			}
+			ServiceRegistry local = monitorService.getServiceMonitorConfig().getServiceRegister();
+			for(Service s : inventory) {
+				if(isOwner(s) && local.get(s) == null) {
+					owned.add(s);
+				}
+			}
+		}
+		sendHandovers(handovers);
+		//Copies, the inventory itself is never monitored
+		startOwned(copyOf(owned));
+	}
+
+	/**
+	 * Starts monitoring the services owned by this node and not monitored yet,
+	 * e.g. a service handed over before this node started it from the inventory.
+	 * Must be called without holding the node monitor: the owned services are chosen under it,
+	 * validated and started outside it. A service whose owner changed meanwhile is handed
+	 * over by a rebalance.
+	 * @param services services to monitor if owned
+	 */
+	private void startOwned(List<Service> services) {
+		ServiceRegistry local = monitorService.getServiceMonitorConfig().getServiceRegister();
+		List<Service> owned = new ArrayList<>();
+		synchronized (this) {
+			for(Service s : services) {
+				if(isOwner(s) && local.get(s) == null) {
+					owned.add(s);
+				}
+			}
+		}
+		if(owned.isEmpty()) {
+			return;
+		}
+		BulkRegistrationResult<Service> started;
+		try {
+			started = monitorService.addAndMonitorNewServices(owned);
+		} catch (MonitorServiceException e) {
+			System.err.println("Cluster node "+nodeId+" cannot monitor its services: "+e.getMessage());
+			return;
+		}
+		started.getFailures().forEach((s, failure) -> {
+			//Not a failure if started meanwhile by another message
+			if(local.get(s) == null) {
+				System.err.println("Cluster node "+nodeId+" cannot monitor "+s+": "+failure);
+			}
+		});
+		boolean moved = false;
+		synchronized (this) {
+			for(Service s : started.getRegistered()) {
+				moved |= !isOwner(s);
+			}
+		}
+		if(moved) {
+			rebalance();
+		}
+	}
+
+	private void sendHandovers(Map<String, List<Service>> handovers) {
+		handovers.forEach((owner, services) -> {
+			sendQuietly(owner, HANDOVER, out -> RegistrySnapshot.writeTo(services, out));
+			System.out.println("Cluster node "+nodeId+" handed "+services.size()+" services over to "+owner+".");
+		});
+	}
+
+	/**
+	 * Pings every other member, removes the members missing too many heartbeats
+	 */
+	private void heartbeat() {
+		List<String> others;
+		synchronized (this) {
+			others = otherMembers();
+		}
+		List<String> failed = new ArrayList<>();
+		for(String member : others) {
+			try {
+				send(member, PING, out -> out.writeUTF(nodeId), this::readAck);
+				synchronized (this) {
+					missedHeartbeats.remove(member);
+				}
+			} catch (IOException e) {
+				synchronized (this) {
+					int missed = missedHeartbeats.merge(member, 1, Integer::sum);
+					if(missed >= failureThreshold) {
+						failed.add(member);
+					}
+				}
+			}
+		}
+		if(failed.isEmpty()) {
+			return;
+		}
+		List<String> remaining;
+		synchronized (this) {
+			failed.forEach(m -> {
+				members.remove(m);
+				missedHeartbeats.remove(m);
+			});
+			ring = new ConsistentHashRing(members, virtualNodes);
+			remaining = otherMembers();
+		}
+		System.err.println("Cluster node "+nodeId+" removed failed members "+failed+".");
+		rebalance();
+		for(String member : remaining) {
+			for(String dead : failed) {
+				sendQuietly(member, LEAVE, out -> out.writeUTF(dead));
+			}
+		}
+	}
+
+	private void accept() {
+		while(running) {
+			try {
+				Socket socket = server.accept();
+				handlers.execute(() -> handle(socket));
+			} catch (SocketException e) {
+				//Endpoint closed
+				return;
+			} catch (IOException e) {
+				System.err.println("Cluster node "+nodeId+" failed to accept a connection: "+e.getMessage());
+			} catch (RuntimeException e) {
+				//Handler pool shut down
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Handles a message, the sender gets the answer before the message is applied
+	 */
+	private void handle(Socket socket) {
+		try (Socket s = socket) {
+			s.setSoTimeout(timeout);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), BUFFER_SIZE));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), BUFFER_SIZE));
+			byte type = in.readByte();
+			switch(type) {
+			case JOIN:
+				String joining = in.readUTF();
+				List<Service> snapshot;
+				synchronized (this) {
+					addMember(joining);
+					snapshot = new ArrayList<>();
+					inventory.forEach(snapshot::add);
+				}
+				writeMembers(out, knownMembers());
+				RegistrySnapshot.writeTo(snapshot, out);
+				out.flush();
+				rebalance();
+				break;
+			case MEMBERS:
+				List<String> announced = readMembers(in);
+				ack(out);
+				boolean changed = false;
+				synchronized (this) {
+					for(String member : announced) {
+						changed |= addMember(member);
+					}
+				}
+				if(changed) {
+					rebalance();
+				}
+				break;
+			case LEAVE:
+				String leaving = in.readUTF();
+				ack(out);
+				boolean removed;
+				synchronized (this) {
+					removed = !leaving.equals(nodeId) && members.remove(leaving);
+					if(removed) {
+						ring = new ConsistentHashRing(members, virtualNodes);
+					}
+				}
+				if(removed) {
+					rebalance();
+				}
+				break;
+			case PING:
+				String sender = in.readUTF();
+				ack(out);
+				boolean unknown;
+				synchronized (this) {
+					unknown = addMember(sender);
+				}
+				if(unknown) {
+					rebalance();
+				}
+				break;
+			case ADD:
+				List<Service> added = RegistrySnapshot.readFrom(in);
+				ack(out);
+				List<Service> fresh = new ArrayList<>();
+				synchronized (this) {
+					for(Service service : added) {
+						if(inventory.get(service) == null) {
+							inventory.add(service);
+							fresh.add(service);
+						}
+					}
+				}
+				startOwned(copyOf(fresh));
+				break;
+			case HANDOVER:
+				List<Service> handed = RegistrySnapshot.readFrom(in);
+				ack(out);
+				takeOver(handed);
+				break;
+			default:
+				System.err.println("Cluster node "+nodeId+" received unknown message "+type);
+			}
+		} catch (IOException e) {
+			System.err.println("Cluster node "+nodeId+" failed to handle a message: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Monitors the services handed over with their last state, replacing the
+	 * services started from the inventory
+	 * @param handed services handed over by their previous owner
+	 */
+	private void takeOver(List<Service> handed) {
+		List<Service> owned = new ArrayList<>();
+		synchronized (this) {
+			for(Service s : copyOf(handed)) {
+				inventory.remove(s);
+				inventory.add(s);
+			}
+			for(Service s : handed) {
+				if(isOwner(s)) {
+					monitorService.stopMonitoringService(s);
+					owned.add(s);
+				}
+			}
+		}
+		startOwned(owned);
+		//A rebalance may have started the inventory copy meanwhile, it continues from the handed over state
+		ServiceRegistry local = monitorService.getServiceMonitorConfig().getServiceRegister();
+		for(Service s : owned) {
+			Service running = local.get(s);
+			if(running != null && running != s) {
+				running.restore(s.getState(), s.getStateVersion(),
+						Math.max(running.getLastClientIdTracker(), s.getLastClientIdTracker()));
+			}
+		}
+	}
+
+	/**
+	 * Adds a member and rebuilds the ring
+	 * @return true if the member was not known
+	 */
+	private boolean addMember(String member) {
+		missedHeartbeats.remove(member);
+		if(!running || !members.add(member)) {
+			return false;
+		}
+		ring = new ConsistentHashRing(members, virtualNodes);
+		return true;
+	}
+
+	private boolean isOwner(Service s) {
+		return nodeId.equals(ring.ownerOf(s));
+	}
+
+	private List<String> otherMembers() {
+		List<String> others = new ArrayList<>(members);
+		others.remove(nodeId);
+		return others;
+	}
+
+	/**
+	 * @return copy of the services monitored by this node
+	 */
+	private List<Service> localServices() {
+		List<Service> local = new ArrayList<>();
+		monitorService.getServiceMonitorConfig().getServiceRegister().forEach(local::add);
+		return local;
+	}
+
+	/**
+	 * @return id of the node, host:port of its membership endpoint
+	 */
+	public synchronized String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * @return ids of the members known to this node, including itself
+	 */
+	public synchronized Set<String> knownMembers() {
+		return new TreeSet<>(members);
+	}
+
+	/**
+	 * @return services of the whole cluster known to this node
+	 */
+	public synchronized int getInventorySize() {
+		return inventory.size();
+	}
+
+	/**
+	 * @return services monitored by this node
+	 */
+	public ServiceRegistry getMonitoredServices() {
+		return monitorService.getServiceMonitorConfig().getServiceRegister();
+	}
+
+	/**
+	 * Copies the services through a snapshot, the copies are not monitored
+	 */
+	private static List<Service> copyOf(List<Service> services) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			RegistrySnapshot.writeTo(services, new DataOutputStream(bytes));
+			return RegistrySnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to copy services", e);
+		}
+	}
+
+	private static void writeMembers(DataOutputStream out, Collection<String> members) throws IOException {
+		out.writeInt(members.size());
+		for(String member : members) {
+			out.writeUTF(member);
+		}
+	}
+
+	private static List<String> readMembers(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> members = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			members.add(in.readUTF());
+		}
+		return members;
+	}
+
+	private static void ack(DataOutputStream out) throws IOException {
+		out.writeByte(ACK);
+		out.flush();
+	}
+
+	private Void readAck(DataInputStream in) throws IOException {
+		if(in.readByte() != ACK) {
+			throw new IOException("Unexpected answer");
+		}
+		return null;
+	}
+
+	private void sendQuietly(String member, byte type, Payload payload) {
+		try {
+			send(member, type, payload, this::readAck);
+		} catch (IOException e) {
+			System.err.println("Cluster node "+nodeId+" failed to send message "+type+" to "+member+": "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Sends a message to a member on a new connection and reads its answer
+	 */
+	private <T> T send(String member, byte type, Payload payload, Answer<T> answer) throws IOException {
+		int separator = member.lastIndexOf(':');
+		InetSocketAddress address = new InetSocketAddress(member.substring(0, separator), Integer.parseInt(member.substring(separator + 1)));
+		try (Socket socket = new Socket()) {
+			socket.connect(address, timeout);
+			socket.setSoTimeout(timeout);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+			out.writeByte(type);
+			payload.write(out);
+			out.flush();
+			return answer.read(new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE)));
+		}
+	}
+
+	private interface Payload {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private interface Answer<T> {
+		T read(DataInputStream in) throws IOException;
+	}
+}
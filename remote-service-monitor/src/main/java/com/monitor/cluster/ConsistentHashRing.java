@@ -0,0 +1,120 @@
+package com.monitor.cluster;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.monitor.model.Service;
+
+/**
+ * Consistent hash ring assigning the services to the nodes of a cluster by host:port.
+ * Each node is placed on the ring at virtualNodes points, a service belongs to the node
+ * of the first point at or after the hash of its normalized key. A node joining or leaving
+ * only moves the services of its own arcs, about 1/n of the services of a cluster of n nodes.
+ * Instances are immutable, a change of the nodes builds a new ring.
+ * @author akshayhiremath
+ *
+ */
+public class ConsistentHashRing {
+
+	private final Set<String> nodes;
+	/**
+	 * Sorted hashes of the points on the ring
+	 */
+	private final long[] points;
+	/**
+	 * Node of each point
+	 */
+	private final String[] owners;
+
+	/**
+	 * Builds the ring of the nodes
+	 * @param nodes ids of the nodes, host:port of their membership endpoint
+	 * @param virtualNodes points of each node on the ring, more points spread the services more evenly
+	 */
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+		if(virtualNodes < 1) {
+			throw new IllegalArgumentException("Virtual nodes must be at least 1: "+virtualNodes);
+		}
+		this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+		Point[] ring = new Point[this.nodes.size() * virtualNodes];
+		int p = 0;
+		for(String node : this.nodes) {
+			for(int i = 0; i < virtualNodes; i++) {
+				ring[p++] = new Point(hash(node+"#"+i), node);
+			}
+		}
+		//Ties broken by node id, so every node builds the same ring
+		Arrays.sort(ring, (a, b) -> a.hash != b.hash ? Long.compare(a.hash, b.hash) : a.node.compareTo(b.node));
+		points = new long[ring.length];
+		owners = new String[ring.length];
+		for(int i = 0; i < ring.length; i++) {
+			points[i] = ring[i].hash;
+			owners[i] = ring[i].node;
+		}
+	}
+
+	/**
+	 * @return ids of the nodes on the ring
+	 */
+	public Set<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the node owning a service
+	 * @param key normalized key of the service, see Service.getKey()
+	 * @return id of the owning node, null if the ring has no nodes
+	 */
+	public String ownerOf(String key) {
+		if(points.length == 0) {
+			return null;
+		}
+		int i = Arrays.binarySearch(points, hash(key));
+		if(i < 0) {
+			i = -i - 1;
+		}
+		//Past the last point the ring wraps around to the first
+		return owners[i == points.length ? 0 : i];
+	}
+
+	/**
+	 * @param service service
+	 * @return id of the node owning the service, null if the ring has no nodes
+	 */
+	public String ownerOf(Service service) {
+		return ownerOf(service.getKey());
+	}
+
+	/**
+	 * 64 bit FNV-1a of the characters, finalized with the mix of MurmurHash3 so
+	 * that similar keys such as consecutive ports land far apart on the ring
+	 * @param value key or virtual node name
+	 * @return position on the ring
+	 */
+	static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < value.length(); i++) {
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static class Point {
+		final long hash;
+		final String node;
+
+		Point(long hash, String node) {
+			this.hash = hash;
+			this.node = node;
+		}
+	}
+}
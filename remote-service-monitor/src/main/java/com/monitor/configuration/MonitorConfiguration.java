@@ -1,22 +1,20 @@
 package com.monitor.configuration;
 
-import static com.monitor.user.util.MonitorServiceUserUtil.prepareServiceWithPreRegisteredClient;
-
-import java.time.LocalDateTime;
-import java.util.HashSet;
-
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.monitor.core.MonitorMetricsExporter;
 import com.monitor.core.ServiceMonitorConfig;
+import com.monitor.core.ServiceRegistry;
 import com.monitor.interfaces.MonitorService;
-import com.monitor.model.Service;
 import com.monitor.service.MonitorServiceImpl;
 import com.monitor.util.InputValidator;
+import com.monitor.util.ResolverCache;
 
 /**
  * Initial Spring application configuration for the Monitor Service application
- * Dependency declarations
+ * Dependency declarations.
+ * Optional adapter, MonitorServiceBuilder wires the same objects without Spring.
  * @author akshayhiremath
  *
  */
@@ -26,18 +24,13 @@ public class MonitorConfiguration {
 	 * Service Register bean. 
 	 * This maintains a central set of all services 
 	 * that will be monitored by Monitor Service.
-	 * The values initiated in this method will be 
-	 * the initial set of services for application to start.
-	 * @return set of Service objects. 
+	 * The values initiated in MonitorServiceBuilder.defaultServiceRegister()
+	 * will be the initial set of services for application to start.
+	 * @return register of Service objects. 
 	 */
 	@Bean
-	public HashSet<Service> serviceRegister(){		
-		HashSet<Service> register = new HashSet<>();
-		register.add(prepareServiceWithPreRegisteredClient("localhost",8080,3000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
-		register.add(prepareServiceWithPreRegisteredClient("localhost",8081,4000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
-		register.add(prepareServiceWithPreRegisteredClient("localhost",8082,2000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
-		register.add(prepareServiceWithPreRegisteredClient("localhost",8083,5000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
-		return register;
+	public ServiceRegistry serviceRegister(){		
+		return MonitorServiceBuilder.defaultServiceRegister();
 	}
 	
 	@Bean
@@ -54,6 +47,29 @@ public class MonitorConfiguration {
 		return new MonitorServiceImpl();
 	}
 	
+	/**
+	 * Monitor metrics bean.
+	 * Registers the probe and notification metrics on the platform MBeanServer
+	 * with the context and unregisters them when the context is closed.
+	 * @return exporter of the metrics
+	 */
+	@Bean(initMethod="register", destroyMethod="unregister")
+	public MonitorMetricsExporter monitorMetrics() {
+		MonitorServiceImpl monitorService = (MonitorServiceImpl) monitorService();
+		return new MonitorMetricsExporter(serviceMonitorConfig(), monitorService::getNotificationDispatcher);
+	}
+	
+	/**
+	 * Host resolver bean.
+	 * Caches the resolved service hosts for the service checks 
+	 * and the input validation.
+	 * @return caching host resolver
+	 */
+	@Bean
+	public ResolverCache hostResolver() {
+		return new ResolverCache();
+	}
+	
 	/**
 	 * Input validator bean.
 	 * This provides input validation APIs to Monitor service.
@@ -0,0 +1,142 @@
+package com.monitor.configuration;
+
+import static com.monitor.user.util.MonitorServiceUserUtil.prepareServiceWithPreRegisteredClient;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.monitor.core.MonitorMetricsExporter;
+import com.monitor.core.ServiceMonitorConfig;
+import com.monitor.core.ServiceRegistry;
+import com.monitor.interfaces.HostResolver;
+import com.monitor.model.Service;
+import com.monitor.service.MonitorServiceImpl;
+import com.monitor.util.InputValidator;
+import com.monitor.util.ResolverCache;
+
+/**
+ * Programmatic bootstrap of the Monitor Service application without a Spring context.
+ * Wires the same objects as MonitorConfiguration, which is an optional adapter
+ * for applications running in Spring. The metrics are registered on the platform
+ * MBeanServer while the built service is monitoring, unless turned off with exportMetrics(false).
+ * <pre>
+ * MonitorService ms = MonitorServiceBuilder.create()
+ * 		.withDefaultServices()
+ * 		.configure(config -&gt; config.setGracePeriod(10000))
+ * 		.build();
+ * </pre>
+ * @author akshayhiremath
+ *
+ */
+public class MonitorServiceBuilder {
+
+	private ServiceRegistry serviceRegister = new ServiceRegistry();
+	private HostResolver hostResolver;
+	private boolean exportMetrics = true;
+	private final List<Consumer<ServiceMonitorConfig>> customizers = new ArrayList<>();
+
+	private MonitorServiceBuilder() {
+	}
+
+	/**
+	 * @return builder with an empty register of services
+	 */
+	public static MonitorServiceBuilder create() {
+		return new MonitorServiceBuilder();
+	}
+
+	/**
+	 * The initial set of services the application starts with.
+	 * @return register of Service objects
+	 */
+	public static ServiceRegistry defaultServiceRegister() {
+		ServiceRegistry register = new ServiceRegistry();
+		register.add(prepareServiceWithPreRegisteredClient("localhost",8080,3000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
+		register.add(prepareServiceWithPreRegisteredClient("localhost",8081,4000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
+		register.add(prepareServiceWithPreRegisteredClient("localhost",8082,2000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
+		register.add(prepareServiceWithPreRegisteredClient("localhost",8083,5000,LocalDateTime.of(2019,01,20,13,55,00,00),LocalDateTime.of(2019,01,20,20,55,00,00)));
+		return register;
+	}
+
+	/**
+	 * Starts with the initial set of services of defaultServiceRegister()
+	 * @return this builder
+	 */
+	public MonitorServiceBuilder withDefaultServices() {
+		defaultServiceRegister().forEach(serviceRegister::add);
+		return this;
+	}
+
+	/**
+	 * Uses the passed register of services instead of the register of the builder
+	 * @param serviceRegister register of services
+	 * @return this builder
+	 */
+	public MonitorServiceBuilder serviceRegister(ServiceRegistry serviceRegister) {
+		this.serviceRegister = serviceRegister;
+		return this;
+	}
+
+	/**
+	 * Adds a service to the initial set of services
+	 * @param service service with its clients
+	 * @return this builder
+	 */
+	public MonitorServiceBuilder addService(Service service) {
+		serviceRegister.add(service);
+		return this;
+	}
+
+	/**
+	 * Resolver of the service hosts shared by the checks and the input validation,
+	 * a ResolverCache by default
+	 * @param hostResolver resolver of the service hosts
+	 * @return this builder
+	 */
+	public MonitorServiceBuilder hostResolver(HostResolver hostResolver) {
+		this.hostResolver = hostResolver;
+		return this;
+	}
+
+	/**
+	 * Whether the metrics of the service are registered on the platform MBeanServer
+	 * while it is monitoring, true by default. Only one service of the JVM can register them.
+	 * @param exportMetrics false to keep the metrics off JMX
+	 * @return this builder
+	 */
+	public MonitorServiceBuilder exportMetrics(boolean exportMetrics) {
+		this.exportMetrics = exportMetrics;
+		return this;
+	}
+
+	/**
+	 * Customizes the central configuration before the service is built
+	 * @param customizer sets grace period, execution mode and other settings
+	 * @return this builder
+	 */
+	public MonitorServiceBuilder configure(Consumer<ServiceMonitorConfig> customizer) {
+		customizers.add(customizer);
+		return this;
+	}
+
+	/**
+	 * @return monitor service ready to start, with its central configuration, input validator
+	 * 			and metrics exporter
+	 */
+	public MonitorServiceImpl build() {
+		HostResolver resolver = hostResolver == null ? new ResolverCache() : hostResolver;
+		ServiceMonitorConfig serviceMonitorConfig = new ServiceMonitorConfig();
+		serviceMonitorConfig.setServiceRegister(serviceRegister);
+		serviceMonitorConfig.setHostResolver(resolver);
+		customizers.forEach(c -> c.accept(serviceMonitorConfig));
+		InputValidator inputValidator = new InputValidator();
+		inputValidator.setHostResolver(resolver);
+		MonitorServiceImpl monitorService = new MonitorServiceImpl(serviceMonitorConfig, inputValidator);
+		if(exportMetrics) {
+			monitorService.setMetricsExporter(new MonitorMetricsExporter(serviceMonitorConfig, monitorService::getNotificationDispatcher));
+		}
+		return monitorService;
+	}
+}
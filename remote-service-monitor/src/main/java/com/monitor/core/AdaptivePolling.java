@@ -0,0 +1,61 @@
+package com.monitor.core;
+
+import com.monitor.model.Service;
+
+/**
+ * Adaptive cadence policy of the checks of a service.
+ * A service confirmed down is checked with an exponential backoff of its polling
+ * interval up to a cap, instead of at its polling interval forever. A successful check
+ * of a service confirmed down is confirmed by a check after a short delay before the
+ * service is considered up again and reverts to the polling interval requested by its clients.
+ * A suspected failure of a service which is up is confirmed after the grace period.
+ * @author akshayhiremath
+ *
+ */
+public class AdaptivePolling {
+
+	private final double backoffMultiplier;
+	private final long maxDownInterval;
+	private final long recoveryConfirmationDelay;
+
+	/**
+	 * Doubles the interval while down up to five minutes,
+	 * confirms a recovery after one second
+	 */
+	public AdaptivePolling() {
+		this(2, 300000, 1000);
+	}
+
+	/**
+	 * @param backoffMultiplier factor the interval grows by with every check of a service confirmed down,
+	 * 			1 keeps the polling interval
+	 * @param maxDownInterval cap of the interval in milliseconds while confirmed down, 
+	 * 			never below the polling interval of the service
+	 * @param recoveryConfirmationDelay delay in milliseconds of the check confirming a recovery
+	 */
+	public AdaptivePolling(double backoffMultiplier, long maxDownInterval, long recoveryConfirmationDelay) {
+		this.backoffMultiplier = Math.max(1, backoffMultiplier);
+		this.maxDownInterval = maxDownInterval;
+		this.recoveryConfirmationDelay = Math.max(0, recoveryConfirmationDelay);
+	}
+
+	/**
+	 * Delay before the next check of a service confirmed down
+	 * @param s service
+	 * @param failedChecks checks failed since the service was confirmed down, 0 right after the confirmation
+	 * @return polling interval grown by the backoff multiplier once per failed check, capped
+	 */
+	public long downDelay(Service s, int failedChecks) {
+		long interval = s.getPollingInterval();
+		long cap = Math.max(interval, maxDownInterval);
+		double delay = interval * Math.pow(backoffMultiplier, failedChecks);
+		return delay >= cap ? cap : (long) delay;
+	}
+
+	/**
+	 * @return delay in milliseconds of the check confirming the recovery of a service confirmed down
+	 */
+	public long getRecoveryConfirmationDelay() {
+		return recoveryConfirmationDelay;
+	}
+}
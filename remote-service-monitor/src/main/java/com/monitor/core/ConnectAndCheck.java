@@ -2,15 +2,21 @@ package com.monitor.core;
 
 import java.io.IOException;
 import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
 
 import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
 
 /**
  * Core logic to perform service status check.
- * This class implements Runnable and the logic will be executed 
- * in separate thread for each service in the ServiceRegister
- * in ServiceMonitorConfig.
+ * This class implements Runnable and a single execution performs one check
+ * of the service. The MonitorEngine decides when and on which thread the
+ * checks of each service in the ServiceRegister in ServiceMonitorConfig are executed.
  * @author akshayhiremath
  *
  */
@@ -26,10 +32,27 @@ public class ConnectAndCheck implements Runnable{
 	 * Central ServiceMonitor configuration 
 	 */
 	private ServiceMonitorConfig serviceMonitorConfig;
+	
+	/**
+	 * Metrics of the service the checks are recorded in
+	 */
+	private ServiceMetrics metrics;
+	
+	/**
+	 * State machine of the service driven by the checks
+	 */
+	private ServiceStateMachine stateMachine;
+	
+	/**
+	 * Latency of the last connection attempt in microseconds, for the probe history
+	 */
+	private long lastLatencyMicros;
 
 	public ConnectAndCheck(Service s,ServiceMonitorConfig serviceMonitorConfig) {
 		this.service=s;
 		this.serviceMonitorConfig=serviceMonitorConfig;
+		this.metrics=serviceMonitorConfig.getMetrics().forService(s);
+		this.stateMachine=new ServiceStateMachine(s);
 	}
 	
 	public Service getService() {
@@ -38,52 +61,177 @@ public class ConnectAndCheck implements Runnable{
 
 	public void setService(Service service) {
 		this.service = service;
+		this.metrics = serviceMonitorConfig.getMetrics().forService(service);
+		this.stateMachine = new ServiceStateMachine(service);
 	}
 
 	@Override
 	public void run() {
+		check();
+	}
+	
+	/**
+	 * Performs a single check of the service.
+	 * A refused or timed out connection makes the service SUSPECT, the failure is confirmed
+	 * by further checks spaced over the grace period according to the StatusPolicy. Worst case
+	 * detection time is thus bounded by downThreshold connect timeouts and the grace period.
+	 * The confirmation checks are not awaited here, the returned delay is the delay of the
+	 * next confirmation check so that the thread executing the check is released in the meantime.
+	 * @return delay in milliseconds after which the next check should be performed
+	 */
+	public long check() {
+		Service s = getService();
+		if(s==null || !s.isContinuePolling()) {
+			return 0;
+		}
+		return handleOutcome(connect());
+	}
+	
+	/**
+	 * Attempts a blocking TCP connection to the service, or a request over HTTP
+	 * if the service has an HttpCheck.
+	 * The attempt is bounded by the connect timeout of the service.
+	 * @return outcome of the connection attempt
+	 */
+	ProbeOutcome connect() {
+		Service s = getService();
+		System.out.println("Checking connection to service: "+s);
+		ProbeOutcome outcome;
+		long startedAt = System.nanoTime();
+		if(s.getHttpCheck() != null) {
+			try {
+				outcome = serviceMonitorConfig.getHttpProbe().check(s, resolve(s), serviceMonitorConfig.getConnectTimeout(s));
+			} catch (UnknownHostException e) {
+				outcome = classify(e);
+			}
+			recordProbe(outcome, System.nanoTime() - startedAt);
+			return outcome;
+		}
+		//connects the socket to the address with HOST:PORT
+		try (Socket socket = new Socket()) {
+			socket.connect(resolve(s), serviceMonitorConfig.getConnectTimeout(s));
+			//Socket and connection are closed after check is successful
+			outcome = ProbeOutcome.CONNECTED;
+		} catch (IOException e) {
+			outcome = classify(e);
+		}
+		recordProbe(outcome, System.nanoTime() - startedAt);
+		return outcome;
+	}
+	
+	/**
+	 * Records a connection attempt in the metrics of the service
+	 * @param outcome outcome of the attempt
+	 * @param latencyNanos duration of the attempt in nanoseconds
+	 */
+	void recordProbe(ProbeOutcome outcome, long latencyNanos) {
+		metrics.recordProbe(outcome, latencyNanos);
+		lastLatencyMicros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+	}
+	
+	/**
+	 * Appends the check to the probe history of the central configuration, if any
+	 * @param outcome outcome of the connection attempt
+	 * @param now time of the check in epoch milliseconds
+	 * @param transition whether the check changed the state of the service
+	 */
+	private void recordHistory(ProbeOutcome outcome, long now, boolean transition) {
+		ProbeHistoryLog history = serviceMonitorConfig.getProbeHistory();
+		if(history != null) {
+			Service s = getService();
+			history.append(s, now, lastLatencyMicros, outcome, s.getState(), transition);
+		}
+	}
+	
+	/**
+	 * Resolves the address of the service with the resolver of the central configuration
+	 * @return address to connect to
+	 * @throws UnknownHostException if the host of the service cannot be resolved
+	 */
+	InetSocketAddress resolve(Service s) throws UnknownHostException {
+		return new InetSocketAddress(serviceMonitorConfig.getHostResolver().resolve(s.getHost())[0], s.getPort());
+	}
+	
+	/**
+	 * Resolves the address of the service only if the resolver knows it without blocking
+	 * @return address to connect to, null if the resolver would have to wait for the name service
+	 * @throws UnknownHostException if the host of the service is known not to resolve
+	 */
+	InetSocketAddress resolveIfKnown(Service s) throws UnknownHostException {
+		InetAddress[] addresses = serviceMonitorConfig.getHostResolver().resolveIfKnown(s.getHost());
+		return addresses == null ? null : new InetSocketAddress(addresses[0], s.getPort());
+	}
+	
+	/**
+	 * Classifies the failure of a connection attempt
+	 * @param e exception thrown by the connection attempt
+	 * @return REFUSED if the connection was refused by the host, TIMEOUT if the host 
+	 * 			did not answer within the connect timeout, FAILED otherwise
+	 */
+	public static ProbeOutcome classify(IOException e) {
+		if(e instanceof SocketTimeoutException) {
+			return ProbeOutcome.TIMEOUT;
+		}
+		if(e instanceof ConnectException && e.getMessage()!=null && e.getMessage().contains("Connection refused")) {
+			return ProbeOutcome.REFUSED;
+		}
+		return ProbeOutcome.FAILED;
+	}
+	
+	/**
+	 * Applies the outcome of a connection attempt to the service.
+	 * Used by the engines which perform the connection attempt on their own.
+	 * The outcome drives the state machine of the service, the clients are notified
+	 * on transitions only. The returned delay depends on the new state and follows the
+	 * AdaptivePolling of the central configuration: a suspected change is confirmed by a
+	 * check after a short delay, a service DOWN is checked with backoff and a stable
+	 * service in the slot of its polling interval.
+	 * @param outcome outcome of the connection attempt
+	 * @return delay in milliseconds after which the next check should be performed
+	 */
+	public long handleOutcome(ProbeOutcome outcome) {
 		Service s = getService();
-		Socket socket=null;
-		if(s!=null) {
-			//Whether to continue polling or to stop
-			while(s.isContinuePolling()) {
-					try {	
-							System.out.println("Checking connection to service: "+service);
-							//socket initialization creates a socket and connects it to 
-							//the address with HOST:PORT
-							socket = new Socket(s.getHost(),s.getPort());
-							System.out.println("connection to "+service+" successful.");
-							//Close socket and connection after check is successful
-							socket.close();
-							//Wait for polling interval
-							Thread.sleep(s.getPollingInterval());
-					} catch (IOException e) {
-						if(e instanceof ConnectException && e.getMessage().contains("Connection refused")) {
-							//Connection refused, indicates service is down
-							System.err.println("Failed to connect to service."+s.getHost()+":"+s.getPort());
-							//To wait for gracePeriod. If grace Period is shorter than polling interval 
-							//then the loop will continue and next attempt will be made earlier.
-								try {
-									Thread.sleep(serviceMonitorConfig.getGracePeriod());
-								} catch (InterruptedException e1) {
-									handleThreadInterruption(e1,s);
-								}
-								try {
-									//After GracePeriod check
-									socket = new Socket(s.getHost(),s.getPort());
-									socket.close();
-								} catch (IOException e2) {
-									if(e2.getMessage().contains("Connection refused")) {
-										System.err.println("After Grace Period: Failed to connect to service."+s.getHost()+":"+s.getPort());
-										s.setStatus(false);
-									}
-								}
-						}
-					} catch (InterruptedException e) {
-						handleThreadInterruption(e,s);
-					}
-				}
-			}	
+		long now = System.currentTimeMillis();
+		//Clients with a longer polling interval get a held back change when they are due
+		s.deliverPendingState(now);
+		if(outcome == ProbeOutcome.FAILED) {
+			//Neither up nor down, retry in the next slot of the service
+			System.err.println("Failed to check service: "+s);
+			recordHistory(outcome, now, false);
+			return serviceMonitorConfig.getPhaseSpread().nextDelay(s);
+		}
+		if(outcome == ProbeOutcome.CONNECTED) {
+			System.out.println("connection to "+s+" successful.");
+		}else {
+			System.err.println("Failed to connect to service."+s.getHost()+":"+s.getPort()+" ("+outcome+")");
+		}
+		StatusPolicy statusPolicy = serviceMonitorConfig.getStatusPolicy();
+		ServiceState before = s.getState();
+		boolean transition = stateMachine.onCheck(outcome == ProbeOutcome.CONNECTED, statusPolicy, now);
+		if(transition) {
+			System.out.println("Service "+s+" changed from "+before+" to "+s.getState());
+			metrics.recordNotification();
+		}
+		recordHistory(outcome, now, transition);
+		AdaptivePolling adaptivePolling = serviceMonitorConfig.getAdaptivePolling();
+		switch(s.getState()) {
+		case SUSPECT:
+			//Confirmation checks spread over the gracePeriod. If grace Period is shorter 
+			//than polling interval then the next attempt will be made earlier.
+			//The check is a follow-up scheduled by the engine, no thread waits for it.
+			metrics.recordGraceRecheck();
+			return statusPolicy.getConfirmationDelay(serviceMonitorConfig.getGracePeriod());
+		case DOWN:
+			//Back off with every check failing after the confirmation
+			return adaptivePolling.downDelay(s, Math.max(0, stateMachine.getConsecutiveFailures() - statusPolicy.getDownThreshold()));
+		case RECOVERING:
+			return adaptivePolling.getRecoveryConfirmationDelay();
+		case UP:
+		case FLAPPING:
+		default:
+			//Wait for the next slot of the service in its polling interval
+			return serviceMonitorConfig.getPhaseSpread().nextDelay(s);
+		}
 	}
 	
 	/**
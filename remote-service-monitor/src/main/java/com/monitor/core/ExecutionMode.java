@@ -0,0 +1,32 @@
+package com.monitor.core;
+
+/**
+ * Execution modes supported by MonitorService.
+ * The mode decides which MonitorEngine drives the ConnectAndCheck probes
+ * of the services in the ServiceRegister.
+ * @author akshayhiremath
+ *
+ */
+public enum ExecutionMode {
+	/**
+	 * All probes are scheduled on a small bounded pool of worker threads.
+	 * This is the default mode.
+	 */
+	SCHEDULED,
+	/**
+	 * One dedicated thread per service which sleeps for the polling interval
+	 * between the checks. Kept for compatibility with earlier releases.
+	 */
+	THREAD_PER_SERVICE,
+	/**
+	 * Non-blocking connection attempts multiplexed with a Selector on a few I/O threads.
+	 * Suited for tens of thousands of services.
+	 */
+	NIO,
+	/**
+	 * One virtual thread per service, keeping the simple per-service loop of
+	 * THREAD_PER_SERVICE without an OS thread per service.
+	 * Requires a build with the virtual-threads profile running on JDK 21 or newer.
+	 */
+	VIRTUAL_THREAD
+}
@@ -0,0 +1,459 @@
+package com.monitor.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.monitor.model.HttpCheck;
+import com.monitor.model.Service;
+
+/**
+ * Checks services with an HttpCheck over HTTP/1.1 or HTTPS.
+ * Sends GET of the path of the check and compares the status code of the answer.
+ * The connections are kept alive and pooled per service between the checks, so a check
+ * usually costs a request on an open connection instead of a TCP and TLS handshake, and
+ * leaves no socket in TIME_WAIT. A pooled connection closed by the server while idle is
+ * detected on use and the check is retried once on a new connection.
+ * A pooled connection is used by one check at a time. The pool is keyed by service and
+ * TLS, so a check switched to or from TLS never gets a connection of the other kind, and the
+ * connections of a service are closed with evict() when it stops being monitored.
+ * The timeout bounds the whole check: the read timeout of each read is the time left
+ * until the deadline of the check, so a server trickling its answer cannot stretch it.
+ * @author akshayhiremath
+ *
+ */
+public class HttpProbe {
+
+	private static final int MAX_LINE = 8192;
+	/**
+	 * Larger bodies are not read, their connection is closed instead
+	 */
+	private static final long MAX_BODY = 1 << 20;
+
+	private final int maxIdlePerService;
+	private final long idleTimeout;
+	private final ConcurrentHashMap<String, Deque<Connection>> idle = new ConcurrentHashMap<>();
+	private final AtomicLong opened = new AtomicLong();
+	private final AtomicLong reused = new AtomicLong();
+
+	/**
+	 * Probe keeping up to 2 idle connections per service for 30 seconds
+	 */
+	public HttpProbe() {
+		this(2, 30000);
+	}
+
+	/**
+	 * @param maxIdlePerService idle connections kept per service, 0 closes the connection after each check
+	 * @param idleTimeout milliseconds after which an idle connection is closed instead of reused
+	 */
+	public HttpProbe(int maxIdlePerService, long idleTimeout) {
+		this.maxIdlePerService = maxIdlePerService;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Checks the service
+	 * @param s service with an HttpCheck
+	 * @param address resolved address of the service
+	 * @param timeout time in milliseconds the check may take, connect, handshake and answer included
+	 * @return CONNECTED if the service answered with the expected status, UNHEALTHY if it answered
+	 * 			otherwise or not at all on an established connection, the outcome of the connection attempt
+	 * 			if no connection could be established
+	 */
+	public ProbeOutcome check(Service s, InetSocketAddress address, int timeout) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		HttpCheck check = s.getHttpCheck();
+		String key = keyOf(s, check.isTls());
+		Connection c = borrow(key);
+		if(c != null) {
+			try {
+				reused.incrementAndGet();
+				return exchange(c, s, check, key, deadline);
+			} catch (SocketTimeoutException e) {
+				//Reachable but did not answer in time, a new connection would not do better
+				c.close();
+				return ProbeOutcome.UNHEALTHY;
+			} catch (IOException e) {
+				//Most likely closed by the server while idle
+				c.close();
+			}
+		}
+		int remaining = remainingMillis(deadline);
+		if(remaining <= 0) {
+			//Spent on a pooled connection closed by the server
+			return ProbeOutcome.TIMEOUT;
+		}
+		Socket socket = new Socket();
+		try {
+			socket.connect(address, remaining);
+		} catch (IOException e) {
+			close(socket);
+			return ConnectAndCheck.classify(e);
+		}
+		opened.incrementAndGet();
+		try {
+			remaining = remainingMillis(deadline);
+			if(remaining <= 0) {
+				throw new SocketTimeoutException("Deadline of the check passed");
+			}
+			socket.setSoTimeout(remaining);
+			c = new Connection(check.isTls() ? handshake(socket, s) : socket);
+			return exchange(c, s, check, key, deadline);
+		} catch (IOException e) {
+			//Connected, but no valid or timely answer or TLS handshake, TIMEOUT is for the connect only
+			close(socket);
+			return ProbeOutcome.UNHEALTHY;
+		}
+	}
+
+	/**
+	 * Closes the idle connections to the service, called when it is not monitored anymore
+	 * @param s service, only host and port are used
+	 */
+	public void evict(Service s) {
+		close(idle.remove(keyOf(s, false)));
+		close(idle.remove(keyOf(s, true)));
+	}
+
+	/**
+	 * @return milliseconds left until the deadline, 0 or less once passed
+	 */
+	private static int remainingMillis(long deadline) {
+		return (int) TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+	}
+
+	private static String keyOf(Service s, boolean tls) {
+		return tls ? s.getKey()+"/tls" : s.getKey();
+	}
+
+	private Connection borrow(String key) {
+		Deque<Connection> connections = idle.get(key);
+		if(connections == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		Connection c;
+		while((c = connections.pollFirst()) != null) {
+			if(now - c.idleSince < idleTimeout) {
+				return c;
+			}
+			c.close();
+		}
+		return null;
+	}
+
+	private void release(String key, Connection c) {
+		Deque<Connection> connections = idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+		if(connections.size() < maxIdlePerService) {
+			c.idleSince = System.currentTimeMillis();
+			//Most recently used first, the others age out
+			connections.offerFirst(c);
+		}else {
+			c.close();
+		}
+	}
+
+	/**
+	 * Layers TLS over the connected socket, verifying that the certificate matches the host of the service
+	 */
+	private static Socket handshake(Socket socket, Service s) throws IOException {
+		SSLSocket tls = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, s.getHost(), s.getPort(), true);
+		SSLParameters parameters = tls.getSSLParameters();
+		parameters.setEndpointIdentificationAlgorithm("HTTPS");
+		tls.setSSLParameters(parameters);
+		tls.startHandshake();
+		return tls;
+	}
+
+	/**
+	 * Sends the request of the check and reads the whole answer, the connection
+	 * goes back to the pool unless the server closes it
+	 * @param deadline System.nanoTime() by which the answer must be read
+	 */
+	private ProbeOutcome exchange(Connection c, Service s, HttpCheck check, String key, long deadline) throws IOException {
+		c.deadline = deadline;
+		String request = "GET "+check.getPath()+" HTTP/1.1\r\n"
+				+"Host: "+s.getHost()+":"+s.getPort()+"\r\n"
+				+"User-Agent: remote-service-monitor\r\n"
+				+"Accept: */*\r\n"
+				+"Connection: keep-alive\r\n\r\n";
+		c.out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+		c.out.flush();
+
+		String statusLine = readLine(c.in);
+		if(statusLine == null) {
+			throw new EOFException("Connection closed by "+s);
+		}
+		int status = parseStatus(statusLine);
+		boolean keepAlive = !statusLine.startsWith("HTTP/1.0");
+		long contentLength = -1;
+		boolean chunked = false;
+		String header;
+		while((header = readLine(c.in)) != null && !header.isEmpty()) {
+			int colon = header.indexOf(':');
+			if(colon < 0) {
+				continue;
+			}
+			String name = header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = header.substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+			if("content-length".equals(name)) {
+				contentLength = parseContentLength(value);
+			}else if("transfer-encoding".equals(name)) {
+				chunked = value.contains("chunked");
+			}else if("connection".equals(name)) {
+				keepAlive = value.contains("keep-alive") || (keepAlive && !value.contains("close"));
+			}
+		}
+		if(header == null) {
+			throw new EOFException("Connection closed by "+s);
+		}
+
+		if(status / 100 == 1 || status == 204 || status == 304) {
+			//No body
+		}else if(chunked) {
+			keepAlive &= skipChunked(c.in);
+		}else if(contentLength >= 0) {
+			keepAlive &= contentLength <= MAX_BODY && skip(c.in, contentLength);
+		}else {
+			//Body up to the end of the connection
+			keepAlive = false;
+		}
+		if(keepAlive) {
+			release(key, c);
+		}else {
+			c.close();
+		}
+		return status == check.getExpectedStatus() ? ProbeOutcome.CONNECTED : ProbeOutcome.UNHEALTHY;
+	}
+
+	private static int parseStatus(String statusLine) throws IOException {
+		String[] parts = statusLine.split(" ", 3);
+		if(parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+			throw new IOException("Not an HTTP answer: "+statusLine);
+		}
+		try {
+			return Integer.parseInt(parts[1]);
+		} catch (NumberFormatException e) {
+			throw new IOException("Not an HTTP status: "+statusLine);
+		}
+	}
+
+	private static long parseContentLength(String value) throws IOException {
+		try {
+			long length = Long.parseLong(value);
+			if(length >= 0) {
+				return length;
+			}
+		} catch (NumberFormatException e) {
+			//Reported below
+		}
+		throw new IOException("Invalid Content-Length: "+value);
+	}
+
+	/**
+	 * @return false if the body is too large to be read
+	 */
+	private static boolean skipChunked(InputStream in) throws IOException {
+		long total = 0;
+		while(true) {
+			String line = readLine(in);
+			if(line == null) {
+				throw new EOFException("Connection closed in chunked body");
+			}
+			int extension = line.indexOf(';');
+			long size;
+			try {
+				size = Long.parseLong((extension < 0 ? line : line.substring(0, extension)).trim(), 16);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid chunk size: "+line);
+			}
+			if(size == 0) {
+				//Trailers up to the empty line
+				String trailer;
+				while((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+					//ignored
+				}
+				return trailer != null;
+			}
+			total += size;
+			if(total > MAX_BODY || !skip(in, size)) {
+				return false;
+			}
+			readLine(in);
+		}
+	}
+
+	/**
+	 * @return true if n bytes were skipped, false at the end of the stream
+	 */
+	private static boolean skip(InputStream in, long n) throws IOException {
+		while(n > 0) {
+			long skipped = in.skip(n);
+			if(skipped <= 0) {
+				if(in.read() < 0) {
+					return false;
+				}
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+		return true;
+	}
+
+	/**
+	 * @return line without CRLF, null at the end of the stream
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int b;
+		while((b = in.read()) >= 0) {
+			if(b == '\n') {
+				int length = line.length();
+				if(length > 0 && line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				return line.toString();
+			}
+			if(line.length() >= MAX_LINE) {
+				throw new IOException("Line too long in HTTP answer");
+			}
+			line.append((char) b);
+		}
+		return line.length() == 0 ? null : line.toString();
+	}
+
+	/**
+	 * @return connections opened since the probe was created
+	 */
+	public long getOpenedConnections() {
+		return opened.get();
+	}
+
+	/**
+	 * @return checks which reused a pooled connection
+	 */
+	public long getReusedConnections() {
+		return reused.get();
+	}
+
+	/**
+	 * @return connections currently idle in the pool
+	 */
+	public int getIdleConnections() {
+		int count = 0;
+		for(Deque<Connection> connections : idle.values()) {
+			count += connections.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Closes the idle connections
+	 */
+	public void close() {
+		for(Deque<Connection> connections : idle.values()) {
+			close(connections);
+		}
+	}
+
+	private static void close(Deque<Connection> connections) {
+		if(connections == null) {
+			return;
+		}
+		Connection c;
+		while((c = connections.pollFirst()) != null) {
+			c.close();
+		}
+	}
+
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			//Nothing to do, the connection is discarded
+		}
+	}
+
+	/**
+	 * Open connection with its buffered streams
+	 */
+	private static class Connection {
+		final Socket socket;
+		final InputStream in;
+		final OutputStream out;
+		long idleSince;
+		/**
+		 * System.nanoTime() by which the current check must end
+		 */
+		long deadline;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new BufferedInputStream(new DeadlineInputStream(socket.getInputStream()));
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+		}
+
+		void close() {
+			HttpProbe.close(socket);
+		}
+
+		/**
+		 * Sets the time left until the deadline as read timeout of the socket
+		 * @throws SocketTimeoutException if the deadline passed
+		 */
+		private void applyDeadline() throws IOException {
+			int remaining = remainingMillis(deadline);
+			if(remaining <= 0) {
+				throw new SocketTimeoutException("Deadline of the check passed");
+			}
+			socket.setSoTimeout(remaining);
+		}
+
+		/**
+		 * Applies the deadline of the check before each read of the socket
+		 */
+		private class DeadlineInputStream extends FilterInputStream {
+
+			DeadlineInputStream(InputStream in) {
+				super(in);
+			}
+
+			@Override
+			public int read() throws IOException {
+				applyDeadline();
+				return super.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				applyDeadline();
+				return super.read(b, off, len);
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				applyDeadline();
+				return super.skip(n);
+			}
+		}
+	}
+}
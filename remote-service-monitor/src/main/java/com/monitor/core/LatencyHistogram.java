@@ -0,0 +1,123 @@
+package com.monitor.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed memory.
+ * Values in microseconds are counted in log-linear buckets: every power of two
+ * is split in 8 buckets, so a recorded value is reported with at most 12.5% error.
+ * Values above about 134 seconds are recorded as 134 seconds.
+ * Recording is a single atomic increment in an array of 200 counters.
+ * @author akshayhiremath
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final long MAX_TRACKABLE = (1L << 27) - 1;
+	private static final int BUCKETS = indexOf(MAX_TRACKABLE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value
+	 * @param micros latency in microseconds
+	 */
+	public void record(long micros) {
+		long v = Math.min(Math.max(0, micros), MAX_TRACKABLE);
+		counts.incrementAndGet(indexOf(v));
+		total.addAndGet(v);
+		if(v > max.get()) {
+			max.accumulateAndGet(v, Math::max);
+		}
+	}
+
+	/**
+	 * Adds the values recorded in this histogram to another one
+	 * @param target histogram to add to
+	 */
+	public void addTo(LatencyHistogram target) {
+		for(int i = 0; i < BUCKETS; i++) {
+			long c = counts.get(i);
+			if(c != 0) {
+				target.counts.addAndGet(i, c);
+			}
+		}
+		target.total.addAndGet(total.get());
+		target.max.accumulateAndGet(max.get(), Math::max);
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @return largest recorded value in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return mean of the recorded values in microseconds, 0 if none
+	 */
+	public long getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : total.get() / count;
+	}
+
+	/**
+	 * Value at a percentile, reported as the upper bound of its bucket
+	 * @param percentile percentile between 0 and 100
+	 * @return value in microseconds, 0 if no value was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+		if(count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) {
+				return Math.min(upperBoundOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	private static int indexOf(long v) {
+		if(v < SUB_BUCKETS) {
+			return (int) v;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(v);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	private static long upperBoundOf(int index) {
+		if(index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+}
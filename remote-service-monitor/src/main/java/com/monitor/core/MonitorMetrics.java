@@ -0,0 +1,73 @@
+package com.monitor.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.monitor.model.ProbeStatistics;
+import com.monitor.model.Service;
+
+/**
+ * Metrics of all the monitored services, keyed like the ServiceRegistry.
+ * The checks record into the ServiceMetrics of their service, the totals
+ * are aggregated when they are read.
+ * @author akshayhiremath
+ *
+ */
+public class MonitorMetrics {
+
+	private final ConcurrentMap<String, ServiceMetrics> services = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the metrics of a service, creates them on first use
+	 * @param s service
+	 * @return metrics of the service
+	 */
+	public ServiceMetrics forService(Service s) {
+		return services.computeIfAbsent(s.getKey(), k -> new ServiceMetrics());
+	}
+
+	/**
+	 * @param host host of the service
+	 * @param port port of the service
+	 * @return metrics of the service, null if it has none
+	 */
+	public ServiceMetrics get(String host, int port) {
+		return services.get(Service.keyOf(host, port));
+	}
+
+	/**
+	 * Discards the metrics of a service
+	 * @param s service
+	 */
+	public void remove(Service s) {
+		services.remove(s.getKey());
+	}
+
+	/**
+	 * @return number of services with metrics
+	 */
+	public int size() {
+		return services.size();
+	}
+
+	/**
+	 * Aggregates the metrics of all the services.
+	 * The cost is proportional to the number of services.
+	 * @return totals over all the services
+	 */
+	public ProbeStatistics totals() {
+		ServiceMetrics totals = new ServiceMetrics();
+		for(ServiceMetrics m : services.values()) {
+			totals.probes.addAndGet(m.probes.get());
+			totals.connected.addAndGet(m.connected.get());
+			totals.refusals.addAndGet(m.refusals.get());
+			totals.timeouts.addAndGet(m.timeouts.get());
+			totals.failures.addAndGet(m.failures.get());
+			totals.unhealthy.addAndGet(m.unhealthy.get());
+			totals.graceRechecks.addAndGet(m.graceRechecks.get());
+			totals.notifications.addAndGet(m.notifications.get());
+			m.latency.addTo(totals.latency);
+		}
+		return totals.snapshot();
+	}
+}
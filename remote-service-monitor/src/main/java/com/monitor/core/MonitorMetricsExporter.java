@@ -0,0 +1,113 @@
+package com.monitor.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.monitor.interfaces.MonitorMetricsMXBean;
+import com.monitor.model.ProbeStatistics;
+
+/**
+ * Exposes the MonitorMetrics of the central configuration, the probe throttle
+ * and the notification dispatcher as MXBean on the platform MBeanServer.
+ * @author akshayhiremath
+ *
+ */
+public class MonitorMetricsExporter implements MonitorMetricsMXBean {
+
+	/**
+	 * Name the metrics are registered under
+	 */
+	public static final String OBJECT_NAME = "com.monitor:type=MonitorMetrics";
+
+	private final ServiceMonitorConfig serviceMonitorConfig;
+	private final Supplier<NotificationDispatcher> notificationDispatcher;
+	private ObjectName registeredName;
+
+	/**
+	 * @param serviceMonitorConfig central configuration holding the metrics
+	 * @param notificationDispatcher supplies the notification dispatcher, may supply null before monitoring starts
+	 */
+	public MonitorMetricsExporter(ServiceMonitorConfig serviceMonitorConfig, Supplier<NotificationDispatcher> notificationDispatcher) {
+		this.serviceMonitorConfig = serviceMonitorConfig;
+		this.notificationDispatcher = notificationDispatcher;
+	}
+
+	/**
+	 * Registers the metrics on the platform MBeanServer
+	 * @throws JMException if the metrics cannot be registered
+	 */
+	public synchronized void register() throws JMException {
+		if(registeredName == null) {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			registeredName = name;
+		}
+	}
+
+	/**
+	 * Unregisters the metrics from the platform MBeanServer
+	 */
+	public synchronized void unregister() {
+		if(registeredName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				server.unregisterMBean(registeredName);
+			} catch (InstanceNotFoundException e) {
+				//Already unregistered
+			} catch (JMException e) {
+				System.err.println("Failed to unregister monitor metrics. Error details: "+e.getMessage());
+			}
+			registeredName = null;
+		}
+	}
+
+	@Override
+	public int getMonitoredServices() {
+		return serviceMonitorConfig.getMetrics().size();
+	}
+
+	@Override
+	public ProbeStatistics getTotals() {
+		return serviceMonitorConfig.getMetrics().totals();
+	}
+
+	@Override
+	public ProbeStatistics getServiceStatistics(String host, int port) {
+		ServiceMetrics metrics = serviceMonitorConfig.getMetrics().get(host, port);
+		return metrics == null ? null : metrics.snapshot();
+	}
+
+	@Override
+	public long getThrottledProbes() {
+		return serviceMonitorConfig.getProbeThrottle().getThrottled();
+	}
+
+	@Override
+	public long getNotificationsDispatched() {
+		NotificationDispatcher dispatcher = notificationDispatcher.get();
+		return dispatcher == null ? 0 : dispatcher.getDispatched();
+	}
+
+	@Override
+	public long getNotificationsDropped() {
+		NotificationDispatcher dispatcher = notificationDispatcher.get();
+		return dispatcher == null ? 0 : dispatcher.getDropped();
+	}
+
+	@Override
+	public long getNotificationsCoalesced() {
+		NotificationDispatcher dispatcher = notificationDispatcher.get();
+		return dispatcher == null ? 0 : dispatcher.getCoalesced();
+	}
+
+	@Override
+	public long getNotificationQueueDepth() {
+		NotificationDispatcher dispatcher = notificationDispatcher.get();
+		return dispatcher == null ? 0 : dispatcher.getQueueDepth();
+	}
+}
@@ -0,0 +1,34 @@
+package com.monitor.core;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory used by the monitor engines.
+ * Names the threads with a prefix and a sequence number so that
+ * monitoring threads are easy to identify in thread dumps.
+ * @author akshayhiremath
+ *
+ */
+public class MonitorThreadFactory implements ThreadFactory {
+
+	private final String prefix;
+	private final boolean daemon;
+	private final AtomicInteger sequence = new AtomicInteger();
+
+	/**
+	 * @param prefix name prefix of the created threads
+	 * @param daemon whether the created threads are daemon threads
+	 */
+	public MonitorThreadFactory(String prefix, boolean daemon) {
+		this.prefix = prefix;
+		this.daemon = daemon;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, prefix + "-" + sequence.incrementAndGet());
+		t.setDaemon(daemon);
+		return t;
+	}
+}
@@ -0,0 +1,402 @@
+package com.monitor.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.monitor.interfaces.MonitorEngine;
+import com.monitor.model.Service;
+
+/**
+ * Monitor engine multiplexing the connection attempts of all the services
+ * on one or a few I/O threads.
+ * Each I/O thread owns a Selector and starts non-blocking connects with SocketChannel,
+ * the completion is picked up with OP_CONNECT. The selector loop also keeps a timer queue
+ * with the start time of the next check of each service and the deadline of each
+ * connection attempt in flight, so a host not answering the SYN holds no thread.
+ * The outcome of each attempt is applied with the same ConnectAndCheck logic as the
+ * blocking engines. A check postponed by the ProbeThrottle gets a new start timer
+ * after the throttling delay.
+ * The selector threads never wait for the name service: they only take the addresses
+ * the HostResolver knows without blocking, see HostResolver.resolveIfKnown(). Other hosts
+ * are resolved on a few resolver threads which hand the probe back to its selector loop.
+ * With the default ResolverCache that only happens on a cache miss.
+ * Services with an HttpCheck need a request and its answer on top of the connection, their
+ * checks are delegated to a ScheduledMonitorEngine created with the first such service.
+ * @author akshayhiremath
+ *
+ */
+public class NioMonitorEngine implements MonitorEngine {
+
+	/**
+	 * Threads resolving the hosts the resolver doesn't know without blocking
+	 */
+	private static final int RESOLVER_THREADS = 4;
+
+	private final ServiceMonitorConfig serviceMonitorConfig;
+
+	private SelectorLoop[] loops;
+
+	private ExecutorService resolver;
+
+	private final AtomicInteger nextLoop = new AtomicInteger();
+
+	/**
+	 * Engine of the services with an HttpCheck, null until the first one is monitored
+	 */
+	private ScheduledMonitorEngine httpEngine;
+
+	public NioMonitorEngine(ServiceMonitorConfig serviceMonitorConfig) {
+		this.serviceMonitorConfig = serviceMonitorConfig;
+	}
+
+	@Override
+	public synchronized void start() {
+		if(loops != null) {
+			return;
+		}
+		resolver = Executors.newFixedThreadPool(RESOLVER_THREADS, new MonitorThreadFactory("nio-resolver", true));
+		MonitorThreadFactory threadFactory = new MonitorThreadFactory("nio-probe", false);
+		int threads = Math.max(1, serviceMonitorConfig.getNioSelectorThreads());
+		loops = new SelectorLoop[threads];
+		for(int i = 0; i < threads; i++) {
+			try {
+				loops[i] = new SelectorLoop(Selector.open(), resolver);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to open selector for NIO monitor engine", e);
+			}
+			threadFactory.newThread(loops[i]).start();
+		}
+	}
+
+	@Override
+	public void monitor(Service service, long initialDelay) {
+		if(service.getHttpCheck() != null) {
+			httpEngine().monitor(service, initialDelay);
+			return;
+		}
+		SelectorLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+		Probe probe = new Probe(new ConnectAndCheck(service, serviceMonitorConfig));
+		probe.startAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(initialDelay);
+		loop.submit(probe);
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		if(loops != null) {
+			for(SelectorLoop loop : loops) {
+				loop.stop();
+			}
+			loops = null;
+			resolver.shutdownNow();
+			resolver = null;
+		}
+		if(httpEngine != null) {
+			httpEngine.shutdown();
+			httpEngine = null;
+		}
+	}
+
+	private synchronized ScheduledMonitorEngine httpEngine() {
+		if(httpEngine == null) {
+			httpEngine = new ScheduledMonitorEngine(serviceMonitorConfig);
+			httpEngine.start();
+		}
+		return httpEngine;
+	}
+
+	/**
+	 * Probing state of a single service.
+	 * Only accessed by the selector loop owning it, or by a resolver thread while
+	 * the loop waits for the resolution.
+	 */
+	private static class Probe {
+		final ConnectAndCheck task;
+		SocketChannel channel;
+		/**
+		 * Resolved address of the next attempt, null until resolved
+		 */
+		InetSocketAddress address;
+		/**
+		 * Set by a resolver thread when the host could not be resolved
+		 */
+		boolean unresolved;
+		/**
+		 * Throttle which granted the permit of the attempt in flight
+		 */
+		ProbeThrottle throttle;
+		/**
+		 * Incremented on every state change, invalidates timers of the previous state
+		 */
+		long generation;
+		/**
+		 * Time of the first check in nanoseconds, set before the probe is submitted,
+		 * then the start time of the attempt in flight
+		 */
+		long startAt;
+
+		Probe(ConnectAndCheck task) {
+			this.task = task;
+		}
+	}
+
+	/**
+	 * Timer entry in the timer queue of a selector loop.
+	 * Depending on the state of the probe it either starts the next check
+	 * or expires the connection attempt in flight.
+	 */
+	private static class Timer implements Comparable<Timer> {
+		final long due;
+		final Probe probe;
+		final long generation;
+
+		Timer(long due, Probe probe) {
+			this.due = due;
+			this.probe = probe;
+			this.generation = probe.generation;
+		}
+
+		@Override
+		public int compareTo(Timer other) {
+			return Long.compare(due, other.due);
+		}
+	}
+
+	/**
+	 * Single I/O thread with its selector and timer queue.
+	 */
+	private class SelectorLoop implements Runnable {
+
+		private final Selector selector;
+		private final ExecutorService resolver;
+		private final Queue<Probe> submitted = new ConcurrentLinkedQueue<>();
+		/**
+		 * Probes handed back by the resolver threads
+		 */
+		private final Queue<Probe> resolved = new ConcurrentLinkedQueue<>();
+		private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+		private volatile boolean running = true;
+
+		SelectorLoop(Selector selector, ExecutorService resolver) {
+			this.selector = selector;
+			this.resolver = resolver;
+		}
+
+		void submit(Probe probe) {
+			submitted.add(probe);
+			selector.wakeup();
+		}
+
+		void stop() {
+			running = false;
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while(running) {
+					Probe probe;
+					while((probe = submitted.poll()) != null) {
+						timers.add(new Timer(probe.startAt, probe));
+					}
+					long now = System.nanoTime();
+					while((probe = resolved.poll()) != null) {
+						if(probe.unresolved) {
+							probe.unresolved = false;
+							probe.startAt = now;
+							complete(probe, ProbeOutcome.FAILED);
+						}else {
+							startConnect(probe, now);
+						}
+					}
+					fireTimers(now);
+					long timeout = 0;
+					if(!timers.isEmpty()) {
+						//select(0) blocks without timeout, wait at least one millisecond
+						timeout = Math.max(1, TimeUnit.NANOSECONDS.toMillis(timers.peek().due - now));
+					}
+					selector.select(timeout);
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while(keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						finishConnect((Probe) key.attachment());
+					}
+				}
+			} catch (IOException | ClosedSelectorException e) {
+				System.err.println("NIO monitor engine stopped unexpectedly. Error details: "+e.getMessage());
+			} finally {
+				closeAll();
+			}
+		}
+
+		/**
+		 * Fires all the timers which are due
+		 * @param now current time in nanoseconds
+		 */
+		private void fireTimers(long now) {
+			while(!timers.isEmpty() && timers.peek().due - now <= 0) {
+				Timer timer = timers.poll();
+				Probe probe = timer.probe;
+				if(timer.generation != probe.generation) {
+					continue;
+				}
+				if(probe.channel == null) {
+					startConnect(probe, now);
+				} else {
+					complete(probe, ProbeOutcome.TIMEOUT);
+				}
+			}
+		}
+
+		/**
+		 * Starts a non-blocking connection attempt for the service of the probe
+		 * @param probe probe of the service
+		 * @param now current time in nanoseconds
+		 */
+		private void startConnect(Probe probe, long now) {
+			Service s = probe.task.getService();
+			if(!s.isContinuePolling()) {
+				//Polling stopped, the service is not scheduled anymore
+				return;
+			}
+			if(probe.address == null) {
+				try {
+					probe.address = probe.task.resolveIfKnown(s);
+				} catch (UnknownHostException e) {
+					probe.startAt = now;
+					complete(probe, ConnectAndCheck.classify(e));
+					return;
+				}
+				if(probe.address == null) {
+					resolveAsync(probe);
+					return;
+				}
+			}
+			ProbeThrottle throttle = serviceMonitorConfig.getProbeThrottle();
+			long wait = throttle.tryAcquire(s.getHost());
+			if(wait > 0) {
+				timers.add(new Timer(now + TimeUnit.MILLISECONDS.toNanos(wait), probe));
+				return;
+			}
+			probe.throttle = throttle;
+			probe.startAt = now;
+			SocketChannel channel = null;
+			try {
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				probe.channel = channel;
+				probe.generation++;
+				InetSocketAddress address = probe.address;
+				//Resolved again for the next check, from the cache usually
+				probe.address = null;
+				if(channel.connect(address)) {
+					complete(probe, ProbeOutcome.CONNECTED);
+					return;
+				}
+				channel.register(selector, SelectionKey.OP_CONNECT, probe);
+				timers.add(new Timer(now + TimeUnit.MILLISECONDS.toNanos(serviceMonitorConfig.getConnectTimeout(s)), probe));
+			} catch (IOException | RuntimeException e) {
+				probe.channel = channel;
+				complete(probe, e instanceof IOException ? ConnectAndCheck.classify((IOException) e) : ProbeOutcome.FAILED);
+			}
+		}
+
+		/**
+		 * Resolves the host of the probe on a resolver thread, the probe comes back
+		 * to this loop through the resolved queue
+		 * @param probe probe of the service
+		 */
+		private void resolveAsync(Probe probe) {
+			try {
+				resolver.execute(() -> {
+					try {
+						probe.address = probe.task.resolve(probe.task.getService());
+					} catch (UnknownHostException | RuntimeException e) {
+						probe.unresolved = true;
+					}
+					resolved.add(probe);
+					selector.wakeup();
+				});
+			} catch (RejectedExecutionException e) {
+				//Engine is shutting down, nothing more to check
+			}
+		}
+
+		/**
+		 * Completes the connection attempt signalled by the selector
+		 * @param probe probe of the service
+		 */
+		private void finishConnect(Probe probe) {
+			try {
+				complete(probe, probe.channel.finishConnect() ? ProbeOutcome.CONNECTED : ProbeOutcome.FAILED);
+			} catch (IOException e) {
+				complete(probe, ConnectAndCheck.classify(e));
+			}
+		}
+
+		/**
+		 * Closes the connection, applies the outcome and schedules the next check
+		 * @param probe probe of the service
+		 * @param outcome outcome of the connection attempt
+		 */
+		private void complete(Probe probe, ProbeOutcome outcome) {
+			close(probe);
+			probe.generation++;
+			probe.task.recordProbe(outcome, System.nanoTime() - probe.startAt);
+			long delay;
+			try {
+				delay = probe.task.handleOutcome(outcome);
+			} catch (RuntimeException e) {
+				//A failing listener must not stop the I/O thread
+				System.err.println("Failed to handle check of service: "+probe.task.getService()+" Error details: "+e.getMessage());
+				delay = probe.task.getService().getPollingInterval();
+			}
+			if(probe.task.getService().isContinuePolling()) {
+				timers.add(new Timer(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay), probe));
+			}
+		}
+
+		private void close(Probe probe) {
+			if(probe.throttle != null) {
+				probe.throttle.release(probe.task.getService().getHost());
+				probe.throttle = null;
+			}
+			if(probe.channel != null) {
+				try {
+					//Closing the channel also cancels its selection key
+					probe.channel.close();
+				} catch (IOException e) {
+					//Nothing to recover, the channel is discarded
+				}
+				probe.channel = null;
+			}
+		}
+
+		private void closeAll() {
+			for(Timer timer : timers) {
+				close(timer.probe);
+			}
+			timers.clear();
+			try {
+				selector.close();
+			} catch (IOException e) {
+				//Nothing to recover, the engine is stopped
+			}
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package com.monitor.core;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.monitor.interfaces.ListenerNotifier;
+import com.monitor.interfaces.ServiceListener;
+import com.monitor.model.ServiceState;
+
+/**
+ * Delivers the notifications to the listeners on its own pool of threads,
+ * so the thread checking a service never waits for a listener.
+ * Each listener has a bounded queue drained by at most one pool thread at a time,
+ * which keeps the notifications of a listener in order. When the queue of a slow
+ * listener is full the OverflowPolicy decides which notification is lost. With COALESCE
+ * a full queue merges the new transition into the latest pending one, from its previous
+ * state to the latest state, and drops it if the service is back in the previous state.
+ * @author akshayhiremath
+ *
+ */
+public class NotificationDispatcher implements ListenerNotifier {
+
+	/**
+	 * Notifications delivered to a listener before its drain task yields to other listeners
+	 */
+	private static final int DRAIN_BATCH = 64;
+
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final ExecutorService executor;
+	private final Map<ServiceListener, ListenerQueue> queues = new ConcurrentHashMap<>();
+
+	private final LongAdder dispatched = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final AtomicLong queueDepth = new AtomicLong();
+	private final AtomicLong maxListenerQueueDepth = new AtomicLong();
+	private final AtomicLong maxDeliveryLagNanos = new AtomicLong();
+
+	/**
+	 * @param threads number of threads delivering the notifications
+	 * @param queueCapacity maximum pending notifications per listener
+	 * @param overflowPolicy policy applied when the queue of a listener is full
+	 */
+	public NotificationDispatcher(int threads, int queueCapacity, OverflowPolicy overflowPolicy) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+		this.overflowPolicy = overflowPolicy;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new MonitorThreadFactory("notifier", true));
+	}
+
+	/**
+	 * Queues the notification of the listener and returns immediately
+	 */
+	@Override
+	public void notifyListener(ServiceListener listener, ServiceState from, ServiceState to) {
+		dispatched.increment();
+		ListenerQueue queue;
+		do {
+			queue = queues.computeIfAbsent(listener, ListenerQueue::new);
+		} while(!queue.offer(from, to));
+		if(queue.scheduled.compareAndSet(false, true)) {
+			try {
+				executor.execute(queue);
+			} catch (RejectedExecutionException e) {
+				//Dispatcher shut down, the pending notifications are not delivered
+				queue.scheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Discards the pending notifications of the listener and removes its queue.
+	 * While a notification is being delivered the queue stays with its drain task,
+	 * which removes it once idle, so a later notification for the same listener is
+	 * delivered after the current one instead of by a second drain task.
+	 * A notification racing with the removal, from a check which started before the
+	 * listener was unregistered, may still be delivered.
+	 */
+	@Override
+	public void discard(ServiceListener listener) {
+		ListenerQueue queue = queues.get(listener);
+		if(queue != null) {
+			queue.discard();
+		}
+	}
+
+	/**
+	 * @return listeners with a queue, pending or not
+	 */
+	public int getListenerCount() {
+		return queues.size();
+	}
+
+	/**
+	 * Stops delivering notifications, pending notifications are discarded
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return notifications accepted by notifyListener()
+	 */
+	public long getDispatched() {
+		return dispatched.sum();
+	}
+	/**
+	 * @return notifications delivered to the listeners
+	 */
+	public long getDelivered() {
+		return delivered.sum();
+	}
+	/**
+	 * @return notifications lost because the queue of the listener was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+	/**
+	 * @return notifications absorbed by a pending notification under COALESCE policy
+	 */
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+	/**
+	 * @return notifications for which the listener threw an exception
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+	/**
+	 * @return notifications currently pending over all the listeners
+	 */
+	public long getQueueDepth() {
+		return queueDepth.get();
+	}
+	/**
+	 * @return largest number of pending notifications seen for a single listener
+	 */
+	public long getMaxListenerQueueDepth() {
+		return maxListenerQueueDepth.get();
+	}
+	/**
+	 * @return longest time in milliseconds a notification waited in a queue before delivery
+	 */
+	public long getMaxDeliveryLagMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxDeliveryLagNanos.get());
+	}
+	/**
+	 * @param listener listener
+	 * @return notifications currently pending for the listener
+	 */
+	public int getQueueDepth(ServiceListener listener) {
+		ListenerQueue queue = queues.get(listener);
+		return queue == null ? 0 : queue.size();
+	}
+
+	/**
+	 * Bounded queue of a listener and its drain task
+	 */
+	private class ListenerQueue implements Runnable {
+
+		private final ServiceListener listener;
+		/**
+		 * Pending notifications in the order they were queued
+		 */
+		private final ArrayDeque<Transition> pending = new ArrayDeque<>();
+		/**
+		 * Set while the drain task is queued in the executor or running
+		 */
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		/**
+		 * Discarded while draining, the drain task removes the queue once idle
+		 */
+		private boolean discarded;
+		/**
+		 * No longer in the map of queues, offers go to a new queue
+		 */
+		private boolean removed;
+
+		ListenerQueue(ServiceListener listener) {
+			this.listener = listener;
+		}
+
+		/**
+		 * Adds a notification according to the overflow policy
+		 * @param from previous state of the service
+		 * @param to new state of the service
+		 * @return false if the queue was removed, the notification belongs to a new queue
+		 */
+		synchronized boolean offer(ServiceState from, ServiceState to) {
+			if(removed) {
+				return false;
+			}
+			discarded = false;
+			if(pending.size() >= queueCapacity) {
+				if(overflowPolicy == OverflowPolicy.COALESCE) {
+					coalesced.increment();
+					Transition last = pending.peekLast();
+					last.to = to;
+					if(last.from == to) {
+						//Back in the previous state, nothing to tell the listener
+						pending.pollLast();
+						queueDepth.decrementAndGet();
+					}
+					return true;
+				}
+				dropped.increment();
+				if(overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+					return true;
+				}
+				pending.poll();
+				queueDepth.decrementAndGet();
+			}
+			pending.add(new Transition(from, to, System.nanoTime()));
+			queueDepth.incrementAndGet();
+			maxListenerQueueDepth.accumulateAndGet(pending.size(), Math::max);
+			return true;
+		}
+
+		/**
+		 * @return oldest pending notification, null if none is pending
+		 */
+		synchronized Transition poll() {
+			Transition transition = pending.poll();
+			if(transition != null) {
+				queueDepth.decrementAndGet();
+			}
+			return transition;
+		}
+
+		synchronized int size() {
+			return pending.size();
+		}
+
+		/**
+		 * Drops the pending notifications, removes the queue unless its drain task
+		 * is scheduled, which removes it when it finds the queue empty
+		 */
+		synchronized void discard() {
+			queueDepth.addAndGet(-pending.size());
+			pending.clear();
+			if(scheduled.get()) {
+				discarded = true;
+			} else {
+				remove();
+			}
+		}
+
+		/**
+		 * Ends the drain task if no notification is pending
+		 * @return true if the drain task is no longer scheduled
+		 */
+		synchronized boolean idle() {
+			if(!pending.isEmpty()) {
+				return false;
+			}
+			scheduled.set(false);
+			if(discarded) {
+				remove();
+			}
+			return true;
+		}
+
+		private void remove() {
+			removed = true;
+			queues.remove(listener, this);
+		}
+
+		@Override
+		public void run() {
+			for(int i = 0; i < DRAIN_BATCH; i++) {
+				Transition transition = poll();
+				if(transition == null) {
+					//A notification offered after poll() found the drain task still scheduled, take it over
+					if(idle()) {
+						return;
+					}
+					continue;
+				}
+				deliver(transition);
+			}
+			//Yield to the other listeners, continue later
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+			}
+		}
+
+		private void deliver(Transition transition) {
+			maxDeliveryLagNanos.accumulateAndGet(System.nanoTime() - transition.queuedAt, Math::max);
+			try {
+				listener.onStateChange(transition.from, transition.to);
+				delivered.increment();
+			} catch (RuntimeException e) {
+				failed.increment();
+				System.err.println("Notification of listener failed for service: "+listener.getService()+" Error details: "+e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Pending state transition of a service
+	 */
+	private static class Transition {
+		final ServiceState from;
+		ServiceState to;
+		/**
+		 * System.nanoTime() when the notification was queued
+		 */
+		final long queuedAt;
+
+		Transition(ServiceState from, ServiceState to, long queuedAt) {
+			this.from = from;
+			this.to = to;
+			this.queuedAt = queuedAt;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.monitor.core;
+
+/**
+ * What the NotificationDispatcher does with a notification
+ * for a listener whose queue is full.
+ * @author akshayhiremath
+ *
+ */
+public enum OverflowPolicy {
+	/**
+	 * The new notification is dropped
+	 */
+	DROP_NEWEST,
+	/**
+	 * The oldest pending notification is dropped to make room for the new one
+	 */
+	DROP_OLDEST,
+	/**
+	 * The latest pending notification absorbs the new one, its transition now ends
+	 * in the latest state. Slow listeners see the transitions up to the capacity of
+	 * their queue, then one transition to the latest state instead of stale ones.
+	 */
+	COALESCE
+}
@@ -0,0 +1,104 @@
+package com.monitor.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import com.monitor.model.Service;
+
+/**
+ * Scheduling policy spreading the checks of the services over their polling interval.
+ * Each service gets a phase within its polling interval derived from the hash of its
+ * host:port, and its checks are aligned to the wall clock at that phase plus a bounded
+ * random jitter. Services starting at the same instant with the same polling interval
+ * are thus checked at different offsets instead of in synchronized bursts, and a
+ * service keeps its phase across restarts of the application.
+ * @author akshayhiremath
+ *
+ */
+public class PhaseSpread {
+
+	private final double maxJitterFraction;
+	private final long maxJitterMillis;
+	private final LongSupplier clock;
+
+	/**
+	 * Phase spread with jitter of at most 5% of the polling interval and one second
+	 */
+	public PhaseSpread() {
+		this(0.05, 1000);
+	}
+
+	/**
+	 * @param maxJitterFraction maximum jitter as fraction of the polling interval
+	 * @param maxJitterMillis maximum jitter in milliseconds
+	 */
+	public PhaseSpread(double maxJitterFraction, long maxJitterMillis) {
+		this(maxJitterFraction, maxJitterMillis, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param maxJitterFraction maximum jitter as fraction of the polling interval
+	 * @param maxJitterMillis maximum jitter in milliseconds
+	 * @param clock wall clock in milliseconds the phases are aligned to
+	 */
+	public PhaseSpread(double maxJitterFraction, long maxJitterMillis, LongSupplier clock) {
+		this.maxJitterFraction = Math.max(0, maxJitterFraction);
+		this.maxJitterMillis = Math.max(0, maxJitterMillis);
+		this.clock = clock;
+	}
+
+	/**
+	 * Phase of the service within its polling interval.
+	 * Depends only on host:port and the polling interval, so it is the same after a restart.
+	 * @param s service
+	 * @param interval polling interval in milliseconds
+	 * @return offset in milliseconds from the start of each interval
+	 */
+	public long phaseOf(Service s, long interval) {
+		if(interval <= 0) {
+			return 0;
+		}
+		//String.hashCode is specified, mixed so that neighbouring ports get distant phases
+		long h = s.getKey().hashCode() * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		return Math.floorMod(h, interval);
+	}
+
+	/**
+	 * Delay before the first check of the service
+	 * @param s service
+	 * @return delay in milliseconds until the next slot of the service plus jitter
+	 */
+	public long initialDelay(Service s) {
+		long interval = s.getPollingInterval();
+		return Math.floorMod(phaseOf(s, interval) - clock.getAsLong(), Math.max(1, interval)) + jitter(interval);
+	}
+
+	/**
+	 * Delay before the next regular check of the service.
+	 * The next slot is taken at least half a polling interval ahead so that a check
+	 * delayed by jitter or a grace period check does not cause two checks in a row.
+	 * @param s service
+	 * @return delay in milliseconds until the next slot of the service plus jitter
+	 */
+	public long nextDelay(Service s) {
+		long interval = s.getPollingInterval();
+		if(interval <= 0) {
+			return 0;
+		}
+		long delay = Math.floorMod(phaseOf(s, interval) - clock.getAsLong(), interval);
+		if(delay < interval / 2) {
+			delay += interval;
+		}
+		return delay + jitter(interval);
+	}
+
+	/**
+	 * @param interval polling interval in milliseconds
+	 * @return random jitter within the bounds for the interval
+	 */
+	private long jitter(long interval) {
+		long bound = Math.min(maxJitterMillis, (long) (interval * maxJitterFraction));
+		return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+	}
+}
@@ -0,0 +1,426 @@
+package com.monitor.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+/**
+ * Append-only history of the checks of all the services.
+ * Records have a fixed width of 24 bytes and are appended to memory-mapped segment
+ * files in a directory. A segment is named after the timestamp of its first record
+ * and a new one is started when it is full. The oldest segments are deleted when
+ * there are more than maxSegments or all their records are older than the retention.
+ * The checks hand their records to a bounded queue and return immediately, a single
+ * writer thread appends them. When the queue is full the record is dropped and counted,
+ * records the writer fails to write are counted apart.
+ * Reads only map the segments overlapping the requested time range and can run while
+ * the writer appends. Within a segment the records are in time order up to ORDER_SLACK_MILLIS,
+ * so the fixed width records serve as their own sparse time index: the first record of
+ * the range is found by binary search and the scan stops past the end of the range.
+ * A read thus touches the records of all the services within the range, not the whole history.
+ * <p>
+ * Record layout: service id (long), timestamp in epoch milliseconds (long),
+ * latency in microseconds (int), outcome (byte), state (byte), flags (short).
+ * A zero timestamp marks the end of the records of a segment.
+ * @author akshayhiremath
+ *
+ */
+public class ProbeHistoryLog implements Closeable {
+
+	public static final int RECORD_SIZE = 24;
+
+	private static final String SEGMENT_PREFIX = "probes-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final short FLAG_TRANSITION = 1;
+	/**
+	 * Records of different checks may be appended slightly out of time order,
+	 * segments within this margin of a requested range are scanned
+	 */
+	private static final long ORDER_SLACK_MILLIS = 60000;
+
+	private static final ProbeOutcome[] OUTCOMES = ProbeOutcome.values();
+	private static final ServiceState[] STATES = ServiceState.values();
+
+	private final File directory;
+	private final int recordsPerSegment;
+	private final int maxSegments;
+	private final long retentionMillis;
+	private final BlockingQueue<ProbeRecord> queue;
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	/**
+	 * Segment being appended to, only used by the writer thread
+	 */
+	private MappedByteBuffer current;
+
+	private final LongAdder appended = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder writeFailures = new LongAdder();
+	private final LongAdder scanned = new LongAdder();
+	private final AtomicLong written = new AtomicLong();
+
+	/**
+	 * History with segments of 1M records (24MB), at most 64 segments kept for 30 days
+	 * @param directory directory of the segment files, created if missing
+	 * @throws IOException if the directory or its last segment cannot be opened
+	 */
+	public ProbeHistoryLog(File directory) throws IOException {
+		this(directory, 1 << 20, 64, TimeUnit.DAYS.toMillis(30), 65536);
+	}
+
+	/**
+	 * @param directory directory of the segment files, created if missing
+	 * @param recordsPerSegment records per segment file
+	 * @param maxSegments number of segments kept
+	 * @param retentionMillis age after which a segment is deleted
+	 * @param queueCapacity records waiting for the writer before new ones are dropped
+	 * @throws IOException if the directory or its last segment cannot be opened
+	 */
+	public ProbeHistoryLog(File directory, int recordsPerSegment, int maxSegments, long retentionMillis, int queueCapacity) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create probe history directory "+directory);
+		}
+		this.directory = directory;
+		this.recordsPerSegment = Math.max(1, recordsPerSegment);
+		this.maxSegments = Math.max(1, maxSegments);
+		this.retentionMillis = retentionMillis;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		reopenLastSegment();
+		this.writer = new MonitorThreadFactory("probe-history", true).newThread(this::writeLoop);
+		this.writer.start();
+	}
+
+	/**
+	 * Stable id of a service, the same for the same host:port across restarts
+	 * @param host host of the service
+	 * @param port port of the service
+	 * @return 64 bit FNV-1a hash of the normalized host:port
+	 */
+	public static long serviceIdOf(String host, int port) {
+		long hash = 0xcbf29ce484222325L;
+		for(byte b : Service.keyOf(host, port).getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Queues the record of a check for the writer, never blocks
+	 * @param s checked service
+	 * @param timestamp time of the check in epoch milliseconds
+	 * @param latencyMicros duration of the connection attempt in microseconds
+	 * @param outcome outcome of the connection attempt
+	 * @param state state of the service after the check
+	 * @param transition whether the check changed the state of the service
+	 * @return false if the record was dropped because the queue is full or the log is closed
+	 */
+	public boolean append(Service s, long timestamp, long latencyMicros, ProbeOutcome outcome, ServiceState state, boolean transition) {
+		if(!running) {
+			return false;
+		}
+		ProbeRecord record = new ProbeRecord(serviceIdOf(s.getHost(), s.getPort()), timestamp,
+				(int) Math.min(Integer.MAX_VALUE, Math.max(0, latencyMicros)), outcome, state, transition);
+		if(!queue.offer(record)) {
+			dropped.increment();
+			return false;
+		}
+		appended.increment();
+		return true;
+	}
+
+	/**
+	 * Waits until the records queued so far are written
+	 * @param timeoutMillis maximum time to wait
+	 * @return true if all the records were written within the timeout
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean flush(long timeoutMillis) throws InterruptedException {
+		long target = appended.sum();
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while(written.get() < target) {
+			if(System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the records of a service within a time range
+	 * @param host host of the service
+	 * @param port port of the service
+	 * @param from start of the range in epoch milliseconds, inclusive
+	 * @param to end of the range in epoch milliseconds, exclusive
+	 * @return records of the service in the order they were appended
+	 * @throws IOException if a segment cannot be read
+	 */
+	public List<ProbeRecord> read(String host, int port, long from, long to) throws IOException {
+		List<ProbeRecord> records = new ArrayList<>();
+		scan(serviceIdOf(host, port), from, to, records::add);
+		return records;
+	}
+
+	/**
+	 * Scans the records of a service within a time range
+	 * @param serviceId stable id of the service
+	 * @param from start of the range in epoch milliseconds, inclusive
+	 * @param to end of the range in epoch milliseconds, exclusive
+	 * @param consumer receives the matching records in the order they were appended
+	 * @throws IOException if a segment cannot be read
+	 */
+	public void scan(long serviceId, long from, long to, Consumer<ProbeRecord> consumer) throws IOException {
+		File[] segments = listSegments();
+		for(int i = 0; i < segments.length; i++) {
+			long first = firstTimestampOf(segments[i]);
+			long next = i + 1 < segments.length ? firstTimestampOf(segments[i + 1]) : Long.MAX_VALUE;
+			if(first - ORDER_SLACK_MILLIS >= to || next <= from - ORDER_SLACK_MILLIS) {
+				continue;
+			}
+			MappedByteBuffer buffer;
+			try (FileChannel channel = FileChannel.open(segments[i].toPath(), StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} catch (NoSuchFileException e) {
+				//Deleted by retention meanwhile
+				continue;
+			}
+			int count = 0;
+			for(int position = firstPositionFrom(buffer, from); position + RECORD_SIZE <= buffer.capacity(); position += RECORD_SIZE) {
+				long timestamp = buffer.getLong(position + 8);
+				//Any later record is at or after the end of the range
+				if(timestamp == 0 || timestamp - ORDER_SLACK_MILLIS >= to) {
+					break;
+				}
+				count++;
+				if(buffer.getLong(position) == serviceId && timestamp >= from && timestamp < to) {
+					consumer.accept(readRecord(buffer, position));
+				}
+			}
+			scanned.add(count);
+		}
+	}
+
+	/**
+	 * Binary search of the records of a segment, free slots counting as after any time.
+	 * Records are in time order up to ORDER_SLACK_MILLIS, the records before the returned
+	 * position are all older than from.
+	 * @return position of the first record at or after from - ORDER_SLACK_MILLIS
+	 */
+	private static int firstPositionFrom(MappedByteBuffer buffer, long from) {
+		long start = Math.max(from, Long.MIN_VALUE + ORDER_SLACK_MILLIS) - ORDER_SLACK_MILLIS;
+		int low = 0;
+		int high = buffer.capacity() / RECORD_SIZE;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			long timestamp = buffer.getLong(mid * RECORD_SIZE + 8);
+			if(timestamp != 0 && timestamp < start) {
+				low = mid + 1;
+			}else {
+				high = mid;
+			}
+		}
+		return low * RECORD_SIZE;
+	}
+
+	/**
+	 * @return records accepted by append()
+	 */
+	public long getAppended() {
+		return appended.sum();
+	}
+	/**
+	 * @return records dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+	/**
+	 * @return records accepted by append() which could not be written to a segment
+	 */
+	public long getWriteFailures() {
+		return writeFailures.sum();
+	}
+	/**
+	 * @return records read by the scans, of any service
+	 */
+	public long getScanned() {
+		return scanned.sum();
+	}
+	/**
+	 * @return records written to the segments, or failed to
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+	/**
+	 * @return number of segment files
+	 */
+	public int getSegmentCount() {
+		return listSegments().length;
+	}
+
+	/**
+	 * Stops the writer after it wrote the queued records
+	 */
+	@Override
+	public void close() {
+		running = false;
+		writer.interrupt();
+		try {
+			writer.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeLoop() {
+		List<ProbeRecord> batch = new ArrayList<>();
+		while(running || !queue.isEmpty()) {
+			try {
+				ProbeRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(first == null) {
+					continue;
+				}
+				batch.add(first);
+			} catch (InterruptedException e) {
+				//Closing, write what is queued
+			}
+			queue.drainTo(batch);
+			for(ProbeRecord record : batch) {
+				try {
+					write(record);
+				} catch (IOException e) {
+					writeFailures.increment();
+					System.err.println("Failed to write probe history to "+directory+" Error details: "+e.getMessage());
+				}
+				written.incrementAndGet();
+			}
+			batch.clear();
+		}
+		if(current != null) {
+			current.force();
+		}
+	}
+
+	private void write(ProbeRecord record) throws IOException {
+		if(current == null || current.remaining() < RECORD_SIZE) {
+			roll(record.getTimestamp());
+		}
+		int position = current.position();
+		current.putLong(position, record.getServiceId());
+		current.putInt(position + 16, record.getLatencyMicros());
+		current.put(position + 20, (byte) record.getOutcome().ordinal());
+		current.put(position + 21, (byte) record.getState().ordinal());
+		current.putShort(position + 22, record.isTransition() ? FLAG_TRANSITION : 0);
+		//Timestamp last, a reader stops at the first zero timestamp
+		current.putLong(position + 8, Math.max(1, record.getTimestamp()));
+		current.position(position + RECORD_SIZE);
+	}
+
+	private static ProbeRecord readRecord(MappedByteBuffer buffer, int position) {
+		return new ProbeRecord(buffer.getLong(position), buffer.getLong(position + 8), buffer.getInt(position + 16),
+				OUTCOMES[buffer.get(position + 20)], STATES[buffer.get(position + 21)],
+				(buffer.getShort(position + 22) & FLAG_TRANSITION) != 0);
+	}
+
+	/**
+	 * Starts a new segment and applies the retention
+	 * @param firstTimestamp timestamp of the first record of the new segment
+	 */
+	private void roll(long firstTimestamp) throws IOException {
+		if(current != null) {
+			current.force();
+		}
+		File segment = new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX, Math.max(0, firstTimestamp), SEGMENT_SUFFIX));
+		long[] existing = Arrays.stream(listSegments()).mapToLong(ProbeHistoryLog::firstTimestampOf).toArray();
+		if(existing.length > 0 && firstTimestamp <= existing[existing.length - 1]) {
+			//Keep the names in time order if the clock went back
+			segment = new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX, existing[existing.length - 1] + 1, SEGMENT_SUFFIX));
+		}
+		current = map(segment);
+		applyRetention(firstTimestamp);
+	}
+
+	private void applyRetention(long now) {
+		File[] segments = listSegments();
+		for(int i = 0; i < segments.length - 1; i++) {
+			boolean tooMany = segments.length - i > maxSegments;
+			//All the records of a segment are older than the first record of the next one
+			boolean expired = firstTimestampOf(segments[i + 1]) < now - retentionMillis;
+			if(!tooMany && !expired) {
+				break;
+			}
+			if(!segments[i].delete()) {
+				System.err.println("Failed to delete probe history segment "+segments[i]);
+			}
+		}
+	}
+
+	/**
+	 * Continues appending to the last segment of an existing history
+	 */
+	private void reopenLastSegment() throws IOException {
+		File[] segments = listSegments();
+		if(segments.length == 0) {
+			return;
+		}
+		MappedByteBuffer buffer = map(segments[segments.length - 1]);
+		//Records are contiguous, find the first free slot
+		int low = 0;
+		int high = buffer.capacity() / RECORD_SIZE;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(buffer.getLong(mid * RECORD_SIZE + 8) != 0) {
+				low = mid + 1;
+			}else {
+				high = mid;
+			}
+		}
+		buffer.position(low * RECORD_SIZE);
+		current = buffer;
+	}
+
+	private MappedByteBuffer map(File segment) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			long size = (long) recordsPerSegment * RECORD_SIZE;
+			if(file.length() < size) {
+				file.setLength(size);
+			}
+			return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+		}
+	}
+
+	private File[] listSegments() {
+		File[] segments = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+		if(segments == null) {
+			return new File[0];
+		}
+		Arrays.sort(segments);
+		return segments;
+	}
+
+	private static long firstTimestampOf(File segment) {
+		String name = segment.getName();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+}
@@ -0,0 +1,36 @@
+package com.monitor.core;
+
+/**
+ * Outcome of a single connection attempt to a service.
+ * @author akshayhiremath
+ *
+ */
+public enum ProbeOutcome {
+	/**
+	 * Connection established, service is up
+	 */
+	CONNECTED,
+	/**
+	 * Connection refused by the host, indicates service is down
+	 */
+	REFUSED,
+	/**
+	 * No answer from the host within the connect timeout, indicates service is down
+	 */
+	TIMEOUT,
+	/**
+	 * Connection attempt failed for any other reason
+	 */
+	FAILED,
+	/**
+	 * Connection established but the HTTP check of the service failed, indicates service is down
+	 */
+	UNHEALTHY;
+	
+	/**
+	 * @return whether the outcome indicates that the service is down
+	 */
+	public boolean isDown() {
+		return this == REFUSED || this == TIMEOUT || this == UNHEALTHY;
+	}
+}
@@ -0,0 +1,60 @@
+package com.monitor.core;
+
+import com.monitor.model.ServiceState;
+
+/**
+ * Single entry of the ProbeHistoryLog: the outcome of a check of a service
+ * and the state of the service after the check.
+ * @author akshayhiremath
+ *
+ */
+public class ProbeRecord {
+
+	private final long serviceId;
+	private final long timestamp;
+	private final int latencyMicros;
+	private final ProbeOutcome outcome;
+	private final ServiceState state;
+	private final boolean transition;
+
+	/**
+	 * @param serviceId stable id of the service, see ProbeHistoryLog.serviceIdOf()
+	 * @param timestamp time of the check in epoch milliseconds
+	 * @param latencyMicros duration of the connection attempt in microseconds
+	 * @param outcome outcome of the connection attempt
+	 * @param state state of the service after the check
+	 * @param transition whether the check changed the state of the service
+	 */
+	public ProbeRecord(long serviceId, long timestamp, int latencyMicros, ProbeOutcome outcome, ServiceState state, boolean transition) {
+		this.serviceId = serviceId;
+		this.timestamp = timestamp;
+		this.latencyMicros = latencyMicros;
+		this.outcome = outcome;
+		this.state = state;
+		this.transition = transition;
+	}
+
+	public long getServiceId() {
+		return serviceId;
+	}
+	public long getTimestamp() {
+		return timestamp;
+	}
+	public int getLatencyMicros() {
+		return latencyMicros;
+	}
+	public ProbeOutcome getOutcome() {
+		return outcome;
+	}
+	public ServiceState getState() {
+		return state;
+	}
+	public boolean isTransition() {
+		return transition;
+	}
+
+	@Override
+	public String toString() {
+		return timestamp+" "+outcome+" "+latencyMicros+"us "+state+(transition ? " (transition)" : "");
+	}
+}
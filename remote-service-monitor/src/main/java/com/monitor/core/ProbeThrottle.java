@@ -0,0 +1,222 @@
+package com.monitor.core;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the rate of the checks the engines perform, per host and globally,
+ * and the number of connection attempts in flight per host.
+ * Many services on the same host would otherwise check it independently and
+ * may trip rate limits or connection tracking on the target side.
+ * The engines ask for a permit before each check and postpone the check by the
+ * returned delay when throttled. A limit of 0 disables it, the default throttle
+ * permits everything.
+ * The limits of a host are dropped once it has no check in flight and its rate
+ * limit is back to a full burst, on release or by a periodic sweep, so hosts no
+ * longer monitored do not accumulate.
+ * @author akshayhiremath
+ *
+ */
+public class ProbeThrottle {
+
+	/**
+	 * Delay before a check throttled by the in-flight limit is retried
+	 */
+	private static final long IN_FLIGHT_RETRY_MILLIS = 20;
+	/**
+	 * Interval between two sweeps of the idle hosts
+	 */
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final double hostRatePerSecond;
+	private final int hostBurst;
+	private final int maxInFlightPerHost;
+	private final TokenBucket globalBucket;
+	private final ConcurrentMap<String, HostLimit> hosts = new ConcurrentHashMap<>();
+	private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+
+	private final LongAdder permitted = new LongAdder();
+	private final LongAdder throttledByGlobalRate = new LongAdder();
+	private final LongAdder throttledByHostRate = new LongAdder();
+	private final LongAdder throttledByInFlight = new LongAdder();
+
+	/**
+	 * Throttle permitting every check
+	 */
+	public ProbeThrottle() {
+		this(0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * @param globalRatePerSecond checks per second over all hosts, 0 for unlimited
+	 * @param globalBurst checks permitted back to back over all hosts
+	 * @param hostRatePerSecond checks per second per host, 0 for unlimited
+	 * @param hostBurst checks permitted back to back per host
+	 * @param maxInFlightPerHost connection attempts in flight per host, 0 for unlimited
+	 */
+	public ProbeThrottle(double globalRatePerSecond, int globalBurst, double hostRatePerSecond, int hostBurst, int maxInFlightPerHost) {
+		this.globalBucket = globalRatePerSecond > 0 ? new TokenBucket(globalRatePerSecond, globalBurst, System.nanoTime()) : null;
+		this.hostRatePerSecond = hostRatePerSecond;
+		this.hostBurst = hostBurst;
+		this.maxInFlightPerHost = maxInFlightPerHost;
+	}
+
+	/**
+	 * Asks for a permit to check a service on the host.
+	 * A granted permit must be released with release(host) once the check is done.
+	 * @param host host of the service
+	 * @return 0 if permitted, otherwise the delay in milliseconds after which to ask again
+	 */
+	public long tryAcquire(String host) {
+		if(globalBucket == null && hostRatePerSecond <= 0 && maxInFlightPerHost <= 0) {
+			permitted.increment();
+			return 0;
+		}
+		long now = System.nanoTime();
+		sweep(now);
+		String key = hostKey(host);
+		HostLimit limit;
+		do {
+			limit = hosts.computeIfAbsent(key, h -> new HostLimit(now));
+		} while(!limit.enter());
+		if(maxInFlightPerHost > 0 && limit.inFlight.get() > maxInFlightPerHost) {
+			limit.inFlight.decrementAndGet();
+			throttledByInFlight.increment();
+			return IN_FLIGHT_RETRY_MILLIS;
+		}
+		long wait = limit.bucket == null ? 0 : limit.bucket.tryAcquire(now);
+		if(wait > 0) {
+			throttledByHostRate.increment();
+		}else if(globalBucket != null && (wait = globalBucket.tryAcquire(now)) > 0) {
+			if(limit.bucket != null) {
+				limit.bucket.refund();
+			}
+			throttledByGlobalRate.increment();
+		}
+		if(wait > 0) {
+			limit.inFlight.decrementAndGet();
+			return Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait));
+		}
+		permitted.increment();
+		return 0;
+	}
+
+	/**
+	 * Releases a permit granted by tryAcquire(host), the limits of the host
+	 * are dropped if it is idle
+	 * @param host host of the service
+	 */
+	public void release(String host) {
+		String key = hostKey(host);
+		HostLimit limit = hosts.get(key);
+		if(limit != null && limit.inFlight.decrementAndGet() == 0 && limit.removeIfIdle(System.nanoTime())) {
+			hosts.remove(key, limit);
+		}
+	}
+
+	/**
+	 * Removes the idle hosts, at most once per SWEEP_INTERVAL_NANOS
+	 */
+	private void sweep(long now) {
+		long next = nextSweep.get();
+		if(now - next < 0 || !nextSweep.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) {
+			return;
+		}
+		hosts.forEach((key, limit) -> {
+			if(limit.removeIfIdle(now)) {
+				hosts.remove(key, limit);
+			}
+		});
+	}
+
+	/**
+	 * Normalizes the host the same way as the key of the service, see Service.keyOf()
+	 */
+	private static String hostKey(String host) {
+		return host == null ? "" : host.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @return checks permitted
+	 */
+	public long getPermitted() {
+		return permitted.sum();
+	}
+	/**
+	 * @return checks postponed by the global rate limit
+	 */
+	public long getThrottledByGlobalRate() {
+		return throttledByGlobalRate.sum();
+	}
+	/**
+	 * @return checks postponed by the rate limit of their host
+	 */
+	public long getThrottledByHostRate() {
+		return throttledByHostRate.sum();
+	}
+	/**
+	 * @return checks postponed because their host had too many connection attempts in flight
+	 */
+	public long getThrottledByInFlight() {
+		return throttledByInFlight.sum();
+	}
+	/**
+	 * @return all postponed checks
+	 */
+	public long getThrottled() {
+		return getThrottledByGlobalRate() + getThrottledByHostRate() + getThrottledByInFlight();
+	}
+	/**
+	 * @return hosts whose limits are currently kept
+	 */
+	public int getHostCount() {
+		return hosts.size();
+	}
+
+	/**
+	 * Limits of a single host
+	 */
+	private class HostLimit {
+		final TokenBucket bucket;
+		/**
+		 * Checks entered, permitted or not yet decided
+		 */
+		final AtomicInteger inFlight = new AtomicInteger();
+		/**
+		 * Removed from the hosts, a check entering it retries on a new one
+		 */
+		private boolean removed;
+
+		HostLimit(long now) {
+			bucket = hostRatePerSecond > 0 ? new TokenBucket(hostRatePerSecond, hostBurst, now) : null;
+		}
+
+		/**
+		 * Counts a check in flight, a host with a check in flight is not removed
+		 * @return false if the host was removed
+		 */
+		synchronized boolean enter() {
+			if(removed) {
+				return false;
+			}
+			inFlight.incrementAndGet();
+			return true;
+		}
+
+		/**
+		 * Marks the host removed if no check is in flight and its bucket is full
+		 * @return true if the host is to be removed from the hosts
+		 */
+		synchronized boolean removeIfIdle(long now) {
+			if(!removed && inFlight.get() == 0 && (bucket == null || bucket.isFull(now))) {
+				removed = true;
+			}
+			return removed;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package com.monitor.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.monitor.model.Client;
+import com.monitor.model.HttpCheck;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+/**
+ * Compact binary snapshot of the services of a ServiceRegistry with their clients,
+ * outage windows and last known state.
+ * The snapshot is written to a temporary file which then replaces the previous
+ * snapshot, so a crash while writing leaves the previous snapshot intact.
+ * Restored services are not validated again and keep their phase of the polling
+ * interval, which only depends on host:port, see PhaseSpread.
+ * The class of each client is recorded, a client is restored as an instance of its class
+ * created with the public no-argument constructor, or as Client if the class is not available
+ * or has no such constructor. Only the fields of Client are restored.
+ * @author akshayhiremath
+ *
+ */
+public class RegistrySnapshot {
+
+	private static final int MAGIC = 0x52534e50;
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final ServiceState[] STATES = ServiceState.values();
+	private static final OutageWindow.Recurrence[] RECURRENCES = OutageWindow.Recurrence.values();
+
+	private RegistrySnapshot() {
+	}
+
+	/**
+	 * Writes the snapshot of the services
+	 * @param services services to write
+	 * @param file snapshot file, replaced once the snapshot is complete
+	 * @return number of services written
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static int write(Iterable<Service> services, File file) throws IOException {
+		File temporary = new File(file.getPath()+".tmp");
+		int written;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), BUFFER_SIZE))) {
+			written = writeTo(services, out);
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return written;
+	}
+
+	/**
+	 * Writes the snapshot of the services to a stream, e.g. to hand them over to another monitor
+	 * @param services services to write
+	 * @param out stream, not closed
+	 * @return number of services written
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static int writeTo(Iterable<Service> services, DataOutputStream out) throws IOException {
+		List<Service> snapshot = new ArrayList<>();
+		services.forEach(snapshot::add);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(snapshot.size());
+		for(Service s : snapshot) {
+			writeService(out, s);
+		}
+		return snapshot.size();
+	}
+
+	/**
+	 * Reads the services of a snapshot
+	 * @param file snapshot file
+	 * @return services with their clients, outage windows and state
+	 * @throws IOException if the snapshot cannot be read or is not a snapshot
+	 */
+	public static List<Service> read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+			return readFrom(in);
+		} catch (IOException e) {
+			throw new IOException(file+": "+e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the services of a snapshot from a stream
+	 * @param in stream positioned at the start of a snapshot, not closed
+	 * @return services with their clients, outage windows and state
+	 * @throws IOException if the snapshot cannot be read or is not a snapshot
+	 */
+	public static List<Service> readFrom(DataInputStream in) throws IOException {
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not a registry snapshot");
+		}
+		int version = in.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported registry snapshot version "+version);
+		}
+		int count = in.readInt();
+		List<Service> services = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			services.add(readService(in));
+		}
+		return services;
+	}
+
+	private static void writeService(DataOutputStream out, Service s) throws IOException {
+		out.writeUTF(s.getHost());
+		out.writeInt(s.getPort());
+		out.writeInt(s.getPollingInterval());
+		out.writeInt(s.getConnectTimeout());
+		out.writeByte(s.getState().ordinal());
+		out.writeInt(s.getLastClientIdTracker());
+		List<Client> clients = s.getClients();
+		out.writeInt(clients.size());
+		for(Client c : clients) {
+			out.writeUTF(c.getClass().getName());
+			out.writeInt(c.getId());
+			out.writeInt(c.getPollingInterval());
+			List<OutageWindow> windows = c.getServiceOutages();
+			out.writeInt(windows.size());
+			for(OutageWindow w : windows) {
+				writeTime(out, w.getStartTime());
+				writeTime(out, w.getEndTime());
+				out.writeByte(w.getRecurrence().ordinal());
+			}
+		}
+		HttpCheck check = s.getHttpCheck();
+		out.writeBoolean(check != null);
+		if(check != null) {
+			out.writeUTF(check.getPath());
+			out.writeInt(check.getExpectedStatus());
+			out.writeBoolean(check.isTls());
+		}
+		out.writeLong(s.getStateVersion());
+	}
+
+	private static Service readService(DataInputStream in) throws IOException {
+		Service s = new Service(in.readUTF(), in.readInt());
+		int pollingInterval = in.readInt();
+		s.setConnectTimeout(in.readInt());
+		ServiceState state = STATES[in.readByte()];
+		int lastClientIdTracker = in.readInt();
+		int clients = in.readInt();
+		for(int i = 0; i < clients; i++) {
+			Client c = newClient(in.readUTF());
+			int id = in.readInt();
+			c.setService(s);
+			c.setPollingInterval(in.readInt());
+			int windows = in.readInt();
+			for(int j = 0; j < windows; j++) {
+				OutageWindow w = new OutageWindow(readTime(in), readTime(in));
+				w.setRecurrence(RECURRENCES[in.readByte()]);
+				c.addServiceOutage(w);
+			}
+			s.registerClient(c);
+			c.setId(id);
+		}
+		if(in.readBoolean()) {
+			s.setHttpCheck(new HttpCheck(in.readUTF(), in.readInt(), in.readBoolean()));
+		}
+		s.setPollingInterval(pollingInterval);
+		s.restore(state, in.readLong(), lastClientIdTracker);
+		return s;
+	}
+
+	/**
+	 * Creates a client of the recorded class, a Client if the class cannot be instantiated
+	 */
+	private static Client newClient(String className) {
+		if(!Client.class.getName().equals(className)) {
+			try {
+				Class<?> type = Class.forName(className);
+				if(Client.class.isAssignableFrom(type)) {
+					return (Client) type.getConstructor().newInstance();
+				}
+			} catch (ReflectiveOperationException | LinkageError e) {
+				//Reported below
+			}
+			System.err.println("Client class "+className+" cannot be restored, restoring the client as "+Client.class.getName());
+		}
+		return new Client();
+	}
+
+	/**
+	 * Local date time as seconds and nanoseconds, independent of the time zone
+	 */
+	private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+		out.writeBoolean(time != null);
+		if(time != null) {
+			out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+			out.writeInt(time.getNano());
+		}
+	}
+
+	private static LocalDateTime readTime(DataInputStream in) throws IOException {
+		return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+	}
+}
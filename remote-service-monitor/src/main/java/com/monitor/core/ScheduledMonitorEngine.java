@@ -0,0 +1,85 @@
+package com.monitor.core;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.monitor.interfaces.MonitorEngine;
+import com.monitor.model.Service;
+
+/**
+ * Monitor engine running all the probes on a small bounded pool of worker threads.
+ * Each service gets a single-shot ConnectAndCheck task which is re-scheduled
+ * on the delay queue of the pool after every check, so no thread is held
+ * while a service waits for its next polling interval.
+ * A check postponed by the ProbeThrottle is re-scheduled after the throttling delay,
+ * a check failing with a RuntimeException after the polling interval.
+ * @author akshayhiremath
+ *
+ */
+public class ScheduledMonitorEngine implements MonitorEngine {
+
+	private final ServiceMonitorConfig serviceMonitorConfig;
+
+	private ScheduledThreadPoolExecutor executor;
+
+	public ScheduledMonitorEngine(ServiceMonitorConfig serviceMonitorConfig) {
+		this.serviceMonitorConfig = serviceMonitorConfig;
+	}
+
+	@Override
+	public synchronized void start() {
+		if(executor == null) {
+			executor = new ScheduledThreadPoolExecutor(serviceMonitorConfig.getProbeWorkerThreads(),
+					new MonitorThreadFactory("probe-worker", false));
+			//Pending checks are dropped on shutdown instead of being executed
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+			executor.setRemoveOnCancelPolicy(true);
+		}
+	}
+
+	@Override
+	public void monitor(Service service, long initialDelay) {
+		ConnectAndCheck task = new ConnectAndCheck(service, serviceMonitorConfig);
+		executor.schedule(() -> runAndReschedule(task), initialDelay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Executes a single check and schedules the next one
+	 * after the delay returned by the check.
+	 * @param task check of a service
+	 */
+	private void runAndReschedule(ConnectAndCheck task) {
+		if(!task.getService().isContinuePolling()) {
+			return;
+		}
+		ProbeThrottle throttle = serviceMonitorConfig.getProbeThrottle();
+		String host = task.getService().getHost();
+		long delay = throttle.tryAcquire(host);
+		if(delay == 0) {
+			try {
+				delay = task.check();
+			} catch (RuntimeException e) {
+				//A failing check or listener must not stop the monitoring of the service
+				System.err.println("Check of service "+task.getService()+" failed: "+e);
+				delay = task.getService().getPollingInterval();
+			} finally {
+				throttle.release(host);
+			}
+		}
+		if(task.getService().isContinuePolling()) {
+			try {
+				executor.schedule(() -> runAndReschedule(task), delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				//Engine is shutting down, nothing more to schedule
+			}
+		}
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		if(executor != null) {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.monitor.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.monitor.model.ProbeStatistics;
+
+/**
+ * Probe counters and connect latency histogram of a single service.
+ * The checks of a service are performed one at a time, so the counters
+ * are updated without contention on the probe path.
+ * @author akshayhiremath
+ *
+ */
+public class ServiceMetrics {
+
+	final LatencyHistogram latency = new LatencyHistogram();
+	final AtomicLong probes = new AtomicLong();
+	final AtomicLong connected = new AtomicLong();
+	final AtomicLong refusals = new AtomicLong();
+	final AtomicLong timeouts = new AtomicLong();
+	final AtomicLong failures = new AtomicLong();
+	final AtomicLong unhealthy = new AtomicLong();
+	final AtomicLong graceRechecks = new AtomicLong();
+	final AtomicLong notifications = new AtomicLong();
+
+	/**
+	 * Records the outcome of a connection attempt, 
+	 * the latency of successful attempts goes to the histogram
+	 * @param outcome outcome of the attempt
+	 * @param latencyNanos duration of the attempt in nanoseconds
+	 */
+	public void recordProbe(ProbeOutcome outcome, long latencyNanos) {
+		probes.incrementAndGet();
+		switch(outcome) {
+		case CONNECTED:
+			connected.incrementAndGet();
+			latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+			break;
+		case REFUSED:
+			refusals.incrementAndGet();
+			break;
+		case TIMEOUT:
+			timeouts.incrementAndGet();
+			break;
+		case UNHEALTHY:
+			unhealthy.incrementAndGet();
+			break;
+		default:
+			failures.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records a confirmation check scheduled after the grace period
+	 */
+	public void recordGraceRecheck() {
+		graceRechecks.incrementAndGet();
+	}
+
+	/**
+	 * Records a notification round to the clients of the service
+	 */
+	public void recordNotification() {
+		notifications.incrementAndGet();
+	}
+
+	/**
+	 * @return snapshot of the counters and latencies
+	 */
+	public ProbeStatistics snapshot() {
+		return new ProbeStatistics(probes.get(), connected.get(), refusals.get(), timeouts.get(), failures.get(), unhealthy.get(),
+				graceRechecks.get(), notifications.get(), latency.getMean(), latency.getValueAtPercentile(50),
+				latency.getValueAtPercentile(99), latency.getMax());
+	}
+}
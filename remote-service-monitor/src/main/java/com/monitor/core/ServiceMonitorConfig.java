@@ -1,12 +1,14 @@
 package com.monitor.core;
 
-import java.util.HashSet;
+import java.io.File;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import com.monitor.interfaces.HostResolver;
 import com.monitor.model.Service;
+import com.monitor.util.ResolverCache;
 /**
  * Central configuration of services and their caller clients.
  * Warning: This is not a perfect singleton, the constructor of
@@ -21,20 +23,281 @@ import com.monitor.model.Service;
 @Scope(value ="Singleton")
 public class ServiceMonitorConfig {
 	@Autowired
-	private HashSet<Service> serviceRegister;
+	private ServiceRegistry serviceRegister;
+	/**
+	 * Resolver of the service hosts used by the checks,
+	 * shared with the input validation, a ResolverCache by default
+	 */
+	@Autowired(required=false)
+	private HostResolver hostResolver=new ResolverCache();
+	/**
+	 * Rate and concurrency limits of the checks,
+	 * permits every check by default
+	 */
+	private volatile ProbeThrottle probeThrottle=new ProbeThrottle();
+	/**
+	 * Spreads the checks of the services over their polling interval
+	 */
+	private volatile PhaseSpread phaseSpread=new PhaseSpread();
+	/**
+	 * Cadence of the checks around and after a failure
+	 */
+	private volatile AdaptivePolling adaptivePolling=new AdaptivePolling();
+	/**
+	 * Thresholds of the state machine of the services
+	 */
+	private volatile StatusPolicy statusPolicy=new StatusPolicy();
+	/**
+	 * Checks the services with an HttpCheck over pooled keep-alive connections
+	 */
+	private volatile HttpProbe httpProbe=new HttpProbe();
+	/**
+	 * Probe counters and connect latencies of the services
+	 */
+	private final MonitorMetrics metrics=new MonitorMetrics();
+	/**
+	 * Persistent history of the checks, null when the history is not kept
+	 */
+	private volatile ProbeHistoryLog probeHistory;
 	/**
 	 * Grace period to retry within before notifying
 	 * the client of failure
 	 */
 	private volatile int gracePeriod=1000;
+	
+	/**
+	 * Execution mode of the monitoring, decides the MonitorEngine
+	 * used by MonitorService
+	 */
+	private volatile ExecutionMode executionMode=ExecutionMode.SCHEDULED;
+	
+	/**
+	 * Number of worker threads executing the probes in SCHEDULED execution mode
+	 */
+	private volatile int probeWorkerThreads=Math.max(2, Runtime.getRuntime().availableProcessors());
+	
+	/**
+	 * Number of I/O threads multiplexing the connection attempts in NIO execution mode
+	 */
+	private volatile int nioSelectorThreads=1;
+	
+	/**
+	 * File of the registry snapshot restored on start and written periodically,
+	 * null when no snapshot is kept
+	 */
+	private volatile File snapshotFile;
+	
+	/**
+	 * Whether services in the snapshot but not in the register, e.g. added at runtime,
+	 * are monitored again on start. When turned off only the configured services are restored.
+	 */
+	private volatile boolean restoreUnconfiguredServices=true;
+	
+	/**
+	 * Interval in milliseconds between two registry snapshots
+	 */
+	private volatile long snapshotInterval=60000;
+	
+	/**
+	 * Number of threads validating the input of bulk registrations in parallel
+	 */
+	private volatile int validationThreads=16;
+	
+	/**
+	 * Number of threads delivering the notifications to the clients
+	 */
+	private volatile int notifierThreads=2;
+	
+	/**
+	 * Maximum number of pending notifications per client
+	 */
+	private volatile int notificationQueueCapacity=64;
+	
+	/**
+	 * What happens to a notification for a client whose queue is full
+	 */
+	private volatile OverflowPolicy notificationOverflowPolicy=OverflowPolicy.COALESCE;
+	
+	/**
+	 * Connect timeout in milliseconds for the services without their own connect timeout
+	 */
+	private volatile int connectTimeout=5000;
+	
+	/**
+	 * Upper bound in milliseconds of any connection attempt, regardless of the
+	 * connect timeout of the service
+	 */
+	private volatile int probeDeadline=10000;
 
-	public HashSet<Service> getServiceRegister() {
+	public ServiceRegistry getServiceRegister() {
 		return serviceRegister;
 	}
+	public void setServiceRegister(ServiceRegistry serviceRegister) {
+		this.serviceRegister = serviceRegister;
+	}
+	public HostResolver getHostResolver() {
+		return hostResolver;
+	}
+	public void setHostResolver(HostResolver hostResolver) {
+		this.hostResolver = hostResolver;
+	}
+	public ProbeThrottle getProbeThrottle() {
+		return probeThrottle;
+	}
+	/**
+	 * Sets the rate and concurrency limits of the checks,
+	 * takes effect for the checks performed after the call
+	 * @param probeThrottle limits of the checks
+	 */
+	public void setProbeThrottle(ProbeThrottle probeThrottle) {
+		this.probeThrottle = probeThrottle == null ? new ProbeThrottle() : probeThrottle;
+	}
+	public PhaseSpread getPhaseSpread() {
+		return phaseSpread;
+	}
+	public void setPhaseSpread(PhaseSpread phaseSpread) {
+		this.phaseSpread = phaseSpread == null ? new PhaseSpread() : phaseSpread;
+	}
+	public AdaptivePolling getAdaptivePolling() {
+		return adaptivePolling;
+	}
+	public void setAdaptivePolling(AdaptivePolling adaptivePolling) {
+		this.adaptivePolling = adaptivePolling == null ? new AdaptivePolling() : adaptivePolling;
+	}
+	public StatusPolicy getStatusPolicy() {
+		return statusPolicy;
+	}
+	public void setStatusPolicy(StatusPolicy statusPolicy) {
+		this.statusPolicy = statusPolicy == null ? new StatusPolicy() : statusPolicy;
+	}
+	public HttpProbe getHttpProbe() {
+		return httpProbe;
+	}
+	public void setHttpProbe(HttpProbe httpProbe) {
+		this.httpProbe = httpProbe == null ? new HttpProbe() : httpProbe;
+	}
+	public ProbeHistoryLog getProbeHistory() {
+		return probeHistory;
+	}
+	/**
+	 * Sets the history the checks are appended to
+	 * @param probeHistory history of the checks, null to stop keeping it
+	 */
+	public void setProbeHistory(ProbeHistoryLog probeHistory) {
+		this.probeHistory = probeHistory;
+	}
+	public MonitorMetrics getMetrics() {
+		return metrics;
+	}
 	public int getGracePeriod() {
 		return gracePeriod;
 	}
 	public synchronized void setGracePeriod(int gracePeriod) {
 		this.gracePeriod = gracePeriod;
 	}
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+	/**
+	 * Sets the execution mode. Takes effect when MonitorService is started.
+	 * @param executionMode execution mode of the monitoring
+	 */
+	public void setExecutionMode(ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+	public int getProbeWorkerThreads() {
+		return probeWorkerThreads;
+	}
+	public void setProbeWorkerThreads(int probeWorkerThreads) {
+		this.probeWorkerThreads = probeWorkerThreads;
+	}
+	public int getNioSelectorThreads() {
+		return nioSelectorThreads;
+	}
+	public void setNioSelectorThreads(int nioSelectorThreads) {
+		this.nioSelectorThreads = nioSelectorThreads;
+	}
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+	public void setSnapshotFile(File snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+	public boolean isRestoreUnconfiguredServices() {
+		return restoreUnconfiguredServices;
+	}
+	public void setRestoreUnconfiguredServices(boolean restoreUnconfiguredServices) {
+		this.restoreUnconfiguredServices = restoreUnconfiguredServices;
+	}
+	public long getSnapshotInterval() {
+		return snapshotInterval;
+	}
+	public void setSnapshotInterval(long snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+	}
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+	/**
+	 * Sets the connect timeout of the services without their own connect timeout
+	 * @param connectTimeout timeout in milliseconds, greater than 0
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		if(connectTimeout <= 0) {
+			throw new IllegalArgumentException("Connect timeout must be greater than 0: "+connectTimeout);
+		}
+		this.connectTimeout = connectTimeout;
+	}
+	public int getProbeDeadline() {
+		return probeDeadline;
+	}
+	/**
+	 * Sets the upper bound of any connection attempt
+	 * @param probeDeadline deadline in milliseconds, greater than 0
+	 */
+	public void setProbeDeadline(int probeDeadline) {
+		if(probeDeadline <= 0) {
+			throw new IllegalArgumentException("Probe deadline must be greater than 0: "+probeDeadline);
+		}
+		this.probeDeadline = probeDeadline;
+	}
+	/**
+	 * Connect timeout applicable to the service.
+	 * The connect timeout of the service if set, otherwise the default connect timeout,
+	 * in both cases capped by the probe deadline.
+	 * @param service service to connect to
+	 * @return connect timeout in milliseconds, greater than 0
+	 * @throws IllegalArgumentException if the connect timeout of the service is negative
+	 */
+	public int getConnectTimeout(Service service) {
+		if(service.getConnectTimeout() < 0) {
+			throw new IllegalArgumentException("Connect timeout of "+service+" must not be negative: "+service.getConnectTimeout());
+		}
+		int timeout = service.getConnectTimeout() > 0 ? service.getConnectTimeout() : connectTimeout;
+		return Math.min(timeout, probeDeadline);
+	}
+	public int getNotifierThreads() {
+		return notifierThreads;
+	}
+	public void setNotifierThreads(int notifierThreads) {
+		this.notifierThreads = notifierThreads;
+	}
+	public int getNotificationQueueCapacity() {
+		return notificationQueueCapacity;
+	}
+	public void setNotificationQueueCapacity(int notificationQueueCapacity) {
+		this.notificationQueueCapacity = notificationQueueCapacity;
+	}
+	public OverflowPolicy getNotificationOverflowPolicy() {
+		return notificationOverflowPolicy;
+	}
+	public void setNotificationOverflowPolicy(OverflowPolicy notificationOverflowPolicy) {
+		this.notificationOverflowPolicy = notificationOverflowPolicy;
+	}
+	public int getValidationThreads() {
+		return validationThreads;
+	}
+	public void setValidationThreads(int validationThreads) {
+		this.validationThreads = validationThreads;
+	}
 }
@@ -0,0 +1,81 @@
+package com.monitor.core;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import com.monitor.model.Service;
+
+/**
+ * Central register of all the services monitored by MonitorService.
+ * Services are indexed by their normalized HOST:PORT key, so get, add and remove
+ * are constant time and safe under concurrent registration, while the monitoring
+ * iterates the register. Iteration is weakly consistent, it never throws
+ * ConcurrentModificationException.
+ * Host and port of a registered service must not be changed.
+ * @author akshayhiremath
+ *
+ */
+public class ServiceRegistry implements Iterable<Service> {
+
+	private final ConcurrentMap<String, Service> services = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds the service if no service with same host and port is registered
+	 * @param service service to add
+	 * @return true if added, false if a service with the same host and port is already registered
+	 */
+	public boolean add(Service service) {
+		return services.putIfAbsent(service.getKey(), service) == null;
+	}
+
+	/**
+	 * Finds the registered service instance with the host and port of the passed service
+	 * @param service service identifying the registered service by host and port
+	 * @return registered service or null if not registered
+	 */
+	public Service get(Service service) {
+		return services.get(service.getKey());
+	}
+
+	/**
+	 * Finds the registered service instance with the host and port
+	 * @param host domain name/ip address of service
+	 * @param port listening port
+	 * @return registered service or null if not registered
+	 */
+	public Service get(String host, int port) {
+		return services.get(Service.keyOf(host, port));
+	}
+
+	/**
+	 * Removes the registered service with the host and port of the passed service
+	 * @param service service identifying the registered service by host and port
+	 * @return removed service or null if not registered
+	 */
+	public Service remove(Service service) {
+		return services.remove(service.getKey());
+	}
+
+	public boolean contains(Service service) {
+		return services.containsKey(service.getKey());
+	}
+
+	public int size() {
+		return services.size();
+	}
+
+	public boolean isEmpty() {
+		return services.isEmpty();
+	}
+
+	public Stream<Service> stream() {
+		return services.values().stream();
+	}
+
+	@Override
+	public Iterator<Service> iterator() {
+		return services.values().iterator();
+	}
+}
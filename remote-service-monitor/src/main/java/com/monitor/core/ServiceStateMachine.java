@@ -0,0 +1,103 @@
+package com.monitor.core;
+
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+/**
+ * Drives the ServiceState of a service from the outcomes of its checks.
+ * The clients are only notified on transitions, a service staying DOWN
+ * or UP does not notify them again.
+ * Only the check of the service uses its state machine, one check at a time.
+ * @author akshayhiremath
+ *
+ */
+public class ServiceStateMachine {
+
+	private final Service service;
+	private int consecutiveFailures;
+	private int consecutiveSuccesses;
+	/**
+	 * Last confirmed state, UP or DOWN, also tracked while FLAPPING
+	 */
+	private boolean settledUp;
+	private double flapPenalty;
+	private long flapPenaltyAt;
+
+	public ServiceStateMachine(Service service) {
+		this.service = service;
+		this.settledUp = service.getState().isAvailable();
+	}
+
+	/**
+	 * Applies the result of a check
+	 * @param up true if the service answered, false if it refused or timed out
+	 * @param policy thresholds of the state machine
+	 * @param now current time in milliseconds
+	 * @return true if the state of the service changed
+	 */
+	public boolean onCheck(boolean up, StatusPolicy policy, long now) {
+		if(up) {
+			consecutiveFailures = 0;
+			consecutiveSuccesses++;
+		}else {
+			consecutiveSuccesses = 0;
+			consecutiveFailures++;
+		}
+		boolean confirmedChange = false;
+		if(up && !settledUp && consecutiveSuccesses >= policy.getUpThreshold()) {
+			settledUp = true;
+			confirmedChange = true;
+		}else if(!up && settledUp && consecutiveFailures >= policy.getDownThreshold()) {
+			settledUp = false;
+			confirmedChange = true;
+		}
+		double penalty = decayedPenalty(policy, now);
+		if(confirmedChange) {
+			penalty += 1;
+		}
+		flapPenalty = penalty;
+		flapPenaltyAt = now;
+		return service.transitionTo(nextState(up, confirmedChange, policy));
+	}
+
+	private ServiceState nextState(boolean up, boolean confirmedChange, StatusPolicy policy) {
+		ServiceState current = service.getState();
+		if(current == ServiceState.FLAPPING) {
+			if(flapPenalty >= policy.getFlapReuseThreshold()) {
+				return ServiceState.FLAPPING;
+			}
+			//Settled, report the last confirmed state
+			return settledUp ? ServiceState.UP : ServiceState.DOWN;
+		}
+		if(confirmedChange && flapPenalty >= policy.getFlapSuppressThreshold()) {
+			return ServiceState.FLAPPING;
+		}
+		if(settledUp) {
+			return up ? ServiceState.UP : ServiceState.SUSPECT;
+		}
+		return up ? ServiceState.RECOVERING : ServiceState.DOWN;
+	}
+
+	private double decayedPenalty(StatusPolicy policy, long now) {
+		if(flapPenalty == 0) {
+			return 0;
+		}
+		double penalty = flapPenalty * Math.pow(0.5, (double) (now - flapPenaltyAt) / policy.getFlapHalfLife());
+		//Negligible penalty is forgotten
+		return penalty < 0.01 ? 0 : penalty;
+	}
+
+	/**
+	 * @return consecutive failed checks, 0 after a successful check
+	 */
+	public int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * @return current flap penalty, not decayed since the last check
+	 */
+	public double getFlapPenalty() {
+		return flapPenalty;
+	}
+}
@@ -0,0 +1,70 @@
+package com.monitor.core;
+
+/**
+ * Thresholds of the state machine of the services.
+ * A failure is confirmed after downThreshold consecutive failed checks and a recovery
+ * after upThreshold consecutive successful checks. The checks confirming a failure are
+ * spread over the grace period, see getConfirmationDelay(). Flapping is damped like route flap
+ * damping: every confirmed change between UP and DOWN adds a penalty of 1 which decays
+ * with the half-life. Above the suppress threshold the service is FLAPPING and its
+ * changes are not notified, below the reuse threshold it settles in its current state.
+ * @author akshayhiremath
+ *
+ */
+public class StatusPolicy {
+
+	private final int downThreshold;
+	private final int upThreshold;
+	private final long flapHalfLife;
+	private final double flapSuppressThreshold;
+	private final double flapReuseThreshold;
+
+	/**
+	 * Failure confirmed by the check after the grace period, recovery confirmed by
+	 * one more check, flapping at 3 changes within about five minutes
+	 */
+	public StatusPolicy() {
+		this(2, 2, 300000, 3, 1);
+	}
+
+	/**
+	 * @param downThreshold consecutive failed checks confirming a failure
+	 * @param upThreshold consecutive successful checks confirming a recovery
+	 * @param flapHalfLife half-life of the flap penalty in milliseconds
+	 * @param flapSuppressThreshold penalty at which the service is FLAPPING
+	 * @param flapReuseThreshold penalty below which a FLAPPING service settles
+	 */
+	public StatusPolicy(int downThreshold, int upThreshold, long flapHalfLife, double flapSuppressThreshold, double flapReuseThreshold) {
+		this.downThreshold = Math.max(1, downThreshold);
+		this.upThreshold = Math.max(1, upThreshold);
+		this.flapHalfLife = Math.max(1, flapHalfLife);
+		this.flapSuppressThreshold = flapSuppressThreshold;
+		this.flapReuseThreshold = Math.min(flapReuseThreshold, flapSuppressThreshold);
+	}
+
+	public int getDownThreshold() {
+		return downThreshold;
+	}
+	/**
+	 * Delay between the checks confirming a suspected failure.
+	 * The downThreshold - 1 confirmation checks are spaced evenly so that
+	 * the last one is performed when the grace period is over.
+	 * @param gracePeriod grace period in milliseconds
+	 * @return delay in milliseconds before each confirmation check
+	 */
+	public long getConfirmationDelay(long gracePeriod) {
+		return gracePeriod / Math.max(1, downThreshold - 1);
+	}
+	public int getUpThreshold() {
+		return upThreshold;
+	}
+	public long getFlapHalfLife() {
+		return flapHalfLife;
+	}
+	public double getFlapSuppressThreshold() {
+		return flapSuppressThreshold;
+	}
+	public double getFlapReuseThreshold() {
+		return flapReuseThreshold;
+	}
+}
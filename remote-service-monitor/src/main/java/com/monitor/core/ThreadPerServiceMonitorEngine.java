@@ -0,0 +1,107 @@
+package com.monitor.core;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+import com.monitor.interfaces.MonitorEngine;
+import com.monitor.model.Service;
+
+/**
+ * Monitor engine with one dedicated thread per service.
+ * The thread repeats the ConnectAndCheck and sleeps between the checks
+ * until the polling of the service is stopped.
+ * A check postponed by the ProbeThrottle is retried after the throttling delay.
+ * The threads are interrupted and end when the engine is shut down.
+ * @author akshayhiremath
+ *
+ */
+public class ThreadPerServiceMonitorEngine implements MonitorEngine {
+
+	private final ServiceMonitorConfig serviceMonitorConfig;
+
+	private final ThreadFactory threadFactory;
+
+	private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean shutdown;
+
+	public ThreadPerServiceMonitorEngine(ServiceMonitorConfig serviceMonitorConfig) {
+		this(serviceMonitorConfig, new MonitorThreadFactory("service-monitor", false));
+	}
+	
+	/**
+	 * @param serviceMonitorConfig central configuration
+	 * @param threadFactory factory creating the thread of each service
+	 */
+	protected ThreadPerServiceMonitorEngine(ServiceMonitorConfig serviceMonitorConfig, ThreadFactory threadFactory) {
+		this.serviceMonitorConfig = serviceMonitorConfig;
+		this.threadFactory = threadFactory;
+	}
+
+	@Override
+	public void start() {
+		//Threads are created per service in monitor()
+	}
+
+	@Override
+	public void monitor(Service service, long initialDelay) {
+		if(shutdown) {
+			return;
+		}
+		ConnectAndCheck task = new ConnectAndCheck(service, serviceMonitorConfig);
+		Thread thread = threadFactory.newThread(() -> {
+			try {
+				poll(task, initialDelay);
+			} finally {
+				threads.remove(Thread.currentThread());
+			}
+		});
+		threads.add(thread);
+		thread.start();
+	}
+
+	/**
+	 * Repeats the check of the service until its polling is stopped or the engine is shut down
+	 * @param task check of a service
+	 * @param initialDelay delay in milliseconds before the first check
+	 */
+	private void poll(ConnectAndCheck task, long initialDelay) {
+		Service service = task.getService();
+		long delay = initialDelay;
+		//Whether to continue polling or to stop
+		while(service.isContinuePolling() && !shutdown) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				if(shutdown) {
+					return;
+				}
+				task.handleThreadInterruption(e, service);
+			}
+			ProbeThrottle throttle = serviceMonitorConfig.getProbeThrottle();
+			String host = service.getHost();
+			delay = throttle.tryAcquire(host);
+			if(delay == 0) {
+				try {
+					delay = task.check();
+				} catch (RuntimeException e) {
+					//A failing check or listener must not end the thread of the service
+					System.err.println("Check of service "+service+" failed: "+e);
+					delay = service.getPollingInterval();
+				} finally {
+					throttle.release(host);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		shutdown = true;
+		//Wakes the threads up from the sleep between the checks, they end instead of checking again
+		for(Thread thread : threads) {
+			thread.interrupt();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.monitor.core;
+
+/**
+ * Token bucket rate limiter.
+ * Holds at most burst tokens and refills at the given rate, each permitted
+ * action takes one token.
+ * @author akshayhiremath
+ *
+ */
+public class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param ratePerSecond tokens added per second
+	 * @param burst maximum number of tokens, actions permitted back to back
+	 * @param now current time in nanoseconds
+	 */
+	public TokenBucket(double ratePerSecond, int burst, long now) {
+		this.capacity = Math.max(1, burst);
+		this.tokensPerNano = ratePerSecond / 1e9;
+		this.tokens = capacity;
+		this.lastRefill = now;
+	}
+
+	/**
+	 * Takes a token if one is available
+	 * @param now current time in nanoseconds
+	 * @return 0 if a token was taken, otherwise nanoseconds until a token is available
+	 */
+	public synchronized long tryAcquire(long now) {
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+		if(tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return (long) Math.ceil((1 - tokens) / tokensPerNano);
+	}
+
+	/**
+	 * @param now current time in nanoseconds
+	 * @return true if the bucket holds all its tokens, a new bucket would behave the same
+	 */
+	public synchronized boolean isFull(long now) {
+		return tokens + (now - lastRefill) * tokensPerNano >= capacity;
+	}
+
+	/**
+	 * Returns a token taken for an action which was not performed
+	 */
+	public synchronized void refund() {
+		tokens = Math.min(capacity, tokens + 1);
+	}
+}
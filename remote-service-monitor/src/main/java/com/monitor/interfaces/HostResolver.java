@@ -0,0 +1,37 @@
+package com.monitor.interfaces;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves host names of the services to IP addresses.
+ * @author akshayhiremath
+ *
+ */
+public interface HostResolver {
+
+	/**
+	 * Resolver asking the system name service on every call
+	 */
+	public static final HostResolver SYSTEM = InetAddress::getAllByName;
+
+	/**
+	 * Resolves the host
+	 * @param host domain name or IP address
+	 * @return addresses of the host, at least one
+	 * @throws UnknownHostException if the host cannot be resolved
+	 */
+	public InetAddress[] resolve(String host) throws UnknownHostException;
+
+	/**
+	 * Returns the addresses of the host only if they are known without waiting for the
+	 * name service. Used by callers which must never block, such as the selector threads
+	 * of the NIO engine, which hand the host to resolve() on another thread otherwise.
+	 * @param host domain name or IP address
+	 * @return addresses of the host, null if resolve() would have to wait for them
+	 * @throws UnknownHostException if the host is already known not to resolve
+	 */
+	public default InetAddress[] resolveIfKnown(String host) throws UnknownHostException {
+		return null;
+	}
+}
@@ -0,0 +1,35 @@
+package com.monitor.interfaces;
+
+import com.monitor.model.ServiceState;
+
+/**
+ * Delivers the notifications of a service to its listeners.
+ * The default notifier of a service calls the listener directly
+ * on the thread which detected the state transition.
+ * @author akshayhiremath
+ *
+ */
+public interface ListenerNotifier {
+
+	/**
+	 * Synchronous notifier calling ServiceListener.onStateChange() on the calling thread
+	 */
+	public static final ListenerNotifier DIRECT = ServiceListener::onStateChange;
+
+	/**
+	 * Notifies the listener about the state transition of the service it listens to.
+	 * @param listener listener to notify
+	 * @param from previous state of the service
+	 * @param to new state of the service
+	 */
+	public void notifyListener(ServiceListener listener, ServiceState from, ServiceState to);
+
+	/**
+	 * Forgets a listener which is not notified anymore, because it was unregistered
+	 * or its service is not monitored anymore. Its pending notifications are discarded.
+	 * @param listener listener
+	 */
+	public default void discard(ServiceListener listener) {
+		//Nothing kept per listener
+	}
+}
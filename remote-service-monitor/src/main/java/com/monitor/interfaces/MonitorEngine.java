@@ -0,0 +1,31 @@
+package com.monitor.interfaces;
+
+import com.monitor.model.Service;
+
+/**
+ * Monitor engine drives the periodic status checks of the services.
+ * MonitorService hands every service it monitors to an engine, the engine
+ * decides on which threads and at what time the checks are executed.
+ * @author akshayhiremath
+ *
+ */
+public interface MonitorEngine {
+
+	/**
+	 * Starts the engine. Must be called before any service is handed over.
+	 */
+	public void start();
+
+	/**
+	 * Starts periodic monitoring of the service.
+	 * @param service service to monitor
+	 * @param initialDelay delay in milliseconds before the first check
+	 */
+	public void monitor(Service service, long initialDelay);
+
+	/**
+	 * Stops the engine and releases the threads held by it.
+	 * Services still registered are not checked anymore.
+	 */
+	public void shutdown();
+}
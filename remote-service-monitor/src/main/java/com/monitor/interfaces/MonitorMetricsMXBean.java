@@ -0,0 +1,53 @@
+package com.monitor.interfaces;
+
+import com.monitor.model.ProbeStatistics;
+
+/**
+ * Management interface exposing the probe and notification metrics over JMX
+ * @author akshayhiremath
+ *
+ */
+public interface MonitorMetricsMXBean {
+
+	/**
+	 * @return number of services with recorded metrics
+	 */
+	int getMonitoredServices();
+
+	/**
+	 * @return counters and connect latencies over all the services
+	 */
+	ProbeStatistics getTotals();
+
+	/**
+	 * @param host host of the service
+	 * @param port port of the service
+	 * @return counters and connect latencies of the service, null if it has none
+	 */
+	ProbeStatistics getServiceStatistics(String host, int port);
+
+	/**
+	 * @return checks postponed by the probe throttle
+	 */
+	long getThrottledProbes();
+
+	/**
+	 * @return notifications handed to the notification dispatcher
+	 */
+	long getNotificationsDispatched();
+
+	/**
+	 * @return notifications lost by the notification dispatcher because the queue of a listener was full
+	 */
+	long getNotificationsDropped();
+
+	/**
+	 * @return notifications merged into a pending notification by the notification dispatcher
+	 */
+	long getNotificationsCoalesced();
+
+	/**
+	 * @return notifications waiting in the queues of the notification dispatcher
+	 */
+	long getNotificationQueueDepth();
+}
@@ -1,7 +1,11 @@
 package com.monitor.interfaces;
 
+import java.util.Collection;
+
 import com.monitor.Exception.MonitorServiceException;
+import com.monitor.model.BulkRegistrationResult;
 import com.monitor.model.Client;
+import com.monitor.model.ReloadResult;
 import com.monitor.model.Service;
 /**
  * Monitor service is used to monitor status of different services.
@@ -15,7 +19,8 @@ public interface MonitorService {
 	
 	/**
 	 * Initiates the process of monitoring. 
-	 * Creates one thread for monitoring each service in parallel.
+	 * The services are checked by the MonitorEngine selected by the execution mode,
+	 * by default on a small bounded pool of worker threads.
 	 * The polling interval is taken as smallest polling interval 
 	 * out of the intervals specified by each client/caller interested 
 	 * in monitoring the service
@@ -24,7 +29,8 @@ public interface MonitorService {
 	public void startServiceMonitor() throws MonitorServiceException;
 	
 	/**
-	 * Stops all threads monitoring the services registered in ServiceMonitor
+	 * Stops monitoring of all the services registered in ServiceMonitor
+	 * and releases the threads of the MonitorEngine
 	 */
 	public void stopServiceMonitoring();
 	
@@ -39,14 +45,65 @@ public interface MonitorService {
 	 */
 	public void registerInterestInExistingService(Service service,Client client) throws MonitorServiceException;
 	
+	/**
+	 * Unregister interest of a client in the service.
+	 * The service keeps being monitored, its polling interval is recomputed
+	 * from the remaining clients.
+	 * @param service Service being monitored
+	 * @param client client registered with registerInterestInExistingService()
+	 * @return true if the client was registered to the service
+	 * @throws MonitorServiceException if the service is not being monitored
+	 */
+	public boolean unregisterInterestInExistingService(Service service,Client client) throws MonitorServiceException;
+	
 	/**
 	 * Add a new Service to the set of services being monitored by by MonitorService
-	 * and starts monitoring for it in a separate thread
+	 * and starts monitoring for it
 	 * @param service
 	 * @throws MonitorServiceException 
 	 */
 	public void addAndMonitorNewService(Service service) throws MonitorServiceException;
 	
+	/**
+	 * Stops monitoring a service and removes it from the set of services being monitored,
+	 * its clients are not notified anymore
+	 * @param service Service being monitored, only host and port are used
+	 * @return the removed service with its clients and last state, null if it was not monitored
+	 */
+	public Service stopMonitoringService(Service service);
+	
+	/**
+	 * Reloads the monitored services with a new desired inventory without restarting
+	 * the monitoring. Services not desired anymore are stopped, new ones are started,
+	 * changed ones are reconfigured in place keeping their state, and unchanged ones
+	 * are not touched.
+	 * @param services desired services with their clients, each host:port once
+	 * @return services added, removed and reconfigured and the reason of failure for the others
+	 * @throws MonitorServiceException if the collection is not valid or the monitoring cannot be started
+	 */
+	public ReloadResult reloadServices(Collection<Service> services) throws MonitorServiceException;
+	
+	/**
+	 * Registers interest of many clients at once. Each client identifies the 
+	 * service being monitored with its service, validation runs in parallel
+	 * and a failing client doesn't stop the others.
+	 * @param clients clients with the service they want to listen to
+	 * @return registered clients and the reason of failure for the others
+	 * @throws MonitorServiceException if the collection is not valid
+	 */
+	public BulkRegistrationResult<Client> registerInterestInExistingServices(Collection<Client> clients) throws MonitorServiceException;
+	
+	/**
+	 * Adds many new Services at once to the set of services being monitored.
+	 * Validation runs in parallel, valid services are added in one pass and
+	 * their first checks are spread over their polling intervals.
+	 * A failing service doesn't stop the others.
+	 * @param services services with pre-registered clients
+	 * @return services added and the reason of failure for the others
+	 * @throws MonitorServiceException if the collection is not valid or the monitoring cannot be started
+	 */
+	public BulkRegistrationResult<Service> addAndMonitorNewServices(Collection<Service> services) throws MonitorServiceException;
+	
 	/**
 	 * Updates grace period before notification
 	 * for all services in the central configuration
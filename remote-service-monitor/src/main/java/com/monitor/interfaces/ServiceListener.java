@@ -4,6 +4,7 @@
 package com.monitor.interfaces;
 
 import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
 
 /**
  * This class represents parent observer
@@ -31,5 +32,18 @@ public abstract class ServiceListener {
 	 * Whenever service status changes this method will be called.
 	 */
 	public abstract void update();
+	
+	/**
+	 * Called on every state transition of the service.
+	 * By default calls update() when the service stops being available,
+	 * i.e. it goes DOWN or FLAPPING from UP or SUSPECT.
+	 * @param from previous state of the service
+	 * @param to new state of the service
+	 */
+	public void onStateChange(ServiceState from, ServiceState to) {
+		if(from.isAvailable() && !to.isAvailable()) {
+			update();
+		}
+	}
 
 }
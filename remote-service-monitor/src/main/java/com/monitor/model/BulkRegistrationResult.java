@@ -0,0 +1,63 @@
+package com.monitor.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk registration with MonitorService.
+ * Lists the items which were registered and the reason for each
+ * item which was not, a failing item doesn't stop the others.
+ * @author akshayhiremath
+ *
+ * @param <T> registered item, Service or Client
+ */
+public class BulkRegistrationResult<T> {
+	
+	private final List<T> registered = new ArrayList<>();
+	private final Map<T, String> failures = new LinkedHashMap<>();
+	
+	public synchronized void addRegistered(T item) {
+		registered.add(item);
+	}
+	
+	public synchronized void addFailure(T item, String reason) {
+		failures.put(item, reason);
+	}
+	
+	/**
+	 * @return items registered, in the order they were passed
+	 */
+	public synchronized List<T> getRegistered() {
+		return Collections.unmodifiableList(new ArrayList<>(registered));
+	}
+	
+	/**
+	 * @return reason of failure for each item which was not registered
+	 */
+	public synchronized Map<T, String> getFailures() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+	}
+	
+	public synchronized int getRegisteredCount() {
+		return registered.size();
+	}
+	
+	public synchronized int getFailureCount() {
+		return failures.size();
+	}
+	
+	/**
+	 * @return whether every item was registered
+	 */
+	public synchronized boolean isAllRegistered() {
+		return failures.isEmpty();
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "Registered: "+registered.size()+", Failed: "+failures.size();
+	}
+}
@@ -1,5 +1,10 @@
 package com.monitor.model;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import com.monitor.interfaces.ServiceListener;
 
 /**
@@ -26,9 +31,18 @@ public class Client extends ServiceListener{
 	 */
 	private int pollingInterval;
 	/**
-	 * Service outage window within which client doesnt want notification
+	 * Service outage windows within which client doesnt want notification
+	 */
+	private final List<OutageWindow> serviceOutages = new CopyOnWriteArrayList<>();
+	/**
+	 * Status word of the service last delivered to this client, maintained by the 
+	 * delivery of the service which publishes it
 	 */
-	private OutageWindow serviceOutage;
+	long observedWord = ServiceState.UP.ordinal();
+	/**
+	 * Time in epoch milliseconds from which the next check result is delivered to this client
+	 */
+	long nextDeliveryAt;
 	
 	/**
 	 * Default client constructor
@@ -54,8 +68,8 @@ public class Client extends ServiceListener{
 	 */
 	public Client(Service service, int pollingInterval, OutageWindow serviceOutage) {
 		this.pollingInterval = pollingInterval;
-		this.serviceOutage = serviceOutage;
 		this.service= service;
+		setServiceOutage(serviceOutage);
 	}
 
 	public int getId() {
@@ -72,11 +86,64 @@ public class Client extends ServiceListener{
 	public void setPollingInterval(int pollingInterval) {
 		this.pollingInterval = pollingInterval;
 	}
+	/**
+	 * Returns the state of the service as last delivered to this client.
+	 * A client with a polling interval longer than the one of the service
+	 * observes the state sampled at its own interval.
+	 * Read from another thread than the one checking the service the state may lag behind.
+	 * @return last state delivered to the client
+	 */
+	public ServiceState getObservedState() {
+		return Service.stateOf(observedWord);
+	}
+	/**
+	 * Returns the first service outage window of the client
+	 * @return first outage window or null if the client has none
+	 */
 	public OutageWindow getServiceOutage() {
-		return serviceOutage;
+		Iterator<OutageWindow> windows = serviceOutages.iterator();
+		return windows.hasNext() ? windows.next() : null;
 	}
+	/**
+	 * Replaces all the service outage windows of the client with the passed window
+	 * @param serviceOutage outage window, null removes all the windows
+	 */
 	public void setServiceOutage(OutageWindow serviceOutage) {
-		this.serviceOutage = serviceOutage;
+		for(OutageWindow window : serviceOutages) {
+			window.removeOwner(this);
+		}
+		serviceOutages.clear();
+		if(serviceOutage != null) {
+			serviceOutage.addOwner(this);
+			serviceOutages.add(serviceOutage);
+		}
+		outageWindowsChanged();
+	}
+	/**
+	 * Adds one more service outage window to the client
+	 * @param serviceOutage outage window, single or recurring
+	 */
+	public void addServiceOutage(OutageWindow serviceOutage) {
+		serviceOutage.addOwner(this);
+		serviceOutages.add(serviceOutage);
+		outageWindowsChanged();
+	}
+	/**
+	 * Returns all the service outage windows of the client
+	 * @return read-only list of outage windows
+	 */
+	public List<OutageWindow> getServiceOutages() {
+		return Collections.unmodifiableList(serviceOutages);
+	}
+	
+	/**
+	 * Windows are indexed by the service, the index is rebuilt after a change
+	 * of the list or of a window in it
+	 */
+	void outageWindowsChanged() {
+		if(service != null) {
+			service.outageWindowsChanged();
+		}
 	}
 	
 	
@@ -0,0 +1,65 @@
+package com.monitor.model;
+
+import java.util.Objects;
+
+/**
+ * Application level check of a service over HTTP or HTTPS.
+ * The service is up if GET of the path answers with the expected status code.
+ * Instances are immutable.
+ * @author akshayhiremath
+ *
+ */
+public class HttpCheck {
+
+	private final String path;
+	private final int expectedStatus;
+	private final boolean tls;
+
+	/**
+	 * Check of the path over plain HTTP expecting status 200
+	 * @param path path and query of the health check, e.g. /health
+	 */
+	public HttpCheck(String path) {
+		this(path, 200, false);
+	}
+
+	/**
+	 * @param path path and query of the health check, e.g. /health
+	 * @param expectedStatus status code of a healthy service
+	 * @param tls true to check over HTTPS
+	 */
+	public HttpCheck(String path, int expectedStatus, boolean tls) {
+		this.path = path == null || path.isEmpty() ? "/" : path;
+		this.expectedStatus = expectedStatus;
+		this.tls = tls;
+	}
+
+	public String getPath() {
+		return path;
+	}
+	public int getExpectedStatus() {
+		return expectedStatus;
+	}
+	public boolean isTls() {
+		return tls;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(path, expectedStatus, tls);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof HttpCheck)) {
+			return false;
+		}
+		HttpCheck check = (HttpCheck) o;
+		return path.equals(check.path) && expectedStatus == check.expectedStatus && tls == check.tls;
+	}
+
+	@Override
+	public String toString() {
+		return (tls ? "https " : "http ")+path+" "+expectedStatus;
+	}
+}
@@ -0,0 +1,84 @@
+package com.monitor.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of loading an inventory file.
+ * Unlike BulkRegistrationResult the loaded entries are only counted, and only the
+ * first failures are kept with their line number, so the result of a large
+ * inventory stays small.
+ * @author akshayhiremath
+ *
+ */
+public class InventoryLoadResult {
+
+	private final int maxReportedFailures;
+	private int servicesAdded;
+	private int clientsRegistered;
+	private int failureCount;
+	private final Map<Integer, String> failures = new LinkedHashMap<>();
+
+	/**
+	 * @param maxReportedFailures failures kept with their reason, the others are only counted
+	 */
+	public InventoryLoadResult(int maxReportedFailures) {
+		this.maxReportedFailures = maxReportedFailures;
+	}
+
+	public synchronized void addServices(int count) {
+		servicesAdded += count;
+	}
+
+	public synchronized void addClients(int count) {
+		clientsRegistered += count;
+	}
+
+	public synchronized void addFailure(int lineNumber, String reason) {
+		failureCount++;
+		if(failures.size() < maxReportedFailures) {
+			failures.put(lineNumber, reason);
+		}
+	}
+
+	/**
+	 * @return services added to the monitoring
+	 */
+	public synchronized int getServicesAdded() {
+		return servicesAdded;
+	}
+
+	/**
+	 * @return lines loaded, each line registers a client to a new or existing service
+	 */
+	public synchronized int getClientsRegistered() {
+		return clientsRegistered;
+	}
+
+	/**
+	 * @return lines which could not be loaded
+	 */
+	public synchronized int getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * @return reason of failure by line number, for the first failures only
+	 */
+	public synchronized Map<Integer, String> getFailures() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+	}
+
+	/**
+	 * @return whether every line was loaded
+	 */
+	public synchronized boolean isAllLoaded() {
+		return failureCount == 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Services added: "+servicesAdded+", Clients registered: "+clientsRegistered+", Failed: "+failureCount;
+	}
+}
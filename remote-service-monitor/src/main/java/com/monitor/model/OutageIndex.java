@@ -0,0 +1,170 @@
+package com.monitor.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed index of the outage windows of all the clients of a service.
+ * The windows are stored as epoch milliseconds intervals. An evaluation answers
+ * which clients are suppressed at a given time for the whole service and 
+ * stays valid until the next start or end of any window, so the windows are
+ * evaluated once per boundary crossing instead of once per client and notification.
+ * Instances are immutable except for the cached evaluation, a change of the
+ * clients or their windows builds a new index.
+ * @author akshayhiremath
+ *
+ */
+public class OutageIndex {
+	
+	/**
+	 * Clients of the service, position in this array is the client index
+	 */
+	private final Client[] clients;
+	/**
+	 * Client index of each window
+	 */
+	private final int[] windowClient;
+	private final long[] windowStart;
+	/**
+	 * Length of each window in milliseconds, end inclusive
+	 */
+	private final long[] windowLength;
+	/**
+	 * Repetition period of each window in milliseconds, 0 for a single window
+	 */
+	private final long[] windowPeriod;
+	
+	private volatile Evaluation evaluation;
+	
+	/**
+	 * Builds the index of the windows of the clients
+	 * @param clients clients of the service
+	 */
+	public OutageIndex(List<Client> clients) {
+		this.clients = clients.toArray(new Client[0]);
+		//The windows of each client are copied once, a window added meanwhile is in the next index
+		OutageWindow[][] windowsOf = new OutageWindow[this.clients.length][];
+		int windows = 0;
+		for(int i = 0; i < this.clients.length; i++) {
+			windowsOf[i] = this.clients[i].getServiceOutages().toArray(new OutageWindow[0]);
+			windows += windowsOf[i].length;
+		}
+		int[] client = new int[windows];
+		long[] start = new long[windows];
+		long[] length = new long[windows];
+		long[] period = new long[windows];
+		int w = 0;
+		for(int i = 0; i < windowsOf.length; i++) {
+			for(OutageWindow ow : windowsOf[i]) {
+				if(isValid(ow)) {
+					client[w] = i;
+					start[w] = ow.getStartMillis();
+					length[w] = ow.getEndMillis() - start[w];
+					period[w] = ow.getRecurrence().getPeriodMillis();
+					w++;
+				}
+			}
+		}
+		windowClient = Arrays.copyOf(client, w);
+		windowStart = Arrays.copyOf(start, w);
+		windowLength = Arrays.copyOf(length, w);
+		windowPeriod = Arrays.copyOf(period, w);
+	}
+	
+	/**
+	 * @return clients covered by this index, in the order of the suppression mask
+	 */
+	public Client[] getClients() {
+		return clients;
+	}
+	
+	/**
+	 * Returns which clients are in an outage window at the given time.
+	 * @param timeMillis time in epoch milliseconds
+	 * @return mask indexed like getClients(), true if the client is suppressed
+	 */
+	public boolean[] suppressedAt(long timeMillis) {
+		Evaluation e = evaluation;
+		if(e == null || timeMillis < e.validFrom || timeMillis >= e.validUntil) {
+			e = evaluate(timeMillis);
+			evaluation = e;
+		}
+		return e.suppressed;
+	}
+	
+	/**
+	 * Checks a single client against its windows without building an index
+	 * @param c client
+	 * @param timeMillis time in epoch milliseconds
+	 * @return whether any outage window of the client is on
+	 */
+	public static boolean isOutageWindowOn(Client c, long timeMillis) {
+		for(OutageWindow ow : c.getServiceOutages()) {
+			if(isValid(ow) && isOn(timeMillis, ow.getStartMillis(), ow.getEndMillis() - ow.getStartMillis(), ow.getRecurrence().getPeriodMillis())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private Evaluation evaluate(long now) {
+		boolean[] suppressed = new boolean[clients.length];
+		long validUntil = Long.MAX_VALUE;
+		for(int w = 0; w < windowClient.length; w++) {
+			long start = windowStart[w];
+			long length = windowLength[w];
+			long period = windowPeriod[w];
+			if(isOn(now, start, length, period)) {
+				suppressed[windowClient[w]] = true;
+			}
+			validUntil = Math.min(validUntil, nextBoundary(now, start, length, period));
+		}
+		//The evaluation holds from now on, earlier times are evaluated again
+		return new Evaluation(now, validUntil, suppressed);
+	}
+	
+	private static boolean isOn(long t, long start, long length, long period) {
+		if(t < start) {
+			return false;
+		}
+		if(period == 0) {
+			return t - start <= length;
+		}
+		return (t - start) % period <= length;
+	}
+	
+	/**
+	 * @return first time after t at which the window is switched on or off
+	 */
+	private static long nextBoundary(long t, long start, long length, long period) {
+		if(t < start) {
+			return start;
+		}
+		long offset = period == 0 ? t - start : (t - start) % period;
+		long occurrenceStart = t - offset;
+		if(offset <= length) {
+			//Window on, the end is inclusive
+			return occurrenceStart + length + 1;
+		}
+		return period == 0 ? Long.MAX_VALUE : occurrenceStart + period;
+	}
+	
+	private static boolean isValid(OutageWindow ow) {
+		return ow != null && ow.getStartTime() != null && ow.getEndTime() != null;
+	}
+	
+	/**
+	 * Suppression mask valid in the interval [validFrom, validUntil)
+	 */
+	private static class Evaluation {
+		final long validFrom;
+		final long validUntil;
+		final boolean[] suppressed;
+		
+		Evaluation(long validFrom, long validUntil, boolean[] suppressed) {
+			this.validFrom = validFrom;
+			this.validUntil = validUntil;
+			this.suppressed = suppressed;
+		}
+	}
+}
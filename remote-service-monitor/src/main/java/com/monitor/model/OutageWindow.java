@@ -1,15 +1,57 @@
 package com.monitor.model;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
+ * Time window within which a client doesn't want notifications.
+ * A window either happens once, from start time to end time, or recurs 
+ * daily or weekly starting with the occurrence from start time to end time.
  * @author akshayhiremath
  *
  */
 public class OutageWindow {
 	
+	/**
+	 * Repetition of an outage window
+	 */
+	public enum Recurrence {
+		/**
+		 * Single window from start time to end time
+		 */
+		NONE(0),
+		/**
+		 * Window repeated every 24 hours
+		 */
+		DAILY(24L * 60 * 60 * 1000),
+		/**
+		 * Window repeated every 7 days
+		 */
+		WEEKLY(7L * 24 * 60 * 60 * 1000);
+		
+		private final long periodMillis;
+		
+		private Recurrence(long periodMillis) {
+			this.periodMillis = periodMillis;
+		}
+		
+		/**
+		 * @return repetition period in milliseconds, 0 for a single window
+		 */
+		public long getPeriodMillis() {
+			return periodMillis;
+		}
+	}
+	
 	private LocalDateTime startTime;
 	private LocalDateTime endTime;
+	private Recurrence recurrence = Recurrence.NONE;
+	/**
+	 * Clients having this window, their services index it and are told about changes
+	 */
+	private final Set<Client> owners = new CopyOnWriteArraySet<>();
 	
 	public OutageWindow(LocalDateTime startTime, LocalDateTime endTime) {
 
@@ -17,6 +59,19 @@ public class OutageWindow {
 		this.endTime = endTime;
 	}
 	
+	/**
+	 * Creates a recurring window.
+	 * Recurrence is in fixed periods of 24 hours or 7 days, a window 
+	 * defined in local time shifts by the DST offset after a DST change.
+	 * @param startTime start of the first occurrence
+	 * @param endTime end of the first occurrence
+	 * @param recurrence repetition of the window
+	 */
+	public OutageWindow(LocalDateTime startTime, LocalDateTime endTime, Recurrence recurrence) {
+		this(startTime, endTime);
+		setRecurrence(recurrence);
+	}
+	
 	/**
 	 * Default constructor
 	 */
@@ -27,13 +82,56 @@ public class OutageWindow {
 	}
 	public void setStartTime(LocalDateTime startTime) {
 		this.startTime = startTime;
+		changed();
 	}
 	public LocalDateTime getEndTime() {
 		return endTime;
 	}
 	public void setEndTime(LocalDateTime endTime) {
 		this.endTime = endTime;
+		changed();
+	}
+	public Recurrence getRecurrence() {
+		return recurrence;
+	}
+	public void setRecurrence(Recurrence recurrence) {
+		this.recurrence = recurrence == null ? Recurrence.NONE : recurrence;
+		changed();
 	}
 	
+	void addOwner(Client client) {
+		owners.add(client);
+	}
+	
+	void removeOwner(Client client) {
+		owners.remove(client);
+	}
+	
+	/**
+	 * Invalidates the outage indexes built from the previous times of the window
+	 */
+	private void changed() {
+		for(Client client : owners) {
+			client.outageWindowsChanged();
+		}
+	}
+	
+	/**
+	 * @return start of the first occurrence in epoch milliseconds in the system time zone
+	 */
+	public long getStartMillis() {
+		return toEpochMillis(startTime);
+	}
+	
+	/**
+	 * @return end of the first occurrence in epoch milliseconds in the system time zone
+	 */
+	public long getEndMillis() {
+		return toEpochMillis(endTime);
+	}
+	
+	private static long toEpochMillis(LocalDateTime time) {
+		return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
 	
 }
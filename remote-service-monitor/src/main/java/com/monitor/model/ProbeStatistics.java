@@ -0,0 +1,93 @@
+package com.monitor.model;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the probe counters and connect latencies of a service
+ * or of all the monitored services. Latencies are in microseconds.
+ * @author akshayhiremath
+ *
+ */
+public class ProbeStatistics {
+
+	private final long probes;
+	private final long connected;
+	private final long refusals;
+	private final long timeouts;
+	private final long failures;
+	private final long unhealthy;
+	private final long graceRechecks;
+	private final long notifications;
+	private final long latencyMean;
+	private final long latencyP50;
+	private final long latencyP99;
+	private final long latencyMax;
+
+	@ConstructorProperties({"probes", "connected", "refusals", "timeouts", "failures", "unhealthy", "graceRechecks",
+		"notifications", "latencyMean", "latencyP50", "latencyP99", "latencyMax"})
+	public ProbeStatistics(long probes, long connected, long refusals, long timeouts, long failures, long unhealthy, long graceRechecks,
+			long notifications, long latencyMean, long latencyP50, long latencyP99, long latencyMax) {
+		this.probes = probes;
+		this.connected = connected;
+		this.refusals = refusals;
+		this.timeouts = timeouts;
+		this.failures = failures;
+		this.unhealthy = unhealthy;
+		this.graceRechecks = graceRechecks;
+		this.notifications = notifications;
+		this.latencyMean = latencyMean;
+		this.latencyP50 = latencyP50;
+		this.latencyP99 = latencyP99;
+		this.latencyMax = latencyMax;
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+	public long getConnected() {
+		return connected;
+	}
+	public long getRefusals() {
+		return refusals;
+	}
+	public long getTimeouts() {
+		return timeouts;
+	}
+	public long getFailures() {
+		return failures;
+	}
+	/**
+	 * @return connections established with a failing HTTP check
+	 */
+	public long getUnhealthy() {
+		return unhealthy;
+	}
+	public long getGraceRechecks() {
+		return graceRechecks;
+	}
+	/**
+	 * @return notification rounds to the clients of the service
+	 */
+	public long getNotifications() {
+		return notifications;
+	}
+	public long getLatencyMean() {
+		return latencyMean;
+	}
+	public long getLatencyP50() {
+		return latencyP50;
+	}
+	public long getLatencyP99() {
+		return latencyP99;
+	}
+	public long getLatencyMax() {
+		return latencyMax;
+	}
+
+	@Override
+	public String toString() {
+		return "probes="+probes+" connected="+connected+" refusals="+refusals+" timeouts="+timeouts
+				+" failures="+failures+" unhealthy="+unhealthy+" graceRechecks="+graceRechecks+" notifications="+notifications
+				+" latency[us] mean="+latencyMean+" p50="+latencyP50+" p99="+latencyP99+" max="+latencyMax;
+	}
+}
@@ -0,0 +1,85 @@
+package com.monitor.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of reloading the services being monitored with a new inventory.
+ * Lists the services started, stopped and reconfigured, unchanged services are
+ * only counted. A desired service failing validation is reported with the reason
+ * and leaves the monitored service, if any, as it was.
+ * @author akshayhiremath
+ *
+ */
+public class ReloadResult {
+
+	private final List<Service> added = new ArrayList<>();
+	private final List<Service> removed = new ArrayList<>();
+	private final List<Service> reconfigured = new ArrayList<>();
+	private int unchanged;
+	private final Map<Service, String> failures = new LinkedHashMap<>();
+
+	public synchronized void addAdded(Service service) {
+		added.add(service);
+	}
+
+	public synchronized void addRemoved(Service service) {
+		removed.add(service);
+	}
+
+	public synchronized void addReconfigured(Service service) {
+		reconfigured.add(service);
+	}
+
+	public synchronized void addUnchanged() {
+		unchanged++;
+	}
+
+	public synchronized void addFailure(Service service, String reason) {
+		failures.put(service, reason);
+	}
+
+	/**
+	 * @return services which were not monitored and are now
+	 */
+	public synchronized List<Service> getAdded() {
+		return Collections.unmodifiableList(new ArrayList<>(added));
+	}
+
+	/**
+	 * @return services which are not monitored anymore, with their last state
+	 */
+	public synchronized List<Service> getRemoved() {
+		return Collections.unmodifiableList(new ArrayList<>(removed));
+	}
+
+	/**
+	 * @return monitored services whose clients or settings changed
+	 */
+	public synchronized List<Service> getReconfigured() {
+		return Collections.unmodifiableList(new ArrayList<>(reconfigured));
+	}
+
+	/**
+	 * @return monitored services left untouched
+	 */
+	public synchronized int getUnchangedCount() {
+		return unchanged;
+	}
+
+	/**
+	 * @return reason of failure for each desired service which was not applied
+	 */
+	public synchronized Map<Service, String> getFailures() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Added: "+added.size()+", Removed: "+removed.size()+", Reconfigured: "+reconfigured.size()
+				+", Unchanged: "+unchanged+", Failed: "+failures.size();
+	}
+}
@@ -3,15 +3,24 @@
  */
 package com.monitor.model;
 
-import java.time.LocalDateTime;
-import java.util.Optional;
-import java.util.Vector;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.monitor.interfaces.ListenerNotifier;
 
 /**
  * This class implements Service.
  * Service represents any service hosted on 
  * a domain or IP address and listening to socket 
  * bound to a particular TCP port.
+ * The state and the clients are read without locks on the check and notification paths:
+ * the clients are an immutable array replaced on register/unregister and the state is
+ * a single status word holding the state and the number of transitions.
  * 
  * @author akshayhiremath
  *
@@ -25,23 +34,62 @@ public class Service {
 	 * TCP port on which service is listening
 	 */
 	private int port;
+	private static final ServiceState[] STATES = ServiceState.values();
+	/**
+	 * Bits of the status word holding the ordinal of the state, the version is above them
+	 */
+	private static final int STATE_BITS = 8;
+	private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+	
 	/**
-	 * Status of the service true means UP and false means DOWN
+	 * State of the service and version, i.e. number of transitions, changed by the checks with transitionTo()
 	 */
-	private boolean status=true;
+	private final AtomicLong statusWord = new AtomicLong(ServiceState.UP.ordinal());
 	
 	/**
 	 * Polling interval to check status of the service.
 	 */
 	private volatile int pollingInterval;
+	/**
+	 * Connect timeout in milliseconds, 0 means the default connect timeout of the
+	 * central configuration applies
+	 */
+	private volatile int connectTimeout;
+	/**
+	 * Application level check over HTTP(S), null checks the service with a TCP connection
+	 */
+	private volatile HttpCheck httpCheck;
 	/**
 	 * Do we want to continue polling?
 	 */
-	private boolean continuePolling=true;
+	private volatile boolean continuePolling=true;
+	
+	/**
+	 * Registered clients, the array is never modified, register/unregister replace it
+	 */
+	private volatile Client[] clients = new Client[0];
+	
+	/**
+	 * Index of the outage windows of the clients, null when it has to be rebuilt
+	 */
+	private volatile OutageIndex outageIndex;
 	
-	private Vector<Client> clients = new Vector<>();
+	/**
+	 * Delivers the notifications to the clients, by default on the detecting thread
+	 */
+	private volatile ListenerNotifier notifier = ListenerNotifier.DIRECT;
+	
+	/**
+	 * Set while a state change is held back for a client with a longer polling interval
+	 */
+	private volatile boolean deliveryPending;
+	/**
+	 * Held by the thread delivering the state to the clients, the client fields
+	 * maintained by the delivery are only changed while holding it
+	 */
+	private final AtomicBoolean delivering = new AtomicBoolean();
 	
-	private int lastClientIdTracker = 0;
+	private final AtomicInteger lastClientIdTracker = new AtomicInteger();
 	
 	public Service() {
 		
@@ -54,15 +102,15 @@ public class Service {
 	public Service(String host, int port) {
 		this.host = host;
 		this.port = port;
-		this.pollingInterval = findSmallestPollingInterval();
+		this.pollingInterval = sharedPollingInterval();
 	}
 	
 	/**
-	 * Returns a collection of clients interested in status of this service 
-	 * @return a collection of clients
+	 * Returns the clients interested in status of this service 
+	 * @return read-only snapshot of the clients, not changed by later registrations
 	 */
-	public Vector<Client> getClients() {
-		return clients;
+	public List<Client> getClients() {
+		return Collections.unmodifiableList(Arrays.asList(clients));
 	}
 
 	/**
@@ -90,9 +138,29 @@ public class Service {
 	public int getPollingInterval() {
 		return pollingInterval;
 	}
-	public synchronized void setPollingInterval(int smallestPollingInterval) {
+	public void setPollingInterval(int smallestPollingInterval) {
 		this.pollingInterval = smallestPollingInterval;
 	}
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+	/**
+	 * Sets connect timeout of the service
+	 * @param connectTimeout timeout in milliseconds, 0 to use the default of the central configuration
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+	public HttpCheck getHttpCheck() {
+		return httpCheck;
+	}
+	/**
+	 * Sets the probe type of the service
+	 * @param httpCheck HTTP(S) check of a path and status code, null to check with a TCP connection
+	 */
+	public void setHttpCheck(HttpCheck httpCheck) {
+		this.httpCheck = httpCheck;
+	}
 	public boolean isContinuePolling() {
 		return continuePolling;
 	}
@@ -100,56 +168,278 @@ public class Service {
 		this.continuePolling = continuePolling;
 	}
 	
+	/**
+	 * @return true if the service is available, see ServiceState.isAvailable()
+	 */
 	public boolean isStatus() {
-		return status;
+		return getState().isAvailable();
+	}
+	public ServiceState getState() {
+		return stateOf(statusWord.get());
+	}
+	/**
+	 * @return number of state transitions of the service, including a restored state
+	 */
+	public long getStateVersion() {
+		return versionOf(statusWord.get());
+	}
+	/**
+	 * Changes the state of the service and notifies the clients about the transition,
+	 * clients with a longer polling interval are notified when they are due, see deliverPendingState().
+	 * Nothing is notified if the service is already in the state.
+	 * @param newState new state of the service
+	 * @return true if the state changed
+	 */
+	public boolean transitionTo(ServiceState newState) {
+		long word;
+		do {
+			word = statusWord.get();
+			if(stateOf(word) == newState) {
+				return false;
+			}
+		}while(!statusWord.compareAndSet(word, nextWord(word, newState)));
+		deliverState(System.currentTimeMillis());
+		return true;
+	}
+	
+	/**
+	 * Restores the state and client id tracker of the service from a snapshot.
+	 * Unlike transitionTo() the clients are not notified, they were notified
+	 * before the snapshot was taken.
+	 * @param state state of the service in the snapshot
+	 * @param lastClientIdTracker id of the next registered client
+	 */
+	public synchronized void restore(ServiceState state, int lastClientIdTracker) {
+		restore(state, versionOf(statusWord.get()) + 1, lastClientIdTracker);
 	}
-	public void setStatus(boolean status) {
-		this.status = status;
-		notifyAllClients();
+	
+	/**
+	 * Restores the state, its version and the client id tracker of the service from a snapshot,
+	 * the clients are not notified
+	 * @param state state of the service in the snapshot
+	 * @param version number of transitions of the service in the snapshot, see getStateVersion()
+	 * @param lastClientIdTracker id of the next registered client
+	 */
+	public synchronized void restore(ServiceState state, long version, int lastClientIdTracker) {
+		long word = (version << STATE_BITS) | state.ordinal();
+		statusWord.set(word);
+		for(Client c : clients) {
+			c.observedWord = word;
+		}
+		this.lastClientIdTracker.set(lastClientIdTracker);
+	}
+	
+	public ListenerNotifier getNotifier() {
+		return notifier;
+	}
+	/**
+	 * Sets the notifier delivering the notifications to the clients of this service
+	 * @param notifier notifier, null restores direct notification on the detecting thread
+	 */
+	public void setNotifier(ListenerNotifier notifier) {
+		this.notifier = notifier == null ? ListenerNotifier.DIRECT : notifier;
 	}
 	
 	public int getLastClientIdTracker() {
-		return lastClientIdTracker;
+		return lastClientIdTracker.get();
+	}
+	
+	static ServiceState stateOf(long statusWord) {
+		return STATES[(int) (statusWord & STATE_MASK)];
 	}
-	private void setLastClientIdTracker(int lastClientIdTracker) {
-		this.lastClientIdTracker = lastClientIdTracker;
+	
+	private static long versionOf(long statusWord) {
+		return statusWord >>> STATE_BITS;
+	}
+	
+	private static long nextWord(long statusWord, ServiceState state) {
+		return ((versionOf(statusWord) + 1) << STATE_BITS) | state.ordinal();
 	}
 	/**
-	 * Notifies all clients that service is down
+	 * Delivers the current state to the clients which haven't observed it yet.
+	 * The service is checked at the smallest polling interval of its clients, the
+	 * clients asking for that interval get every transition. A client with a longer 
+	 * interval gets the state at most once per its own interval: a change is delivered
+	 * as soon as the client is due and later changes wait for its next turn, so the
+	 * client sees the state sampled at its interval without checking the service more often.
+	 * The notifications are handed to the notifier of the service, clients in an outage 
+	 * window observe the state without being notified.
+	 * @param now current time in epoch milliseconds
 	 */
-	private void notifyAllClients() {
-		
-		if(!status) {
-			this.clients.forEach(c -> {
-				//Check outage window, 
-				//if current time is in window 
-				//then don't notify the caller
-				if(!isOutageWindowOn(c)){
-					c.update();
-				}
-			});
+	private void deliverState(long now) {
+		//Non-blocking, a thread finding another one delivering leaves its transition to that thread
+		while(delivering.compareAndSet(false, true)) {
+			long word = statusWord.get();
+			try {
+				deliverState(word, now);
+			}finally {
+				delivering.set(false);
+			}
+			if(statusWord.get() == word) {
+				return;
+			}
+		}
+	}
+	
+	private void deliverState(long word, long now) {
+		ServiceState current = stateOf(word);
+		//Status words of the same or a later version are not lower than this
+		long versionFloor = word & ~STATE_MASK;
+		ListenerNotifier n = this.notifier;
+		int sharedInterval = this.pollingInterval;
+		deliveryPending = false;
+		OutageIndex index = getOutageIndex();
+		Client[] indexedClients = index.getClients();
+		//Check outage windows once for all clients, only if any client is notified
+		boolean[] suppressed = null;
+		boolean pending = false;
+		for(int i = 0; i < indexedClients.length; i++) {
+			Client c = indexedClients[i];
+			long observed = c.observedWord;
+			if(observed >= versionFloor) {
+				//Observed this state or, registered meanwhile, a later one
+				continue;
+			}
+			if(((observed ^ word) & STATE_MASK) == 0) {
+				//Back in the state the client observed
+				c.observedWord = word;
+				continue;
+			}
+			if(c.getPollingInterval() > sharedInterval && now < c.nextDeliveryAt) {
+				pending = true;
+				continue;
+			}
+			ServiceState from = stateOf(observed);
+			c.observedWord = word;
+			//A check slightly ahead of its slot still counts for the next turn of the client
+			c.nextDeliveryAt = now + c.getPollingInterval() - sharedInterval / 2;
+			if(suppressed == null) {
+				suppressed = index.suppressedAt(now);
+			}
+			if(!suppressed[i]) {
+				n.notifyListener(c, from, current);
+			}
+		}
+		if(pending) {
+			deliveryPending = true;
+		}
+	}
+	
+	/**
+	 * Delivers a state change held back for clients with a longer polling interval
+	 * once they are due. Called after every check of the service, returns at once when
+	 * all the clients observed the current state.
+	 * @param now current time in epoch milliseconds
+	 */
+	public void deliverPendingState(long now) {
+		if(deliveryPending) {
+			deliverState(now);
 		}
-		
 	}
 	
 	/**
-	 * Registers a client in service's subscribers/callers list
+	 * Registers a client in service's subscribers/callers list.
+	 * The client starts observing the current state of the service.
 	 * @param client
 	 */
-	public void registerClient(Client client) {
+	public synchronized void registerClient(Client client) {
 		
 		//If the polling interval of the new client is smaller than  
 		//existing service's polling interval then that will become 
 		//new polling interval of the service
 		if((client.getPollingInterval() >= 1000 && client.getPollingInterval() < this.getPollingInterval())
-				|| this.clients.size() == 0) {
+				|| this.clients.length == 0) {
 			this.setPollingInterval(client.getPollingInterval());
 		}
 		//Set client id
-		client.setId(this.getLastClientIdTracker());
-		this.setLastClientIdTracker(this.getLastClientIdTracker()+1); 
-		//Add client to the list of clients
-		this.clients.add(client);
+		client.setId(this.lastClientIdTracker.getAndIncrement());
+		long word = statusWord.get();
+		client.observedWord = word;
+		client.nextDeliveryAt = 0;
+		//Add client to a copy of the clients
+		Client[] current = this.clients;
+		Client[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = client;
+		this.clients = updated;
+		this.outageIndex = null;
+		if(statusWord.get() != word) {
+			//A transition delivered to the previous clients only, the next check delivers it
+			deliveryPending = true;
+		}
+	}
+	
+	/**
+	 * Removes a client from service's subscribers/callers list.
+	 * The polling interval of the service is recomputed from the remaining clients,
+	 * it stays unchanged when the last client leaves. The notifier discards the
+	 * notifications still pending for the client.
+	 * @param client registered client
+	 * @return true if the client was registered to this service
+	 */
+	public synchronized boolean unregisterClient(Client client) {
+		Client[] current = this.clients;
+		int position = -1;
+		for(int i = 0; i < current.length && position < 0; i++) {
+			if(current[i] == client) {
+				position = i;
+			}
+		}
+		if(position < 0) {
+			return false;
+		}
+		Client[] updated = new Client[current.length - 1];
+		System.arraycopy(current, 0, updated, 0, position);
+		System.arraycopy(current, position + 1, updated, position, updated.length - position);
+		this.clients = updated;
+		this.outageIndex = null;
+		if(updated.length > 0) {
+			this.setPollingInterval(sharedPollingInterval());
+		}
+		notifier.discard(client);
+		return true;
+	}
+	
+	/**
+	 * Smallest polling interval of the clients, intervals below 1000ms 
+	 * only count if no client asks for 1000ms or more, as in registerClient()
+	 * @return polling interval of the service, 1000ms without clients
+	 */
+	private int sharedPollingInterval() {
+		Client[] current = this.clients;
+		if(current.length == 0) {
+			return 1000;
+		}
+		int smallest = Integer.MAX_VALUE;
+		for(Client c : current) {
+			if(c.getPollingInterval() >= 1000) {
+				smallest = Math.min(smallest, c.getPollingInterval());
+			}
+		}
+		return smallest == Integer.MAX_VALUE ? current[0].getPollingInterval() : smallest;
+	}
+	
+	/**
+	 * Returns the index of the outage windows of the clients, 
+	 * builds it if the clients or their windows changed
+	 * @return outage index
+	 */
+	public OutageIndex getOutageIndex() {
+		OutageIndex index = outageIndex;
+		return index != null ? index : buildOutageIndex();
+	}
+	
+	private synchronized OutageIndex buildOutageIndex() {
+		if(outageIndex == null) {
+			outageIndex = new OutageIndex(Arrays.asList(clients));
+		}
+		return outageIndex;
+	}
+	
+	/**
+	 * Invalidates the outage index after a change of the clients or their windows
+	 */
+	public synchronized void outageWindowsChanged() {
+		outageIndex = null;
 	}
 	/**
 	 * Checks if the known down time/maintenance of this service is in progress
@@ -157,49 +447,48 @@ public class Service {
 	 * @return if current time is in outage window
 	 */
 	public static boolean isOutageWindowOn(Client c) {
-		LocalDateTime timeNow = LocalDateTime.now();
-		OutageWindow serviceOutage = c.getServiceOutage();
-		  return !timeNow.isBefore(serviceOutage.getStartTime()) && !timeNow.isAfter(serviceOutage.getEndTime());
-	}
-	
-	/**
-	 * Finds smallest polling interval out of the clients/callers interested in the service
-	 * @param clientList list of registered clients/callers
-	 * @return the smallest polling interval value 
-	 */
-	private int findSmallestPollingInterval(){
-		int smallestPollingInterval=1000;
-		Optional<Integer> opMin= Optional.empty();
-		if(this.clients.size() > 0) {
-			//If there is just one client, this could be a first client
-			//so set this interval. e.g. if first client starts with interval of 3000ms
-			//then we shouldn't find the minimum by comparing with 1000
-			smallestPollingInterval=this.clients.get(0).getPollingInterval();
-			opMin = this.clients.stream().map(c -> { 
-				//Stamp clients with ids
-				c.setId(lastClientIdTracker);lastClientIdTracker++;
-				//take polling interval value to find min
-				return c.getPollingInterval();
-			}).min(Integer::compare);
-				
-		}
-			
-		if(opMin.isPresent()) {
-			smallestPollingInterval = opMin.get();
-		}
-		
-		return smallestPollingInterval;
+		return OutageIndex.isOutageWindowOn(c, System.currentTimeMillis());
 	}
 	
+	/**
+	 * Normalized key of a service, host names are case insensitive
+	 * @param host domain name/ip address of service
+	 * @param port listening port
+	 * @return key in the form host:port
+	 */
+	public static String keyOf(String host, int port) {
+		return (host == null ? "" : host.trim().toLowerCase(Locale.ROOT)) + ":" + port;
+	}
+	
+	/**
+	 * Returns normalized key of this service identifying it in the ServiceRegister
+	 * @return key in the form host:port
+	 */
+	public String getKey() {
+		return keyOf(host, port);
+	}
+	
+	/**
+	 * Hash of the normalized host and port, consistent with equals
+	 */
 	@Override
 	public int hashCode() {
-		return this.port;
+		return getKey().hashCode();
 	}
 	
+	/**
+	 * Services are equal if they have the same host, ignoring case, and port
+	 */
 	@Override
 	public boolean equals(Object s) {	
+		if(this == s) {
+			return true;
+		}
+		if(!(s instanceof Service)) {
+			return false;
+		}
 		Service service = (Service)s;
-		return service.getHost().equalsIgnoreCase(this.getHost()) && service.getPort()==this.getPort();
+		return service.getKey().equals(getKey());
 	}
 	
 	@Override
@@ -0,0 +1,32 @@
+package com.monitor.model;
+
+/**
+ * State of a monitored service.
+ * A service is UP until a check fails, then SUSPECT until the failure is confirmed
+ * and it goes DOWN. A successful check of a DOWN service makes it RECOVERING until
+ * the recovery is confirmed and it goes UP again. A service changing between UP and
+ * DOWN too often is FLAPPING until it settles.
+ * @author akshayhiremath
+ *
+ */
+public enum ServiceState {
+	UP(true),
+	SUSPECT(true),
+	DOWN(false),
+	RECOVERING(false),
+	FLAPPING(false);
+
+	private final boolean available;
+
+	private ServiceState(boolean available) {
+		this.available = available;
+	}
+
+	/**
+	 * @return true if the service is considered available, the last confirmed state was UP
+	 * 			and no failure is confirmed yet
+	 */
+	public boolean isAvailable() {
+		return available;
+	}
+}
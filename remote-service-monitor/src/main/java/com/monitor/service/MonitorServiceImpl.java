@@ -1,16 +1,53 @@
 package com.monitor.service;
 
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.monitor.Exception.InputValidationException;
 import com.monitor.Exception.MonitorServiceException;
-import com.monitor.core.ConnectAndCheck;
+import com.monitor.core.MonitorMetricsExporter;
+import com.monitor.core.MonitorThreadFactory;
+import com.monitor.core.NioMonitorEngine;
+import com.monitor.core.NotificationDispatcher;
+import com.monitor.core.PhaseSpread;
+import com.monitor.core.RegistrySnapshot;
+import com.monitor.core.ScheduledMonitorEngine;
 import com.monitor.core.ServiceMonitorConfig;
+import com.monitor.core.ServiceRegistry;
+import com.monitor.core.ThreadPerServiceMonitorEngine;
+import com.monitor.interfaces.MonitorEngine;
 import com.monitor.interfaces.MonitorService;
+import com.monitor.model.BulkRegistrationResult;
 import com.monitor.model.Client;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.ReloadResult;
 import com.monitor.model.Service;
 import com.monitor.util.InputValidator;
 /**
@@ -40,6 +77,66 @@ public class MonitorServiceImpl implements MonitorService{
 	@Autowired
 	private ServiceMonitorConfig serviceMonitorConfig;
 	
+	/**
+	 * Engine executing the checks of the monitored services.
+	 * Created on first use according to the execution mode in the central configuration.
+	 */
+	private MonitorEngine monitorEngine;
+	
+	/**
+	 * Delivers the notifications of all the monitored services to their clients,
+	 * decoupled from the threads checking the services.
+	 */
+	private NotificationDispatcher notificationDispatcher;
+	
+	/**
+	 * Writes the registry snapshot periodically, null when no snapshot is kept
+	 */
+	private ScheduledExecutorService snapshotExecutor;
+	
+	/**
+	 * Metrics registered on the platform MBeanServer while monitoring, null when another
+	 * component exports them, e.g. the Spring configuration
+	 */
+	private MonitorMetricsExporter metricsExporter;
+	
+	/**
+	 * Validates the bulk registrations, created on first use, its idle threads time out
+	 */
+	private ThreadPoolExecutor validatorPool;
+	
+	private static final String VIRTUAL_THREAD_ENGINE = "com.monitor.core.VirtualThreadMonitorEngine";
+	
+	/**
+	 * Creates the service with its dependencies injected by Spring
+	 */
+	public MonitorServiceImpl() {
+		
+	}
+	
+	/**
+	 * Creates the service with its dependencies, without Spring
+	 * @param serviceMonitorConfig central configuration
+	 * @param inputValidator input validator
+	 */
+	public MonitorServiceImpl(ServiceMonitorConfig serviceMonitorConfig, InputValidator inputValidator) {
+		this.serviceMonitorConfig = serviceMonitorConfig;
+		this.inputValidator = inputValidator;
+	}
+	
+	public ServiceMonitorConfig getServiceMonitorConfig() {
+		return serviceMonitorConfig;
+	}
+	public void setServiceMonitorConfig(ServiceMonitorConfig serviceMonitorConfig) {
+		this.serviceMonitorConfig = serviceMonitorConfig;
+	}
+	public InputValidator getInputValidator() {
+		return inputValidator;
+	}
+	public void setInputValidator(InputValidator inputValidator) {
+		this.inputValidator = inputValidator;
+	}
+	
 	
 	/**
 	 * Register specified client's interest to know the status of the service being monitored by 
@@ -62,19 +159,181 @@ public class MonitorServiceImpl implements MonitorService{
 			throw new MonitorServiceException(e.getMessage());
 		}
 		
-		HashSet<Service> services = serviceMonitorConfig.getServiceRegister();
-		if(services.contains(service)) {
-				services.forEach(s -> {if(s.equals(service)) {
-								client.setService(s);
-								s.registerClient(client);
-							}
-						});
+		Service s = serviceMonitorConfig.getServiceRegister().get(service);
+		if(s != null) {
+			client.setService(s);
+			s.registerClient(client);
+		}
+	}
+	
+	/**
+	 * Unregister specified client's interest in the service being monitored by ServiceMonitor.
+	 * Only host and port of the passed service are used to find the monitored service instance.
+	 * The service is still checked once per its polling interval, recomputed as the smallest
+	 * polling interval of the remaining clients.
+	 * @param service Service being monitored
+	 * @param client client registered with registerInterestInExistingService()
+	 * @return true if the client was registered to the service
+	 * @throws MonitorServiceException if the service is not being monitored
+	 */
+	public boolean unregisterInterestInExistingService(Service service,Client client) throws MonitorServiceException {
+		Service s = service == null ? null : serviceMonitorConfig.getServiceRegister().get(service);
+		if(s == null) {
+			throw new MonitorServiceException("Service is not being monitored: "+service);
+		}
+		return s.unregisterClient(client);
+	}
+	
+	/**
+	 * Registers interest of many clients at once.
+	 * Each client identifies the service being monitored with its service, only host and port
+	 * of that service are used to find the monitored service instance.
+	 * The clients are validated in parallel, a client failing validation or
+	 * listening to a service which is not monitored is reported in the result
+	 * and doesn't stop the others.
+	 * @param clients clients with the service they want to listen to
+	 * @return registered clients and the reason of failure for the others
+	 * @throws MonitorServiceException if the collection is null
+	 */
+	public BulkRegistrationResult<Client> registerInterestInExistingServices(Collection<Client> clients) throws MonitorServiceException {
+		if(clients == null) {
+			throw new MonitorServiceException("Clients to register are not valid: null");
+		}
+		BulkRegistrationResult<Client> result = new BulkRegistrationResult<>();
+		List<Client> valid = validateInParallel(clients, c -> inputValidator.validateInput(c.getService(), c), result);
+		
+		ServiceRegistry register = serviceMonitorConfig.getServiceRegister();
+		for(Client client : valid) {
+			Service s = register.get(client.getService());
+			if(s == null) {
+				result.addFailure(client, "Service is not being monitored: "+client.getService());
+			}else {
+				client.setService(s);
+				s.registerClient(client);
+				result.addRegistered(client);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Adds many new Services at once to the set of services being monitored by MonitorService.
+	 * Services passed to this method will have client/clients pre-registered to it, as for
+	 * addAndMonitorNewService(service).
+	 * The services are validated in parallel, the valid ones are added to the register 
+	 * in one pass and the first checks of the batch are spread over the polling interval
+	 * of each service, so a large batch doesn't check all the services at once.
+	 * A service failing validation or already being monitored is reported in the result
+	 * and doesn't stop the others.
+	 * @param services services with pre-registered clients
+	 * @return services added and the reason of failure for the others
+	 * @throws MonitorServiceException if the collection is null or the monitoring cannot be started
+	 */
+	public BulkRegistrationResult<Service> addAndMonitorNewServices(Collection<Service> services) throws MonitorServiceException {
+		if(services == null) {
+			throw new MonitorServiceException("Services to add are not valid: null");
+		}
+		BulkRegistrationResult<Service> result = new BulkRegistrationResult<>();
+		List<Service> valid = validateInParallel(services, inputValidator::validateInput, result);
+		MonitorEngine engine = getMonitorEngine();
+		
+		//Add valid services to the register of services being monitored by MonitorService
+		ServiceRegistry register = serviceMonitorConfig.getServiceRegister();
+		List<Service> added = new ArrayList<>(valid.size());
+		for(Service service : valid) {
+			if(register.add(service)) {
+				added.add(service);
+				result.addRegistered(service);
+			}else {
+				result.addFailure(service, "Service is already being monitored.");
+			}
+		}
+		
+		//Start monitoring, first checks spread over the polling interval of each service
+		PhaseSpread phaseSpread = serviceMonitorConfig.getPhaseSpread();
+		for(Service service : added) {
+			monitor(engine, service, phaseSpread.initialDelay(service));
+		}
+		System.out.println(added.size()+" services set for monitoring.");
+		return result;
+	}
+	
+	/**
+	 * Validates the items on the validator pool of validationThreads threads.
+	 * Host resolution dominates validation, so the threads mostly wait.
+	 * @param items items to validate
+	 * @param validation validation of an item
+	 * @param result collects the failure of each invalid item
+	 * @return valid items in the order they were passed
+	 * @throws MonitorServiceException if the validation is interrupted
+	 */
+	private <T> List<T> validateInParallel(Collection<T> items, Validation<T> validation, BulkRegistrationResult<T> result) throws MonitorServiceException {
+		List<T> valid = new ArrayList<>(items.size());
+		if(items.isEmpty()) {
+			return valid;
 		}
+		ExecutorService pool = getValidatorPool();
+		List<Future<String>> outcomes = new ArrayList<>(items.size());
+		try {
+			for(T item : items) {
+				outcomes.add(pool.submit(() -> {
+					try {
+						validation.validate(item);
+						return null;
+					} catch (InputValidationException e) {
+						return e.getMessage();
+					} catch (RuntimeException e) {
+						return "Input value is not valid: "+item;
+					}
+				}));
+			}
+			Iterator<T> itemIterator = items.iterator();
+			for(Future<String> outcome : outcomes) {
+				T item = itemIterator.next();
+				String failure = outcome.get();
+				if(failure == null) {
+					valid.add(item);
+				}else {
+					result.addFailure(item, failure);
+				}
+			}
+		} catch (InterruptedException e) {
+			outcomes.forEach(outcome -> outcome.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new MonitorServiceException("Validation interrupted.");
+		} catch (ExecutionException e) {
+			throw new MonitorServiceException("Validation failed: "+e.getCause());
+		} catch (RejectedExecutionException e) {
+			throw new MonitorServiceException("Validation failed: MonitorService is stopping.");
+		}
+		return valid;
+	}
+	
+	/**
+	 * Returns the validator pool, created on first use with validationThreads threads
+	 * which stop after a minute without validation
+	 * @return validator pool
+	 */
+	private synchronized ExecutorService getValidatorPool() {
+		if(validatorPool == null) {
+			int threads = Math.max(1, serviceMonitorConfig.getValidationThreads());
+			validatorPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), new MonitorThreadFactory("validator", true));
+			validatorPool.allowCoreThreadTimeOut(true);
+		}
+		return validatorPool;
+	}
+	
+	/**
+	 * Validation of a single item of a bulk registration
+	 */
+	private interface Validation<T> {
+		void validate(T item) throws InputValidationException;
 	}
 	
 	/**
 	 * Add a new Service to the set of services being monitored by by MonitorService
-	 * and starts monitoring for it in a separate thread.
+	 * and starts monitoring for it with the MonitorEngine.
 	 * Service passed to this method will have client/clients pre-registered to it.
 	 * The called has to create Client and Service instances, then set the service instance 
 	 * to Client, register each client to the service with service.registerClient() and 
@@ -90,39 +349,383 @@ public class MonitorServiceImpl implements MonitorService{
 				throw new MonitorServiceException(e.getMessage());
 		}
 		
-		if(serviceMonitorConfig.getServiceRegister().contains(service)) {
+		//Add new service to the register of services being monitored by MonitorService
+		if(!serviceMonitorConfig.getServiceRegister().add(service)) {
 			throw new MonitorServiceException("Service is already being monitored. Try to register with API InterestInExistingService(service, client)");
 		}
-		
-		//Add new service to the register of services being monitored by MonitorService
-		serviceMonitorConfig.getServiceRegister().add(service);
-		//TODO Executor could be used to do better thread management
 		//Start monitoring for this new service
-		Thread t = new Thread(new ConnectAndCheck(service,serviceMonitorConfig));
-		t.start();
+		monitor(getMonitorEngine(), service, serviceMonitorConfig.getPhaseSpread().initialDelay(service));
 		System.out.println("Service "+service+" set for monitoring.");
 		
 	}
 
+	/**
+	 * Stops monitoring a service and removes it from the register of services being monitored.
+	 * The MonitorEngine drops the service before its next check.
+	 * @param service Service being monitored, only host and port are used
+	 * @return the removed service with its clients and last state, null if it was not monitored
+	 */
+	public Service stopMonitoringService(Service service) {
+		Service removed = service == null ? null : serviceMonitorConfig.getServiceRegister().remove(service);
+		if(removed != null) {
+			removed.setContinuePolling(false);
+			serviceMonitorConfig.getMetrics().remove(removed);
+			serviceMonitorConfig.getHttpProbe().evict(removed);
+			removed.getClients().forEach(removed.getNotifier()::discard);
+			System.out.println("Service "+removed+" removed from monitoring.");
+		}
+		return removed;
+	}
+
+	/**
+	 * Reloads the monitored services with a new desired inventory.
+	 * The desired services are matched to the register by host:port:
+	 * services not desired anymore are stopped, new ones are validated and started as by
+	 * addAndMonitorNewServices(), and the others are compared by connect timeout, HttpCheck
+	 * and clients, a client being compared by polling interval and outage windows.
+	 * A changed service is validated and reconfigured in place: its state and schedule are
+	 * kept, clients with the same configuration are kept as they are, the others are
+	 * unregistered and the new ones registered. Unchanged services are not touched, so
+	 * apart from one comparison per service the work is proportional to the changes.
+	 * A service switching between a TCP and an HTTP check is replaced by the desired
+	 * service, as the engine may check the two differently: once the desired service is
+	 * valid, the monitored one is stopped and the desired one takes over its state and
+	 * is started. It is reported as reconfigured.
+	 * @param services desired services with their clients, each host:port once
+	 * @return services added, removed and reconfigured and the reason of failure for the others
+	 * @throws MonitorServiceException if the collection is not valid or the monitoring cannot be started
+	 */
+	public synchronized ReloadResult reloadServices(Collection<Service> services) throws MonitorServiceException {
+		if(services == null) {
+			throw new MonitorServiceException("Services to reload are not valid: null");
+		}
+		ReloadResult result = new ReloadResult();
+		Map<String, Service> desired = new LinkedHashMap<>();
+		for(Service s : services) {
+			if(desired.putIfAbsent(s.getKey(), s) != null) {
+				result.addFailure(s, "Service is repeated in the inventory.");
+			}
+		}
+		
+		//Stop the services not desired anymore
+		ServiceRegistry register = serviceMonitorConfig.getServiceRegister();
+		List<Service> stale = new ArrayList<>();
+		for(Service s : register) {
+			if(!desired.containsKey(s.getKey())) {
+				stale.add(s);
+			}
+		}
+		List<Service> added = new ArrayList<>();
+		List<Service> changed = new ArrayList<>();
+		List<Service> switched = new ArrayList<>();
+		for(Service s : desired.values()) {
+			Service current = register.get(s);
+			if(current == null) {
+				added.add(s);
+			}else if((current.getHttpCheck() == null) != (s.getHttpCheck() == null)) {
+				switched.add(s);
+			}else if(sameConfiguration(current, s)) {
+				result.addUnchanged();
+			}else {
+				changed.add(s);
+			}
+		}
+		for(Service s : stale) {
+			Service removed = stopMonitoringService(s);
+			if(removed != null) {
+				result.addRemoved(removed);
+			}
+		}
+		
+		//Reconfigure the changed services in place
+		BulkRegistrationResult<Service> validated = new BulkRegistrationResult<>();
+		for(Service s : validateInParallel(changed, inputValidator::validateInput, validated)) {
+			Service current = register.get(s);
+			if(current != null) {
+				reconfigure(current, s);
+				result.addReconfigured(current);
+			}
+		}
+		validated.getFailures().forEach(result::addFailure);
+		
+		//Replace the services switching between TCP and HTTP, only once the replacement is valid
+		BulkRegistrationResult<Service> replacements = new BulkRegistrationResult<>();
+		List<Service> valid = validateInParallel(switched, inputValidator::validateInput, replacements);
+		if(!valid.isEmpty()) {
+			MonitorEngine engine = getMonitorEngine();
+			for(Service s : valid) {
+				Service current = stopMonitoringService(s);
+				if(current != null) {
+					s.restore(current.getState(), current.getStateVersion(),
+							Math.max(current.getLastClientIdTracker(), s.getLastClientIdTracker()));
+				}
+				if(register.add(s)) {
+					monitor(engine, s, serviceMonitorConfig.getPhaseSpread().initialDelay(s));
+					result.addReconfigured(s);
+				}
+			}
+		}
+		replacements.getFailures().forEach(result::addFailure);
+		
+		//Start the new services
+		if(!added.isEmpty()) {
+			BulkRegistrationResult<Service> started = addAndMonitorNewServices(added);
+			started.getRegistered().forEach(result::addAdded);
+			started.getFailures().forEach(result::addFailure);
+		}
+		System.out.println("Services reloaded. "+result);
+		return result;
+	}
+	
+	/**
+	 * Applies the settings and clients of the desired service to the monitored one
+	 * @param current service being monitored
+	 * @param desired validated service with the same host:port
+	 */
+	private static void reconfigure(Service current, Service desired) {
+		current.setConnectTimeout(desired.getConnectTimeout());
+		current.setHttpCheck(desired.getHttpCheck());
+		//Keep the clients also desired, one for one by configuration
+		Map<String, Deque<Client>> wanted = new HashMap<>();
+		for(Client c : desired.getClients()) {
+			wanted.computeIfAbsent(configurationOf(c), k -> new ArrayDeque<>()).add(c);
+		}
+		Set<Client> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+		for(Client c : current.getClients()) {
+			Deque<Client> same = wanted.get(configurationOf(c));
+			if(same != null && !same.isEmpty()) {
+				matched.add(same.poll());
+			}else {
+				current.unregisterClient(c);
+			}
+		}
+		for(Client c : desired.getClients()) {
+			if(!matched.contains(c)) {
+				c.setService(current);
+				current.registerClient(c);
+			}
+		}
+	}
+	
+	/**
+	 * @return whether both services have the same settings and clients with the same configurations
+	 */
+	private static boolean sameConfiguration(Service current, Service desired) {
+		if(current.getConnectTimeout() != desired.getConnectTimeout()
+				|| !Objects.equals(current.getHttpCheck(), desired.getHttpCheck())) {
+			return false;
+		}
+		List<Client> clients = current.getClients();
+		List<Client> desiredClients = desired.getClients();
+		if(clients.size() != desiredClients.size()) {
+			return false;
+		}
+		//Usually listed in the same order, compared in any order otherwise
+		boolean sameOrder = true;
+		for(int i = 0; i < clients.size() && sameOrder; i++) {
+			sameOrder = sameConfiguration(clients.get(i), desiredClients.get(i));
+		}
+		if(sameOrder) {
+			return true;
+		}
+		Map<String, Integer> configurations = new HashMap<>();
+		clients.forEach(c -> configurations.merge(configurationOf(c), 1, Integer::sum));
+		for(Client c : desired.getClients()) {
+			if(configurations.merge(configurationOf(c), -1, Integer::sum) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean sameConfiguration(Client current, Client desired) {
+		if(current.getPollingInterval() != desired.getPollingInterval()) {
+			return false;
+		}
+		List<OutageWindow> windows = current.getServiceOutages();
+		List<OutageWindow> desiredWindows = desired.getServiceOutages();
+		if(windows.size() != desiredWindows.size()) {
+			return false;
+		}
+		for(int i = 0; i < windows.size(); i++) {
+			OutageWindow w = windows.get(i);
+			OutageWindow d = desiredWindows.get(i);
+			if(!Objects.equals(w.getStartTime(), d.getStartTime()) || !Objects.equals(w.getEndTime(), d.getEndTime())
+					|| w.getRecurrence() != d.getRecurrence()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return polling interval and outage windows of the client
+	 */
+	private static String configurationOf(Client c) {
+		StringBuilder configuration = new StringBuilder().append(c.getPollingInterval());
+		for(OutageWindow w : c.getServiceOutages()) {
+			configuration.append('|').append(w.getStartTime()).append('/').append(w.getEndTime()).append('/').append(w.getRecurrence());
+		}
+		return configuration.toString();
+	}
+
 	/**
 	 * Initiates the process of monitoring with the Pre-Configured Service and Client configuration.
 	 * The initial configuration could be provided in MonitorConfiguration class.
 	 * The bean serviceRegister contains the central repository of all the Services that
 	 * MonitorService will deal with.
 	 * 
-	 * Creates one thread for monitoring each service and executes in parallel.
+	 * Hands each service over to the MonitorEngine selected by the execution mode
+	 * in the central configuration. By default all the services are checked on a 
+	 * small bounded pool of worker threads. The checks of each service start in its
+	 * own phase of the polling interval, see PhaseSpread.
 	 * The polling interval is taken as smallest polling interval 
 	 * out of the intervals specified by each client/caller interested 
 	 * in monitoring the service
 	 * @throws MonitorServiceException
 	 */
 	public void startServiceMonitor() throws MonitorServiceException {
-		HashSet<Service> servicesToMonitor = serviceMonitorConfig.getServiceRegister();	
+		restoreSnapshot();
+		ServiceRegistry servicesToMonitor = serviceMonitorConfig.getServiceRegister();	
+		MonitorEngine engine = getMonitorEngine();
+		PhaseSpread phaseSpread = serviceMonitorConfig.getPhaseSpread();
 		for(Service s:servicesToMonitor) {
-			//TODO Executor could be used to do better thread management
-			Thread t = new Thread(new ConnectAndCheck(s,serviceMonitorConfig));
-			t.start();
-			System.out.println("Service "+s+" set for monitoring.");
+			monitor(engine, s, phaseSpread.initialDelay(s));
+		}
+		System.out.println(servicesToMonitor.size()+" services set for monitoring.");
+		startSnapshots();
+		registerMetrics();
+	}
+	
+	/**
+	 * Restores the services of the registry snapshot in the central configuration, if any.
+	 * A configured service with the same host:port as a service of the snapshot keeps its
+	 * settings and takes the last known state and its version from the snapshot. The clients
+	 * of the snapshot it doesn't have, matched by id, are registered again, and its clients
+	 * get back the outage windows of the snapshot they don't have.
+	 * Services of the snapshot which are not configured, e.g. added at runtime, are monitored
+	 * again unless restoreUnconfiguredServices is turned off in the central configuration.
+	 * @throws MonitorServiceException if the snapshot exists but cannot be read
+	 */
+	private void restoreSnapshot() throws MonitorServiceException {
+		File file = serviceMonitorConfig.getSnapshotFile();
+		if(file == null || !file.isFile()) {
+			return;
+		}
+		long start = System.nanoTime();
+		List<Service> restored;
+		try {
+			restored = RegistrySnapshot.read(file);
+		} catch (IOException e) {
+			throw new MonitorServiceException("Unable to restore registry snapshot "+file+": "+e.getMessage());
+		}
+		//The configured services and clients stay, they take the last state and the runtime additions from the snapshot
+		ServiceRegistry register = serviceMonitorConfig.getServiceRegister();
+		int count = 0;
+		for(Service s : restored) {
+			Service configured = register.get(s);
+			if(configured != null) {
+				mergeClients(configured, s);
+				configured.restore(s.getState(), s.getStateVersion(), Math.max(configured.getLastClientIdTracker(), s.getLastClientIdTracker()));
+				count++;
+			}else if(serviceMonitorConfig.isRestoreUnconfiguredServices() && register.add(s)) {
+				count++;
+			}
+		}
+		System.out.println("Restored "+count+" services from "+file+" in "
+				+TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)+" ms.");
+	}
+	
+	/**
+	 * Registers the clients of the restored service which the configured service doesn't have,
+	 * keeping their ids, and adds the missing outage windows to the clients it has
+	 * @param configured configured service
+	 * @param restored service of the snapshot with the same host:port
+	 */
+	private static void mergeClients(Service configured, Service restored) {
+		Map<Integer, Client> configuredClients = new HashMap<>();
+		for(Client c : configured.getClients()) {
+			configuredClients.put(c.getId(), c);
+		}
+		for(Client c : restored.getClients()) {
+			Client existing = configuredClients.get(c.getId());
+			if(existing == null) {
+				int id = c.getId();
+				c.setService(configured);
+				configured.registerClient(c);
+				c.setId(id);
+				continue;
+			}
+			for(OutageWindow w : c.getServiceOutages()) {
+				if(!hasWindow(existing, w)) {
+					existing.addServiceOutage(new OutageWindow(w.getStartTime(), w.getEndTime(), w.getRecurrence()));
+				}
+			}
+		}
+	}
+
+	private static boolean hasWindow(Client c, OutageWindow window) {
+		for(OutageWindow w : c.getServiceOutages()) {
+			if(Objects.equals(w.getStartTime(), window.getStartTime()) && Objects.equals(w.getEndTime(), window.getEndTime())
+					&& w.getRecurrence() == window.getRecurrence()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the metrics registered when the monitoring starts and unregistered when it stops
+	 * @param metricsExporter exporter of the metrics of this service, null if they are not exported
+	 */
+	public synchronized void setMetricsExporter(MonitorMetricsExporter metricsExporter) {
+		this.metricsExporter = metricsExporter;
+	}
+	
+	public synchronized MonitorMetricsExporter getMetricsExporter() {
+		return metricsExporter;
+	}
+	
+	/**
+	 * Registers the metrics exporter if any, a failure doesn't prevent the monitoring
+	 */
+	private synchronized void registerMetrics() {
+		if(metricsExporter == null) {
+			return;
+		}
+		try {
+			metricsExporter.register();
+		} catch (JMException e) {
+			System.err.println("Failed to register monitor metrics. Error details: "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * Starts writing the registry snapshot periodically, if a snapshot file is configured
+	 */
+	private synchronized void startSnapshots() {
+		long interval = serviceMonitorConfig.getSnapshotInterval();
+		if(serviceMonitorConfig.getSnapshotFile() == null || snapshotExecutor != null || interval <= 0) {
+			return;
+		}
+		snapshotExecutor = Executors.newSingleThreadScheduledExecutor(new MonitorThreadFactory("registry-snapshot", true));
+		snapshotExecutor.scheduleWithFixedDelay(this::writeSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Writes the snapshot of the register of services to the snapshot file of the central configuration
+	 * @return number of services written, 0 if no snapshot file is configured or writing failed
+	 */
+	public int writeSnapshot() {
+		File file = serviceMonitorConfig.getSnapshotFile();
+		if(file == null) {
+			return 0;
+		}
+		try {
+			return RegistrySnapshot.write(serviceMonitorConfig.getServiceRegister(), file);
+		} catch (IOException e) {
+			System.err.println("Failed to write registry snapshot "+file+" Error details: "+e.getMessage());
+			return 0;
 		}
 	}
 	
@@ -148,11 +751,100 @@ public class MonitorServiceImpl implements MonitorService{
 	 */
 	public void stopServiceMonitoring() {
 		System.out.println("Stopping MonitorService...\nGracefully taking all the monitoring threads down.");
-		HashSet<Service> servicesToMonitor = serviceMonitorConfig.getServiceRegister();
-		if(servicesToMonitor.size() > 0) {
-			servicesToMonitor.forEach(s -> s.setContinuePolling(false));
+		ServiceRegistry servicesToMonitor = serviceMonitorConfig.getServiceRegister();
+		servicesToMonitor.forEach(s -> s.setContinuePolling(false));
+		synchronized (this) {
+			if(snapshotExecutor != null) {
+				snapshotExecutor.shutdownNow();
+				snapshotExecutor = null;
+				//Last snapshot with the final state of the services
+				writeSnapshot();
+			}
+			if(monitorEngine != null) {
+				monitorEngine.shutdown();
+				monitorEngine = null;
+			}
+			if(notificationDispatcher != null) {
+				notificationDispatcher.shutdown();
+				notificationDispatcher = null;
+			}
+			if(validatorPool != null) {
+				validatorPool.shutdownNow();
+				validatorPool = null;
+			}
+			serviceMonitorConfig.getHttpProbe().close();
+			if(metricsExporter != null) {
+				metricsExporter.unregister();
+			}
 		}
 		System.out.println("Service Monitor Stopped.");
 	}
 	
+	/**
+	 * Hands the service over to the engine, its notifications are 
+	 * delivered by the notification dispatcher
+	 * @param engine started monitor engine
+	 * @param service service to monitor
+	 * @param initialDelay delay in milliseconds before the first check
+	 */
+	private synchronized void monitor(MonitorEngine engine, Service service, long initialDelay) {
+		service.setNotifier(notificationDispatcher);
+		engine.monitor(service, initialDelay);
+	}
+	
+	/**
+	 * Returns the notification dispatcher, null if monitoring is not started
+	 * @return notification dispatcher
+	 */
+	public synchronized NotificationDispatcher getNotificationDispatcher() {
+		return notificationDispatcher;
+	}
+	
+	/**
+	 * Returns the started MonitorEngine, creates it according to the execution mode
+	 * in the central configuration on first use.
+	 * @return started monitor engine
+	 * @throws MonitorServiceException if the engine of the execution mode is not available
+	 */
+	private synchronized MonitorEngine getMonitorEngine() throws MonitorServiceException {
+		if(monitorEngine == null) {
+			switch(serviceMonitorConfig.getExecutionMode()) {
+			case NIO:
+				monitorEngine = new NioMonitorEngine(serviceMonitorConfig);
+				break;
+			case VIRTUAL_THREAD:
+				monitorEngine = createVirtualThreadEngine();
+				break;
+			case THREAD_PER_SERVICE:
+				monitorEngine = new ThreadPerServiceMonitorEngine(serviceMonitorConfig);
+				break;
+			case SCHEDULED:
+			default:
+				monitorEngine = new ScheduledMonitorEngine(serviceMonitorConfig);
+				break;
+			}
+			monitorEngine.start();
+			notificationDispatcher = new NotificationDispatcher(serviceMonitorConfig.getNotifierThreads(),
+					serviceMonitorConfig.getNotificationQueueCapacity(), serviceMonitorConfig.getNotificationOverflowPolicy());
+		}
+		return monitorEngine;
+	}
+	
+	/**
+	 * Creates the virtual thread engine. The engine is compiled only by the 
+	 * virtual-threads build profile, hence it is looked up by name.
+	 * @return virtual thread monitor engine
+	 * @throws MonitorServiceException if the engine is not part of the build or the JDK has no virtual threads
+	 */
+	private MonitorEngine createVirtualThreadEngine() throws MonitorServiceException {
+		try {
+			return (MonitorEngine) Class.forName(VIRTUAL_THREAD_ENGINE)
+					.getConstructor(ServiceMonitorConfig.class)
+					.newInstance(serviceMonitorConfig);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new MonitorServiceException("Virtual thread execution mode is not available. "
+					+ "Build with profile virtual-threads and run on JDK 21 or newer. Cause: "+e);
+		}
+	}
+	
 }
@@ -1,11 +1,14 @@
 package com.monitor.util;
 
-import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Vector;
+import java.time.temporal.ChronoUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
 
 import com.monitor.Exception.InputValidationException;
+import com.monitor.interfaces.HostResolver;
 import com.monitor.model.Client;
+import com.monitor.model.OutageWindow;
 import com.monitor.model.Service;
 /**
  * This class provides utilities to validate input passed to the 
@@ -20,6 +23,21 @@ public class InputValidator {
 	final static String CLIENT_PREFIX = "Client ";
 	final static String NEXT_LINE = "\n";
 	
+	/**
+	 * Resolver validating the service hosts, shared with the service checks,
+	 * a ResolverCache by default
+	 */
+	@Autowired(required=false)
+	private HostResolver hostResolver = new ResolverCache();
+	
+	public HostResolver getHostResolver() {
+		return hostResolver;
+	}
+	
+	public void setHostResolver(HostResolver hostResolver) {
+		this.hostResolver = hostResolver;
+	}
+	
 	/**
 	 * Validates service and pre-registered client
 	 * @param service service with pre-registred client
@@ -30,8 +48,7 @@ public class InputValidator {
 		
 		validateService(service, message);
 		
-		Vector<Client> serviceClients = service.getClients();
-		serviceClients.forEach(client -> validateClient(client,message));
+		service.getClients().forEach(client -> validateClient(client,message));
 		
 		if(message.length() > 0) {
 			throw new InputValidationException(message.toString()); 
@@ -75,7 +92,7 @@ public class InputValidator {
 						message.append(SERVICE_PREFIX+"Host"+VALUE_NOT_VALID+service.getHost()+NEXT_LINE);
 					}else {
 						try {
-							InetAddress.getByName(service.getHost());
+							hostResolver.resolve(service.getHost());
 						} catch (UnknownHostException e) {
 							message.append(SERVICE_PREFIX+"Host"+VALUE_NOT_VALID+service.getHost()+NEXT_LINE);
 						}
@@ -85,6 +102,11 @@ public class InputValidator {
 					if(service.getPort() < 0 && service.getPort() > 0xFFFF) {
 						message.append(SERVICE_PREFIX+"Port"+VALUE_NOT_VALID+service.getPort()+NEXT_LINE);
 					}
+					
+					//Connect timeout validation, 0 means default connect timeout
+					if(service.getConnectTimeout() < 0) {
+						message.append(SERVICE_PREFIX+"Connect Timeout"+VALUE_NOT_VALID+service.getConnectTimeout()+NEXT_LINE);
+					}
 				}
 	}
 	
@@ -106,14 +128,28 @@ public class InputValidator {
 			if(client.getServiceOutage()==null) {
 				message.append(CLIENT_PREFIX+"Service Outage window"+VALUE_NOT_VALID+client.getServiceOutage()+NEXT_LINE);
 			}else {
-				if(client.getServiceOutage().getStartTime()==null || client.getServiceOutage().getEndTime()==null) {
-					message.append(CLIENT_PREFIX+"Start or End time in outage window"+VALUE_NOT_VALID
-							+"Start: "+client.getServiceOutage().getStartTime()+",End: "+client.getServiceOutage().getEndTime()+NEXT_LINE);
-				}
+				client.getServiceOutages().forEach(window -> validateOutageWindow(window, message));
 			}
 		}
 	}
 	
+	/**
+	 * Validates an outage window of a client
+	 * @param window outage window
+	 * @param message message specifying validation error
+	 */
+	private void validateOutageWindow(OutageWindow window, StringBuilder message) {
+		if(window.getStartTime()==null || window.getEndTime()==null) {
+			message.append(CLIENT_PREFIX+"Start or End time in outage window"+VALUE_NOT_VALID
+					+"Start: "+window.getStartTime()+",End: "+window.getEndTime()+NEXT_LINE);
+		}else if(window.getRecurrence()!=OutageWindow.Recurrence.NONE
+				&& !window.getEndTime().isBefore(window.getStartTime().plus(window.getRecurrence().getPeriodMillis(), ChronoUnit.MILLIS))) {
+			//A recurring window as long as its period would never end
+			message.append(CLIENT_PREFIX+"Recurring outage window longer than its recurrence"+VALUE_NOT_VALID
+					+"Start: "+window.getStartTime()+",End: "+window.getEndTime()+",Recurrence: "+window.getRecurrence()+NEXT_LINE);
+		}
+	}
+	
 	/**
 	 * Validate grace period
 	 * @param gracePeriod grace period to wait after failure detection and before notifying the client
@@ -0,0 +1,193 @@
+package com.monitor.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.monitor.Exception.InputValidationException;
+import com.monitor.Exception.MonitorServiceException;
+import com.monitor.core.ServiceRegistry;
+import com.monitor.model.BulkRegistrationResult;
+import com.monitor.model.Client;
+import com.monitor.model.InventoryLoadResult;
+import com.monitor.model.ReloadResult;
+import com.monitor.model.Service;
+import com.monitor.service.MonitorServiceImpl;
+
+/**
+ * Streams an inventory file into a MonitorService.
+ * The entries are read with InventoryReader and handed over in batches of batchSize
+ * lines: the services not monitored yet go through addAndMonitorNewServices, the other
+ * lines register their client with registerInterestInExistingServices. Each batch is
+ * validated in parallel and its services are checked before the next batch is read, so
+ * monitoring starts with the first lines and memory beyond the register itself is bounded
+ * by the batch size, whatever the size of the inventory.
+ * A line failing to parse or validate is reported with its number and doesn't stop the load.
+ * An inventory can also replace the monitored services with reload().
+ * @author akshayhiremath
+ *
+ */
+public class InventoryLoader {
+
+	private final MonitorServiceImpl monitorService;
+	private int batchSize = 1000;
+	private int maxReportedFailures = 100;
+
+	public InventoryLoader(MonitorServiceImpl monitorService) {
+		this.monitorService = monitorService;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+	/**
+	 * @param batchSize lines validated and scheduled together
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+	public int getMaxReportedFailures() {
+		return maxReportedFailures;
+	}
+	/**
+	 * @param maxReportedFailures failures kept in the result with their reason, the others are only counted
+	 */
+	public void setMaxReportedFailures(int maxReportedFailures) {
+		this.maxReportedFailures = maxReportedFailures;
+	}
+
+	/**
+	 * Loads an inventory file in UTF-8
+	 * @param file inventory file, see InventoryReader for the format
+	 * @return number of services and clients loaded and the failures
+	 * @throws IOException if the file cannot be read
+	 * @throws MonitorServiceException if the monitoring cannot be started or the load is interrupted
+	 */
+	public InventoryLoadResult load(File file) throws IOException, MonitorServiceException {
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			return load(reader);
+		}
+	}
+
+	/**
+	 * Loads an inventory
+	 * @param reader inventory, see InventoryReader for the format, not closed
+	 * @return number of services and clients loaded and the failures
+	 * @throws IOException if the inventory cannot be read
+	 * @throws MonitorServiceException if the monitoring cannot be started or the load is interrupted
+	 */
+	public InventoryLoadResult load(Reader reader) throws IOException, MonitorServiceException {
+		InventoryLoadResult result = new InventoryLoadResult(maxReportedFailures);
+		InventoryReader inventory = new InventoryReader(reader);
+		//Services of the batch by key, a service repeated in the batch gets the clients of each line
+		Map<String, Service> batch = new LinkedHashMap<>();
+		Map<Client, Integer> lines = new IdentityHashMap<>();
+		while(true) {
+			Service entry;
+			try {
+				entry = inventory.next();
+			} catch (InputValidationException e) {
+				result.addFailure(inventory.getLineNumber(), e.getMessage());
+				continue;
+			}
+			if(entry == null) {
+				break;
+			}
+			lines.put(entry.getClients().get(0), inventory.getLineNumber());
+			merge(batch, entry);
+			if(lines.size() >= batchSize) {
+				flush(batch, lines, result);
+			}
+		}
+		flush(batch, lines, result);
+		System.out.println("Inventory loaded. "+result);
+		return result;
+	}
+
+	/**
+	 * Reloads the monitored services with an inventory file in UTF-8, see MonitorServiceImpl.reloadServices().
+	 * Unlike load(), the whole inventory is read before it is applied, since the services
+	 * missing from it are stopped.
+	 * @param file inventory file, see InventoryReader for the format
+	 * @return services added, removed and reconfigured and the failures
+	 * @throws IOException if the file cannot be read
+	 * @throws MonitorServiceException if a line of the inventory cannot be parsed, nothing is reloaded then,
+	 * 			or if the monitoring cannot be started
+	 */
+	public ReloadResult reload(File file) throws IOException, MonitorServiceException {
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			return reload(reader);
+		}
+	}
+
+	/**
+	 * Reloads the monitored services with an inventory, see reload(File)
+	 * @param reader inventory, not closed
+	 * @return services added, removed and reconfigured and the failures
+	 * @throws IOException if the inventory cannot be read
+	 * @throws MonitorServiceException if a line of the inventory cannot be parsed or the monitoring cannot be started
+	 */
+	public ReloadResult reload(Reader reader) throws IOException, MonitorServiceException {
+		InventoryReader inventory = new InventoryReader(reader);
+		Map<String, Service> desired = new LinkedHashMap<>();
+		Service entry;
+		try {
+			while((entry = inventory.next()) != null) {
+				merge(desired, entry);
+			}
+		} catch (InputValidationException e) {
+			//A service missing because of a typo would be stopped
+			throw new MonitorServiceException("Inventory not reloaded, line "+inventory.getLineNumber()+": "+e.getMessage());
+		}
+		return monitorService.reloadServices(desired.values());
+	}
+
+	/**
+	 * Adds the entry to the services by key, the client of an entry for a service
+	 * already in the map is registered to that service
+	 */
+	private static void merge(Map<String, Service> services, Service entry) {
+		Service first = services.putIfAbsent(entry.getKey(), entry);
+		if(first != null) {
+			Client client = entry.getClients().get(0);
+			client.setService(first);
+			first.registerClient(client);
+		}
+	}
+
+	/**
+	 * Adds the new services of the batch and registers the clients of the others
+	 */
+	private void flush(Map<String, Service> batch, Map<Client, Integer> lines, InventoryLoadResult result) throws MonitorServiceException {
+		if(batch.isEmpty()) {
+			return;
+		}
+		ServiceRegistry register = monitorService.getServiceMonitorConfig().getServiceRegister();
+		List<Service> services = new ArrayList<>();
+		List<Client> interests = new ArrayList<>();
+		for(Service s : batch.values()) {
+			if(register.contains(s)) {
+				interests.addAll(s.getClients());
+			}else {
+				services.add(s);
+			}
+		}
+		BulkRegistrationResult<Service> added = monitorService.addAndMonitorNewServices(services);
+		result.addServices(added.getRegisteredCount());
+		added.getRegistered().forEach(s -> result.addClients(s.getClients().size()));
+		added.getFailures().forEach((s, reason) -> s.getClients().forEach(c -> result.addFailure(lines.get(c), reason)));
+		BulkRegistrationResult<Client> registered = monitorService.registerInterestInExistingServices(interests);
+		result.addClients(registered.getRegisteredCount());
+		registered.getFailures().forEach((c, reason) -> result.addFailure(lines.get(c), reason));
+		batch.clear();
+		lines.clear();
+	}
+}
@@ -0,0 +1,338 @@
+package com.monitor.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.monitor.Exception.InputValidationException;
+import com.monitor.model.Client;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.Service;
+
+/**
+ * Reads an inventory of services one line at a time.
+ * Each line declares a client of a service, a service with several clients takes one
+ * line per client. Lines are either CSV:
+ * <pre>
+ * host,port,pollingInterval[,outage;outage...]
+ * db.example.com,5432,5000,2019-01-20T02:00/2019-01-20T03:00/DAILY
+ * </pre>
+ * where an outage is start/end[/NONE|DAILY|WEEKLY] in ISO local date time, or JSON objects:
+ * <pre>
+ * {"host":"db.example.com","port":5432,"interval":5000,"outages":[{"start":"2019-01-20T02:00","end":"2019-01-20T03:00","recurrence":"DAILY"}]}
+ * </pre>
+ * Both can be mixed in a file. Blank lines, lines starting with # and a CSV header starting
+ * with host are skipped. Only the current line is held in memory. As for any client,
+ * InputValidator requires at least one outage window per line, the reader accepts lines without.
+ * @author akshayhiremath
+ *
+ */
+public class InventoryReader implements Closeable {
+
+	private final BufferedReader reader;
+	private int lineNumber;
+
+	public InventoryReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+	}
+
+	/**
+	 * Reads the next entry of the inventory
+	 * @return service with the client declared by the line, null at the end of the inventory
+	 * @throws InputValidationException if the line is not a valid entry, the next call reads the following line
+	 * @throws IOException if the inventory cannot be read
+	 */
+	public Service next() throws InputValidationException, IOException {
+		String line;
+		while((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			if(line.startsWith("{")) {
+				return parseJson(line);
+			}
+			if(line.regionMatches(true, 0, "host", 0, 4) && (line.length() == 4 || line.charAt(4) == ',')) {
+				//CSV header
+				continue;
+			}
+			return parseCsv(line);
+		}
+		return null;
+	}
+
+	/**
+	 * @return number of the line of the last entry read, starting at 1
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private static Service parseCsv(String line) throws InputValidationException {
+		String[] fields = line.split(",", -1);
+		if(fields.length < 3 || fields.length > 4) {
+			throw new InputValidationException("Expected host,port,pollingInterval[,outages]: "+line);
+		}
+		List<OutageWindow> outages = new ArrayList<>();
+		if(fields.length == 4 && !fields[3].trim().isEmpty()) {
+			for(String outage : fields[3].split(";")) {
+				String[] parts = outage.trim().split("/");
+				if(parts.length < 2 || parts.length > 3) {
+					throw new InputValidationException("Expected outage start/end[/recurrence]: "+outage);
+				}
+				outages.add(outage(parts[0], parts[1], parts.length == 3 ? parts[2] : null));
+			}
+		}
+		return entry(fields[0].trim(), integer("Port", fields[1]), integer("Polling interval", fields[2]), outages);
+	}
+
+	private static Service parseJson(String line) throws InputValidationException {
+		Map<String, Object> entry;
+		try {
+			Object value = new JsonParser(line).parse();
+			if(!(value instanceof Map)) {
+				throw new InputValidationException("Expected a JSON object: "+line);
+			}
+			@SuppressWarnings("unchecked")
+			Map<String, Object> object = (Map<String, Object>) value;
+			entry = object;
+		} catch (IllegalArgumentException e) {
+			throw new InputValidationException("Malformed JSON ("+e.getMessage()+"): "+line);
+		}
+		List<OutageWindow> outages = new ArrayList<>();
+		Object windows = entry.get("outages");
+		if(windows instanceof List) {
+			for(Object window : (List<?>) windows) {
+				if(!(window instanceof Map)) {
+					throw new InputValidationException("Expected outage object: "+window);
+				}
+				Map<?, ?> w = (Map<?, ?>) window;
+				outages.add(outage(string(w.get("start")), string(w.get("end")), string(w.get("recurrence"))));
+			}
+		}else if(windows != null) {
+			throw new InputValidationException("Expected outages array: "+windows);
+		}
+		return entry(string(entry.get("host")), integer("Port", string(entry.get("port"))), integer("Polling interval", string(entry.get("interval"))), outages);
+	}
+
+	private static Service entry(String host, int port, int pollingInterval, List<OutageWindow> outages) throws InputValidationException {
+		if(host == null || host.isEmpty()) {
+			throw new InputValidationException("Host is missing");
+		}
+		Service service = new Service(host, port);
+		Client client = new Client(service, pollingInterval, outages.isEmpty() ? null : outages.get(0));
+		for(int i = 1; i < outages.size(); i++) {
+			client.addServiceOutage(outages.get(i));
+		}
+		service.registerClient(client);
+		return service;
+	}
+
+	private static OutageWindow outage(String start, String end, String recurrence) throws InputValidationException {
+		try {
+			OutageWindow window = new OutageWindow(LocalDateTime.parse(start.trim()), LocalDateTime.parse(end.trim()));
+			if(recurrence != null && !recurrence.trim().isEmpty()) {
+				window.setRecurrence(OutageWindow.Recurrence.valueOf(recurrence.trim().toUpperCase(Locale.ROOT)));
+			}
+			return window;
+		} catch (DateTimeParseException | NullPointerException e) {
+			throw new InputValidationException("Outage window value is not valid: "+start+"/"+end);
+		} catch (IllegalArgumentException e) {
+			throw new InputValidationException("Outage recurrence value is not valid: "+recurrence);
+		}
+	}
+
+	private static int integer(String name, String value) throws InputValidationException {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException | NullPointerException e) {
+			throw new InputValidationException(name+" value is not valid: "+value);
+		}
+	}
+
+	private static String string(Object value) {
+		if(value instanceof Double && (Double) value == Math.rint((Double) value)) {
+			return String.valueOf(((Double) value).longValue());
+		}
+		return value == null ? null : value.toString();
+	}
+
+	/**
+	 * Parser of a single JSON value: objects, arrays, strings, numbers, booleans and null.
+	 * Numbers are parsed as Double.
+	 */
+	private static class JsonParser {
+		private final String text;
+		private int position;
+
+		JsonParser(String text) {
+			this.text = text;
+		}
+
+		Object parse() {
+			Object value = value();
+			skipWhitespace();
+			if(position != text.length()) {
+				throw new IllegalArgumentException("trailing characters at "+position);
+			}
+			return value;
+		}
+
+		private Object value() {
+			skipWhitespace();
+			if(position >= text.length()) {
+				throw new IllegalArgumentException("unexpected end");
+			}
+			char c = text.charAt(position);
+			switch(c) {
+			case '{':
+				return object();
+			case '[':
+				return array();
+			case '"':
+				return string();
+			case 't':
+				return literal("true", Boolean.TRUE);
+			case 'f':
+				return literal("false", Boolean.FALSE);
+			case 'n':
+				return literal("null", null);
+			default:
+				return number();
+			}
+		}
+
+		private Map<String, Object> object() {
+			Map<String, Object> object = new LinkedHashMap<>();
+			position++;
+			skipWhitespace();
+			if(peek('}')) {
+				position++;
+				return object;
+			}
+			while(true) {
+				skipWhitespace();
+				if(!peek('"')) {
+					throw new IllegalArgumentException("expected name at "+position);
+				}
+				String name = string();
+				skipWhitespace();
+				expect(':');
+				object.put(name, value());
+				skipWhitespace();
+				if(peek(',')) {
+					position++;
+				}else {
+					expect('}');
+					return object;
+				}
+			}
+		}
+
+		private List<Object> array() {
+			List<Object> array = new ArrayList<>();
+			position++;
+			skipWhitespace();
+			if(peek(']')) {
+				position++;
+				return array;
+			}
+			while(true) {
+				array.add(value());
+				skipWhitespace();
+				if(peek(',')) {
+					position++;
+				}else {
+					expect(']');
+					return array;
+				}
+			}
+		}
+
+		private String string() {
+			StringBuilder value = new StringBuilder();
+			position++;
+			while(position < text.length()) {
+				char c = text.charAt(position++);
+				if(c == '"') {
+					return value.toString();
+				}
+				if(c == '\\') {
+					if(position >= text.length()) {
+						break;
+					}
+					char escaped = text.charAt(position++);
+					switch(escaped) {
+					case 'b': value.append('\b'); break;
+					case 'f': value.append('\f'); break;
+					case 'n': value.append('\n'); break;
+					case 'r': value.append('\r'); break;
+					case 't': value.append('\t'); break;
+					case 'u':
+						if(position + 4 > text.length()) {
+							throw new IllegalArgumentException("invalid escape at "+position);
+						}
+						value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+						position += 4;
+						break;
+					default: value.append(escaped);
+					}
+				}else {
+					value.append(c);
+				}
+			}
+			throw new IllegalArgumentException("unterminated string");
+		}
+
+		private Object literal(String literal, Object value) {
+			if(!text.startsWith(literal, position)) {
+				throw new IllegalArgumentException("unexpected value at "+position);
+			}
+			position += literal.length();
+			return value;
+		}
+
+		private Double number() {
+			int start = position;
+			while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+				position++;
+			}
+			try {
+				return Double.valueOf(text.substring(start, position));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("unexpected value at "+start);
+			}
+		}
+
+		private boolean peek(char c) {
+			return position < text.length() && text.charAt(position) == c;
+		}
+
+		private void expect(char c) {
+			if(!peek(c)) {
+				throw new IllegalArgumentException("expected "+c+" at "+position);
+			}
+			position++;
+		}
+
+		private void skipWhitespace() {
+			while(position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package com.monitor.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import com.monitor.core.MonitorThreadFactory;
+import com.monitor.interfaces.HostResolver;
+
+/**
+ * Caching resolver shared by the service checks and the input validation.
+ * Successful resolutions are kept for the TTL, failed ones for the negative TTL.
+ * An entry used after the refresh point (a fraction of its TTL) is resolved again
+ * in the background, so hosts checked regularly do not wait for the name service.
+ * A failed background refresh keeps the previous addresses until they expire.
+ * An expired entry is removed when it is looked up. When the cache holds more than its
+ * maximum number of entries, the expired entries are removed, then the ones closest to
+ * expiry, so hosts no longer checked do not stay in memory.
+ * @author akshayhiremath
+ *
+ */
+public class ResolverCache implements HostResolver {
+
+	private final HostResolver delegate;
+	private final long ttlMillis;
+	private final long negativeTtlMillis;
+	private final double refreshAheadFraction;
+	private final Executor refreshExecutor;
+	private final LongSupplier clock;
+	private final int maxEntries;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder negativeHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder refreshFailures = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Entries kept by default
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/**
+	 * Cache of the system resolver with 60 seconds TTL, 10 seconds negative TTL,
+	 * refresh after 80% of the TTL on a background thread and up to 10000 entries
+	 */
+	public ResolverCache() {
+		this(HostResolver.SYSTEM, 60000, 10000, 0.8,
+				Executors.newSingleThreadExecutor(new MonitorThreadFactory("resolver-refresh", true)),
+				System::currentTimeMillis);
+	}
+
+	/**
+	 * @param delegate resolver asked on a miss or refresh
+	 * @param ttlMillis how long a resolved address is used
+	 * @param negativeTtlMillis how long a failed resolution is remembered
+	 * @param refreshAheadFraction fraction of the TTL after which a used entry is refreshed, 1 disables the refresh
+	 * @param refreshExecutor executor of the background refreshes
+	 * @param clock time source in milliseconds
+	 */
+	public ResolverCache(HostResolver delegate, long ttlMillis, long negativeTtlMillis, double refreshAheadFraction,
+			Executor refreshExecutor, LongSupplier clock) {
+		this(delegate, ttlMillis, negativeTtlMillis, refreshAheadFraction, refreshExecutor, clock, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param delegate resolver asked on a miss or refresh
+	 * @param ttlMillis how long a resolved address is used
+	 * @param negativeTtlMillis how long a failed resolution is remembered
+	 * @param refreshAheadFraction fraction of the TTL after which a used entry is refreshed, 1 disables the refresh
+	 * @param refreshExecutor executor of the background refreshes
+	 * @param clock time source in milliseconds
+	 * @param maxEntries entries kept before the eviction of expired and soonest expiring entries
+	 */
+	public ResolverCache(HostResolver delegate, long ttlMillis, long negativeTtlMillis, double refreshAheadFraction,
+			Executor refreshExecutor, LongSupplier clock, int maxEntries) {
+		if(maxEntries < 1) {
+			throw new IllegalArgumentException("Maximum entries must be at least 1: "+maxEntries);
+		}
+		this.maxEntries = maxEntries;
+		this.delegate = delegate;
+		this.ttlMillis = ttlMillis;
+		this.negativeTtlMillis = negativeTtlMillis;
+		this.refreshAheadFraction = refreshAheadFraction;
+		this.refreshExecutor = refreshExecutor;
+		this.clock = clock;
+	}
+
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		String key = host.trim().toLowerCase(Locale.ROOT);
+		long now = clock.getAsLong();
+		InetAddress[] cached = cached(key, host, now);
+		if(cached != null) {
+			return cached;
+		}
+		misses.increment();
+		try {
+			InetAddress[] addresses = delegate.resolve(key);
+			store(key, positive(addresses, now), now);
+			return addresses;
+		} catch (UnknownHostException e) {
+			store(key, new Entry(null, now + negativeTtlMillis, Long.MAX_VALUE), now);
+			throw e;
+		}
+	}
+
+	/**
+	 * Answers from the cache only, an entry due for refresh is refreshed in the background as by resolve()
+	 */
+	@Override
+	public InetAddress[] resolveIfKnown(String host) throws UnknownHostException {
+		return cached(host.trim().toLowerCase(Locale.ROOT), host, clock.getAsLong());
+	}
+
+	/**
+	 * @return addresses of a live entry, null if there is none
+	 * @throws UnknownHostException if a live entry records a failed resolution
+	 */
+	private InetAddress[] cached(String key, String host, long now) throws UnknownHostException {
+		Entry entry = entries.get(key);
+		if(entry == null) {
+			return null;
+		}
+		if(now >= entry.expiresAt) {
+			entries.remove(key, entry);
+			return null;
+		}
+		if(entry.addresses == null) {
+			negativeHits.increment();
+			throw new UnknownHostException(host);
+		}
+		hits.increment();
+		if(now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+			refreshAsync(key, entry);
+		}
+		return entry.addresses;
+	}
+
+	private void refreshAsync(String key, Entry stale) {
+		try {
+			refreshExecutor.execute(() -> {
+				try {
+					InetAddress[] addresses = delegate.resolve(key);
+					entries.replace(key, stale, positive(addresses, clock.getAsLong()));
+					refreshes.increment();
+				} catch (UnknownHostException | RuntimeException e) {
+					//Keep the previous addresses until they expire
+					refreshFailures.increment();
+				} finally {
+					//Refreshed again on a later use if the refresh failed
+					stale.refreshing.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			stale.refreshing.set(false);
+		}
+	}
+
+	private void store(String key, Entry entry, long now) {
+		entries.put(key, entry);
+		if(entries.size() > maxEntries) {
+			evict(now);
+		}
+	}
+
+	/**
+	 * Removes the expired entries, then the soonest expiring ones down to 90% of the maximum,
+	 * so the next entries are added without another eviction
+	 */
+	private synchronized void evict(long now) {
+		if(entries.size() <= maxEntries) {
+			return;
+		}
+		int before = entries.size();
+		entries.values().removeIf(e -> now >= e.expiresAt);
+		int excess = entries.size() - maxEntries * 9 / 10;
+		if(excess > 0) {
+			entries.entrySet().stream()
+					.sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+					.limit(excess)
+					.map(Map.Entry::getKey)
+					.collect(Collectors.toList())
+					.forEach(entries::remove);
+		}
+		evictions.add(before - entries.size());
+	}
+
+	private Entry positive(InetAddress[] addresses, long now) {
+		return new Entry(addresses, now + ttlMillis, now + (long) (ttlMillis * refreshAheadFraction));
+	}
+
+	/**
+	 * Removes all the cached entries
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Stops the background refresh thread of the default executor
+	 */
+	public void shutdown() {
+		if(refreshExecutor instanceof ExecutorService) {
+			((ExecutorService) refreshExecutor).shutdownNow();
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+	public long getHits() {
+		return hits.sum();
+	}
+	public long getNegativeHits() {
+		return negativeHits.sum();
+	}
+	public long getMisses() {
+		return misses.sum();
+	}
+	public long getRefreshes() {
+		return refreshes.sum();
+	}
+	public long getRefreshFailures() {
+		return refreshFailures.sum();
+	}
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Cached resolution, addresses are null for a failed resolution
+	 */
+	private static class Entry {
+		final InetAddress[] addresses;
+		final long expiresAt;
+		final long refreshAt;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		Entry(InetAddress[] addresses, long expiresAt, long refreshAt) {
+			this.addresses = addresses;
+			this.expiresAt = expiresAt;
+			this.refreshAt = refreshAt;
+		}
+	}
+}
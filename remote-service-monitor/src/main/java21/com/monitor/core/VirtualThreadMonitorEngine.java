@@ -0,0 +1,17 @@
+package com.monitor.core;
+
+/**
+ * Monitor engine with one virtual thread per service.
+ * Keeps the per-service loop of ThreadPerServiceMonitorEngine, the blocking
+ * connect and the sleep between the checks unmount the virtual thread so the
+ * services share a small pool of carrier threads.
+ * Compiled only by the virtual-threads build profile (JDK 21 or newer).
+ * @author akshayhiremath
+ *
+ */
+public class VirtualThreadMonitorEngine extends ThreadPerServiceMonitorEngine {
+
+	public VirtualThreadMonitorEngine(ServiceMonitorConfig serviceMonitorConfig) {
+		super(serviceMonitorConfig, Thread.ofVirtual().name("virtual-monitor-", 1).factory());
+	}
+}
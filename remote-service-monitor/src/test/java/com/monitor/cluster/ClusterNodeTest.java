@@ -0,0 +1,156 @@
+package com.monitor.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import com.monitor.configuration.MonitorServiceBuilder;
+import com.monitor.model.Client;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class ClusterNodeTest {
+
+	@Test
+	public void ringMovesOnlyTheServicesOfTheChangedNode() {
+		List<String> keys = new ArrayList<>();
+		for(int port = 1; port <= 10000; port++) {
+			keys.add(Service.keyOf("10.0.0.1", port));
+		}
+		ConsistentHashRing three = new ConsistentHashRing(Arrays.asList("a:1", "b:1", "c:1"), 64);
+		ConsistentHashRing four = new ConsistentHashRing(Arrays.asList("a:1", "b:1", "c:1", "d:1"), 64);
+		Map<String, Integer> owned = new HashMap<>();
+		int moved = 0;
+		for(String key : keys) {
+			String before = three.ownerOf(key);
+			String after = four.ownerOf(key);
+			owned.merge(before, 1, Integer::sum);
+			if(!before.equals(after)) {
+				//Only the new node takes services over
+				assertEquals("d:1", after);
+				moved++;
+			}
+		}
+		//About a quarter moves, each node owns about a third before
+		assertTrue(String.valueOf(moved), moved > 1500 && moved < 3500);
+		owned.values().forEach(n -> assertTrue(owned.toString(), n > 2300 && n < 4400));
+		//Every node computes the same ring whatever the order of the members
+		ConsistentHashRing shuffled = new ConsistentHashRing(Arrays.asList("c:1", "a:1", "b:1"), 64);
+		keys.forEach(key -> assertEquals(three.ownerOf(key), shuffled.ownerOf(key)));
+	}
+
+	@Test
+	public void nodesOnLoopbackPartitionRebalanceAndHandOverState() throws Exception {
+		ClusterNode a = node(services(101, 30), Collections.emptyList());
+		a.start();
+		assertEquals(30, a.getMonitoredServices().size());
+		//Last known state to hand over, the ports refuse connections so checks keep them DOWN
+		a.getMonitoredServices().forEach(s -> s.transitionTo(ServiceState.DOWN));
+
+		ClusterNode b = node(Collections.emptyList(), Arrays.asList(a.getNodeId()));
+		b.start();
+		awaitPartitioned(30, a, b);
+		assertTrue(b.getMonitoredServices().size() > 0);
+		assertEquals(30, b.getInventorySize());
+		awaitHandedOver(a, b);
+
+		ClusterNode c = node(services(131, 10), Arrays.asList(b.getNodeId()));
+		c.start();
+		awaitPartitioned(40, a, b, c);
+		assertEquals(40, a.getInventorySize());
+		awaitHandedOver(a, b, c);
+
+		c.leave();
+		awaitPartitioned(40, a, b);
+		awaitHandedOver(a, b);
+
+		//A crashed node is detected by the heartbeats and its services are started from the inventory
+		b.halt();
+		awaitPartitioned(40, a);
+		a.leave();
+	}
+
+	private static ClusterNode node(List<Service> services, List<String> seeds) {
+		MonitorServiceBuilder builder = MonitorServiceBuilder.create();
+		services.forEach(builder::addService);
+		ClusterNode node = new ClusterNode("127.0.0.1", 0, seeds, builder.build());
+		node.setHeartbeatInterval(100);
+		node.setFailureThreshold(3);
+		return node;
+	}
+
+	/**
+	 * Services on loopback ports nothing listens to, checked once per hour
+	 */
+	private static List<Service> services(int firstPort, int count) {
+		List<Service> services = new ArrayList<>();
+		for(int port = firstPort; port < firstPort + count; port++) {
+			Service s = new Service("127.0.0.1", port);
+			s.registerClient(new Client(s, 3600000, new OutageWindow(LocalDateTime.of(2019, 1, 20, 2, 0), LocalDateTime.of(2019, 1, 20, 3, 0))));
+			services.add(s);
+		}
+		return services;
+	}
+
+	/**
+	 * Waits until the nodes know each other and each service is monitored by its owner only
+	 */
+	private static void awaitPartitioned(int total, ClusterNode... nodes) throws InterruptedException {
+		List<String> ids = new ArrayList<>();
+		for(ClusterNode n : nodes) {
+			ids.add(n.getNodeId());
+		}
+		ConsistentHashRing ring = new ConsistentHashRing(ids, 64);
+		await(() -> {
+			int monitored = 0;
+			for(ClusterNode n : nodes) {
+				if(!n.knownMembers().equals(ring.getNodes())) {
+					return false;
+				}
+				for(Service s : n.getMonitoredServices()) {
+					if(!n.getNodeId().equals(ring.ownerOf(s))) {
+						return false;
+					}
+					monitored++;
+				}
+			}
+			return monitored == total;
+		});
+	}
+
+	/**
+	 * Waits until the services moved between the nodes are replaced by the handed over
+	 * ones, the services of the first node are DOWN and the others UP
+	 */
+	private static void awaitHandedOver(ClusterNode... nodes) throws InterruptedException {
+		await(() -> {
+			for(ClusterNode n : nodes) {
+				for(Service s : n.getMonitoredServices()) {
+					if(s.getState() != (s.getPort() <= 130 ? ServiceState.DOWN : ServiceState.UP)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		});
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while(!condition.getAsBoolean()) {
+			assertTrue("Cluster did not converge", System.currentTimeMillis() < deadline);
+			Thread.sleep(20);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.monitor.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.monitor.core.ExecutionMode;
+import com.monitor.core.MonitorMetricsExporter;
+import com.monitor.core.ProbeThrottle;
+import com.monitor.core.ServiceMonitorConfig;
+import com.monitor.interfaces.HostResolver;
+import com.monitor.model.Client;
+import com.monitor.model.Service;
+import com.monitor.service.MonitorServiceImpl;
+import com.monitor.util.ResolverCache;
+
+public class MonitorServiceBuilderTest {
+
+	@Test
+	public void configAndValidatorShareOneResolver() {
+		MonitorServiceImpl byDefault = MonitorServiceBuilder.create().build();
+		assertTrue(byDefault.getServiceMonitorConfig().getHostResolver() instanceof ResolverCache);
+		assertSame(byDefault.getServiceMonitorConfig().getHostResolver(), byDefault.getInputValidator().getHostResolver());
+
+		HostResolver resolver = InetAddress::getAllByName;
+		MonitorServiceImpl custom = MonitorServiceBuilder.create().hostResolver(resolver).build();
+		assertSame(resolver, custom.getServiceMonitorConfig().getHostResolver());
+		assertSame(resolver, custom.getInputValidator().getHostResolver());
+	}
+
+	@Test
+	public void customizersAreAppliedInOrder() {
+		ProbeThrottle throttle = new ProbeThrottle(100, 10, 5, 1, 1);
+		MonitorServiceImpl ms = MonitorServiceBuilder.create()
+				.withDefaultServices()
+				.configure(c -> c.setExecutionMode(ExecutionMode.NIO))
+				.configure(c -> c.setNioSelectorThreads(1))
+				.configure(c -> c.setProbeThrottle(throttle))
+				.configure(c -> c.setGracePeriod(5000))
+				.configure(c -> c.setGracePeriod(7000))
+				.build();
+		ServiceMonitorConfig config = ms.getServiceMonitorConfig();
+		assertEquals(ExecutionMode.NIO, config.getExecutionMode());
+		assertEquals(1, config.getNioSelectorThreads());
+		assertSame(throttle, config.getProbeThrottle());
+		assertEquals(7000, config.getGracePeriod());
+		assertEquals(MonitorServiceBuilder.defaultServiceRegister().size(), config.getServiceRegister().size());
+	}
+
+	@Test
+	public void builtServiceIsNotStartedUntilAsked() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			Service s = new Service("127.0.0.1", server.getLocalPort());
+			s.registerClient(new Client(s, 1000, null));
+			MonitorServiceImpl ms = MonitorServiceBuilder.create().addService(s).build();
+			ServiceMonitorConfig config = ms.getServiceMonitorConfig();
+			assertSame(s, config.getServiceRegister().get("127.0.0.1", server.getLocalPort()));
+			Thread.sleep(200);
+			assertNull(ms.getNotificationDispatcher());
+			assertEquals(0, config.getMetrics().forService(s).snapshot().getProbes());
+			assertFalse(metricsRegistered());
+			try {
+				ms.startServiceMonitor();
+				assertTrue(metricsRegistered());
+				long deadline = System.currentTimeMillis() + 10000;
+				while(config.getMetrics().forService(s).snapshot().getConnected() == 0 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(20);
+				}
+				assertTrue(config.getMetrics().forService(s).snapshot().getConnected() > 0);
+			} finally {
+				ms.stopServiceMonitoring();
+			}
+			assertFalse(metricsRegistered());
+		}
+	}
+
+	@Test
+	public void metricsExportCanBeTurnedOff() {
+		assertNotNull(MonitorServiceBuilder.create().build().getMetricsExporter());
+		assertNull(MonitorServiceBuilder.create().exportMetrics(false).build().getMetricsExporter());
+	}
+
+	private static boolean metricsRegistered() throws Exception {
+		return ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(MonitorMetricsExporter.OBJECT_NAME));
+	}
+}
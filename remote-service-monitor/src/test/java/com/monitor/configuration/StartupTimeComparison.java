@@ -0,0 +1,37 @@
+package com.monitor.configuration;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.monitor.interfaces.MonitorService;
+
+/**
+ * Measures the startup time of the MonitorService with the Spring configuration
+ * and with the MonitorServiceBuilder. Run each mode in a fresh JVM:
+ * java ... com.monitor.configuration.StartupTimeComparison spring|builder
+ * @author akshayhiremath
+ *
+ */
+public class StartupTimeComparison {
+
+	public static void main(String[] args) {
+		boolean spring = args.length == 0 || "spring".equals(args[0]);
+		long start = System.nanoTime();
+		AnnotationConfigApplicationContext ctx = null;
+		MonitorService ms;
+		if(spring) {
+			ctx = new AnnotationConfigApplicationContext(MonitorConfiguration.class);
+			ms = ctx.getBean(MonitorService.class);
+		}else {
+			ms = MonitorServiceBuilder.create().withDefaultServices().build();
+		}
+		long bootstrapMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		long sinceJvmStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		System.out.println((spring ? "spring" : "builder")+" bootstrap="+bootstrapMillis+"ms sinceJvmStart="+sinceJvmStart+"ms service="+ms.getClass().getSimpleName());
+		if(ctx != null) {
+			ctx.close();
+		}
+	}
+}
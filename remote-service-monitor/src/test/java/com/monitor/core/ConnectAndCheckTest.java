@@ -0,0 +1,157 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.monitor.model.Service;
+
+public class ConnectAndCheckTest {
+
+	@Test
+	public void connectsToListeningService() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			ConnectAndCheck check = new ConnectAndCheck(loopbackService(server.getLocalPort()), new ServiceMonitorConfig());
+			assertEquals(ProbeOutcome.CONNECTED, check.connect());
+		}
+	}
+
+	@Test
+	public void closedPortIsRefused() throws Exception {
+		int port;
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			port = server.getLocalPort();
+		}
+		ConnectAndCheck check = new ConnectAndCheck(loopbackService(port), new ServiceMonitorConfig());
+		assertEquals(ProbeOutcome.REFUSED, check.connect());
+		assertTrue(ProbeOutcome.REFUSED.isDown());
+	}
+
+	@Test
+	public void unansweredConnectTimesOutWithinServiceTimeout() throws Exception {
+		List<Socket> backlogFillers = new ArrayList<>();
+		//A server which never accepts, once its backlog is full further SYNs are not answered
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			InetSocketAddress address = new InetSocketAddress(server.getInetAddress(), server.getLocalPort());
+			try {
+				for(int i = 0; i < 8; i++) {
+					Socket filler = new Socket();
+					backlogFillers.add(filler);
+					filler.connect(address, 200);
+				}
+			} catch (java.net.SocketTimeoutException e) {
+				//Backlog is full
+			}
+			Service service = loopbackService(server.getLocalPort());
+			service.setConnectTimeout(300);
+			ConnectAndCheck check = new ConnectAndCheck(service, new ServiceMonitorConfig());
+			long start = System.nanoTime();
+			ProbeOutcome outcome = check.connect();
+			long elapsedMillis = (System.nanoTime() - start) / 1000000;
+			assertEquals(ProbeOutcome.TIMEOUT, outcome);
+			assertTrue(outcome.isDown());
+			assertTrue("Took "+elapsedMillis+"ms", elapsedMillis < 2000);
+		} finally {
+			for(Socket filler : backlogFillers) {
+				filler.close();
+			}
+		}
+	}
+
+	@Test
+	public void probeDeadlineCapsServiceTimeout() {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		config.setConnectTimeout(2000);
+		config.setProbeDeadline(3000);
+		Service service = loopbackService(1);
+		assertEquals(2000, config.getConnectTimeout(service));
+		service.setConnectTimeout(60000);
+		assertEquals(3000, config.getConnectTimeout(service));
+	}
+
+	@Test
+	public void nonPositiveTimeoutsAreRejected() {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		for(int invalid : new int[] {0, -1}) {
+			assertRejected(() -> config.setConnectTimeout(invalid));
+			assertRejected(() -> config.setProbeDeadline(invalid));
+		}
+		Service service = loopbackService(1);
+		service.setConnectTimeout(-1);
+		assertRejected(() -> config.getConnectTimeout(service));
+		//0 is no timeout of the service, the default applies
+		service.setConnectTimeout(0);
+		assertEquals(config.getConnectTimeout(), config.getConnectTimeout(service));
+	}
+
+	@Test
+	public void downServiceBacksOffAndConfirmsRecovery() {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		config.setGracePeriod(500);
+		config.setPhaseSpread(new PhaseSpread(0, 0, () -> 0));
+		config.setAdaptivePolling(new AdaptivePolling(2, 5000, 100));
+		Service service = loopbackService(1);
+		service.setPollingInterval(1000);
+		ConnectAndCheck check = new ConnectAndCheck(service, config);
+		long phase = config.getPhaseSpread().phaseOf(service, 1000);
+		long slot = phase < 500 ? phase + 1000 : phase;
+		//Suspected failure confirmed after the grace period
+		assertEquals(500, check.handleOutcome(ProbeOutcome.REFUSED));
+		assertEquals(1000, check.handleOutcome(ProbeOutcome.TIMEOUT));
+		assertFalse(service.isStatus());
+		//Backoff while down, capped
+		assertEquals(2000, check.handleOutcome(ProbeOutcome.REFUSED));
+		assertEquals(4000, check.handleOutcome(ProbeOutcome.REFUSED));
+		assertEquals(5000, check.handleOutcome(ProbeOutcome.REFUSED));
+		//Recovery is confirmed before reverting to the polling interval
+		assertEquals(100, check.handleOutcome(ProbeOutcome.CONNECTED));
+		//Failed recovery, backoff restarts from the polling interval
+		assertEquals(1000, check.handleOutcome(ProbeOutcome.REFUSED));
+		assertEquals(100, check.handleOutcome(ProbeOutcome.CONNECTED));
+		assertFalse(service.isStatus());
+		assertEquals(slot, check.handleOutcome(ProbeOutcome.CONNECTED));
+		assertTrue(service.isStatus());
+		//Up again, the next failure goes through the grace period
+		assertEquals(500, check.handleOutcome(ProbeOutcome.REFUSED));
+	}
+
+	@Test
+	public void confirmationChecksAreSpreadOverGracePeriod() {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		config.setGracePeriod(900);
+		config.setStatusPolicy(new StatusPolicy(4, 1, 300000, 3, 1));
+		config.setAdaptivePolling(new AdaptivePolling(1, 0, 0));
+		Service service = loopbackService(1);
+		service.setPollingInterval(1000);
+		ConnectAndCheck check = new ConnectAndCheck(service, config);
+		assertEquals(300, check.handleOutcome(ProbeOutcome.REFUSED));
+		assertEquals(300, check.handleOutcome(ProbeOutcome.REFUSED));
+		assertEquals(300, check.handleOutcome(ProbeOutcome.TIMEOUT));
+		assertEquals(1000, check.handleOutcome(ProbeOutcome.REFUSED));
+		assertFalse(service.isStatus());
+		assertEquals(3, config.getMetrics().forService(service).snapshot().getGraceRechecks());
+	}
+
+	private static Service loopbackService(int port) {
+		return new Service(InetAddress.getLoopbackAddress().getHostAddress(), port);
+	}
+
+	private static void assertRejected(Runnable action) {
+		try {
+			action.run();
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+}
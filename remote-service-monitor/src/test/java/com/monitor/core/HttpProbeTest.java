@@ -0,0 +1,254 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.monitor.model.HttpCheck;
+import com.monitor.model.Service;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpProbeTest {
+
+	private HttpServer server;
+	private HttpProbe probe;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/health", exchange -> {
+			byte[] body = "OK".getBytes(StandardCharsets.US_ASCII);
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.createContext("/broken", exchange -> {
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+		});
+		server.createContext("/chunked", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream body = exchange.getResponseBody();
+			body.write(new byte[5000]);
+			body.write("done".getBytes(StandardCharsets.US_ASCII));
+			exchange.close();
+		});
+		server.createContext("/closing", exchange -> {
+			exchange.getResponseHeaders().set("Connection", "close");
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.start();
+		probe = new HttpProbe();
+	}
+
+	@After
+	public void stopServer() {
+		probe.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void checksReuseTheKeptAliveConnection() {
+		Service s = service("/health");
+		for(int i = 0; i < 3; i++) {
+			assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address(), 1000));
+		}
+		assertEquals(1, probe.getOpenedConnections());
+		assertEquals(2, probe.getReusedConnections());
+		assertEquals(1, probe.getIdleConnections());
+		probe.close();
+		assertEquals(0, probe.getIdleConnections());
+	}
+
+	@Test
+	public void connectionsArePooledPerServiceAndTls() {
+		Service s = service("/health");
+		assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address(), 1000));
+		assertEquals(1, probe.getIdleConnections());
+		//The plain connection is not handed to the TLS check, which fails its handshake
+		s.setHttpCheck(new HttpCheck("/health", 200, true));
+		assertEquals(ProbeOutcome.UNHEALTHY, probe.check(s, address(), 1000));
+		assertEquals(0, probe.getReusedConnections());
+		assertEquals(1, probe.getIdleConnections());
+		probe.evict(new Service("127.0.0.1", server.getAddress().getPort()));
+		assertEquals(0, probe.getIdleConnections());
+	}
+
+	@Test
+	public void unexpectedStatusIsUnhealthy() {
+		Service s = service("/broken");
+		assertEquals(ProbeOutcome.UNHEALTHY, probe.check(s, address(), 1000));
+		s.setHttpCheck(new HttpCheck("/broken", 503, false));
+		assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address(), 1000));
+		//An answer with another status keeps the connection usable
+		Service other = service("/health");
+		other.setHttpCheck(new HttpCheck("/health", 204, false));
+		long opened = probe.getOpenedConnections();
+		assertEquals(ProbeOutcome.UNHEALTHY, probe.check(other, address(), 1000));
+		assertEquals(ProbeOutcome.UNHEALTHY, probe.check(other, address(), 1000));
+		assertEquals(opened + 1, probe.getOpenedConnections());
+	}
+
+	@Test
+	public void chunkedBodyIsSkippedAndTheConnectionReused() {
+		Service s = service("/chunked");
+		assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address(), 1000));
+		assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address(), 1000));
+		assertEquals(1, probe.getOpenedConnections());
+	}
+
+	@Test
+	public void connectionClosedByTheServerIsNotPooled() {
+		Service s = service("/closing");
+		assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address(), 1000));
+		assertEquals(0, probe.getIdleConnections());
+		assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address(), 1000));
+		assertEquals(2, probe.getOpenedConnections());
+		assertEquals(0, probe.getReusedConnections());
+	}
+
+	@Test
+	public void staleConnectionIsReplacedWithinTheSameCheck() throws Exception {
+		//Answers once per connection, then closes it without saying so
+		try (ServerSocket once = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+			Thread acceptor = new Thread(() -> {
+				try {
+					while(true) {
+						try (Socket socket = once.accept()) {
+							socket.getInputStream().read(new byte[4096]);
+							socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+						}
+					}
+				} catch (IOException e) {
+					//Server socket closed
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+			Service s = new Service("127.0.0.1", once.getLocalPort());
+			s.setHttpCheck(new HttpCheck("/"));
+			InetSocketAddress address = new InetSocketAddress("127.0.0.1", once.getLocalPort());
+			assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address, 1000));
+			Thread.sleep(50);
+			assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address, 1000));
+			assertEquals(2, probe.getOpenedConnections());
+			assertEquals(1, probe.getReusedConnections());
+		}
+	}
+
+	@Test
+	public void invalidContentLengthIsUnhealthy() throws Exception {
+		try (ServerSocket invalid = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+			Thread acceptor = new Thread(() -> {
+				try (Socket socket = invalid.accept()) {
+					socket.getInputStream().read(new byte[4096]);
+					socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 12abc\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+					socket.getInputStream().read();
+				} catch (IOException e) {
+					//Server socket closed
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+			Service s = new Service("127.0.0.1", invalid.getLocalPort());
+			s.setHttpCheck(new HttpCheck("/"));
+			assertEquals(ProbeOutcome.UNHEALTHY, probe.check(s, new InetSocketAddress("127.0.0.1", invalid.getLocalPort()), 1000));
+			assertEquals(0, probe.getIdleConnections());
+		}
+	}
+
+	@Test
+	public void lateAnswerOnAnEstablishedConnectionIsUnhealthy() throws Exception {
+		//Accepts and reads the requests, answers only the first one
+		try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+			Thread acceptor = new Thread(() -> {
+				try (Socket socket = silent.accept()) {
+					socket.getInputStream().read(new byte[4096]);
+					socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+					while(socket.getInputStream().read(new byte[4096]) >= 0) {
+						//never answered
+					}
+				} catch (IOException e) {
+					//Server socket closed
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+			Service s = new Service("127.0.0.1", silent.getLocalPort());
+			s.setHttpCheck(new HttpCheck("/"));
+			InetSocketAddress address = new InetSocketAddress("127.0.0.1", silent.getLocalPort());
+			assertEquals(ProbeOutcome.CONNECTED, probe.check(s, address, 300));
+			//On the pooled connection
+			assertEquals(ProbeOutcome.UNHEALTHY, probe.check(s, address, 300));
+			assertEquals(1, probe.getReusedConnections());
+			//On a new connection, accepted by the backlog and never answered
+			assertEquals(ProbeOutcome.UNHEALTHY, probe.check(s, address, 300));
+			assertEquals(2, probe.getOpenedConnections());
+			assertEquals(0, probe.getIdleConnections());
+		}
+	}
+
+	@Test
+	public void tricklingAnswerIsBoundedByTheTimeout() throws Exception {
+		//Sends a header byte every 50 milliseconds, each read returns well within the timeout
+		try (ServerSocket trickling = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+			Thread acceptor = new Thread(() -> {
+				try (Socket socket = trickling.accept()) {
+					socket.getInputStream().read(new byte[4096]);
+					OutputStream out = socket.getOutputStream();
+					out.write("HTTP/1.1 200 OK\r\nX-Slow: ".getBytes(StandardCharsets.US_ASCII));
+					while(true) {
+						out.write('a');
+						out.flush();
+						Thread.sleep(50);
+					}
+				} catch (IOException | InterruptedException e) {
+					//Closed by the probe
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+			Service s = new Service("127.0.0.1", trickling.getLocalPort());
+			s.setHttpCheck(new HttpCheck("/"));
+			long start = System.currentTimeMillis();
+			assertEquals(ProbeOutcome.UNHEALTHY, probe.check(s, new InetSocketAddress("127.0.0.1", trickling.getLocalPort()), 500));
+			long elapsed = System.currentTimeMillis() - start;
+			assertTrue("Check took "+elapsed+" ms", elapsed < 2000);
+			assertEquals(0, probe.getIdleConnections());
+		}
+	}
+
+	@Test
+	public void refusedConnectionIsClassifiedLikeTcpChecks() throws IOException {
+		int port;
+		try (ServerSocket closed = new ServerSocket(0)) {
+			port = closed.getLocalPort();
+		}
+		Service s = new Service("127.0.0.1", port);
+		s.setHttpCheck(new HttpCheck("/health"));
+		assertEquals(ProbeOutcome.REFUSED, probe.check(s, new InetSocketAddress("127.0.0.1", port), 1000));
+		assertEquals(0, probe.getOpenedConnections());
+	}
+
+	private Service service(String path) {
+		Service s = new Service("127.0.0.1", server.getAddress().getPort());
+		s.setHttpCheck(new HttpCheck(path));
+		return s;
+	}
+
+	private InetSocketAddress address() {
+		return server.getAddress();
+	}
+}
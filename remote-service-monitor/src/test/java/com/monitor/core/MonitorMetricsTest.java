@@ -0,0 +1,80 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import com.monitor.model.ProbeStatistics;
+import com.monitor.model.Service;
+
+public class MonitorMetricsTest {
+
+	@Test
+	public void histogramPercentilesWithinBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long v = 1; v <= 10000; v++) {
+			histogram.record(v);
+		}
+		assertEquals(10000, histogram.getCount());
+		assertEquals(10000, histogram.getMax());
+		assertEquals(5000, histogram.getMean());
+		long p50 = histogram.getValueAtPercentile(50);
+		assertTrue("p50 "+p50, p50 >= 5000 && p50 <= 5000 * 1.125);
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue("p99 "+p99, p99 >= 9900 && p99 <= 10000);
+		assertEquals(10000, histogram.getValueAtPercentile(100));
+		histogram.record(Long.MAX_VALUE);
+		assertEquals((1L << 27) - 1, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void totalsAggregateServices() {
+		MonitorMetrics metrics = new MonitorMetrics();
+		ServiceMetrics first = metrics.forService(new Service("localhost", 8080));
+		ServiceMetrics second = metrics.forService(new Service("localhost", 8081));
+		first.recordProbe(ProbeOutcome.CONNECTED, TimeUnit.MICROSECONDS.toNanos(100));
+		first.recordProbe(ProbeOutcome.REFUSED, 0);
+		first.recordGraceRecheck();
+		second.recordProbe(ProbeOutcome.TIMEOUT, 0);
+		second.recordNotification();
+		ProbeStatistics totals = metrics.totals();
+		assertEquals(3, totals.getProbes());
+		assertEquals(1, totals.getConnected());
+		assertEquals(1, totals.getRefusals());
+		assertEquals(1, totals.getTimeouts());
+		assertEquals(1, totals.getGraceRechecks());
+		assertEquals(1, totals.getNotifications());
+		assertEquals(100, totals.getLatencyMax());
+		assertEquals(2, metrics.get("LOCALHOST", 8080).snapshot().getProbes());
+	}
+
+	@Test
+	public void exporterRegistersMXBean() throws Exception {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		config.getMetrics().forService(new Service("localhost", 8080)).recordProbe(ProbeOutcome.REFUSED, 0);
+		MonitorMetricsExporter exporter = new MonitorMetricsExporter(config, () -> null);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(MonitorMetricsExporter.OBJECT_NAME);
+		exporter.register();
+		try {
+			CompositeData totals = (CompositeData) server.getAttribute(name, "Totals");
+			assertEquals(1L, totals.get("refusals"));
+			assertEquals(1, server.getAttribute(name, "MonitoredServices"));
+			CompositeData service = (CompositeData) server.invoke(name, "getServiceStatistics",
+					new Object[] {"localhost", 8080}, new String[] {String.class.getName(), int.class.getName()});
+			assertEquals(1L, service.get("probes"));
+		} finally {
+			exporter.unregister();
+		}
+		assertFalse(server.isRegistered(name));
+	}
+}
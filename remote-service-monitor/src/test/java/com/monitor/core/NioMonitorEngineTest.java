@@ -0,0 +1,186 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.monitor.model.ProbeStatistics;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class NioMonitorEngineTest {
+
+	private static final String LOOPBACK = InetAddress.getLoopbackAddress().getHostAddress();
+
+	private ServiceMonitorConfig config;
+	private NioMonitorEngine engine;
+	private final List<Service> services = new ArrayList<>();
+
+	@Before
+	public void startEngine() {
+		config = new ServiceMonitorConfig();
+		config.setNioSelectorThreads(1);
+		config.setConnectTimeout(300);
+		engine = new NioMonitorEngine(config);
+		engine.start();
+	}
+
+	@After
+	public void stopEngine() {
+		for(Service s : services) {
+			s.setContinuePolling(false);
+		}
+		engine.shutdown();
+	}
+
+	@Test
+	public void acceptedAndRefusedConnections() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			Service up = monitor(LOOPBACK, server.getLocalPort());
+			Service refused = monitor(LOOPBACK, closedPort());
+			await(() -> statistics(up).getConnected() > 0 && statistics(refused).getRefusals() > 0);
+			assertState(ServiceState.UP, up);
+			assertState(ServiceState.SUSPECT, refused);
+		}
+	}
+
+	@Test
+	public void attemptExpiresAtTheConnectTimeout() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			//Fill the accept queue, further SYNs are dropped and the connects hang
+			List<Socket> backlog = new ArrayList<>();
+			boolean full = false;
+			try {
+				for(int i = 0; i < 16 && !full; i++) {
+					Socket socket = new Socket();
+					backlog.add(socket);
+					try {
+						socket.connect(server.getLocalSocketAddress(), 200);
+					} catch (SocketTimeoutException e) {
+						full = true;
+					}
+				}
+				Assume.assumeTrue("Accept queue never filled up", full);
+				long start = System.nanoTime();
+				Service hanging = monitor(LOOPBACK, server.getLocalPort());
+				await(() -> statistics(hanging).getTimeouts() > 0);
+				//Expired by the timer of the attempt, not before
+				assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 300);
+				assertEquals(0, statistics(hanging).getConnected());
+			} finally {
+				for(Socket socket : backlog) {
+					socket.close();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void throttledCheckIsPostponed() throws Exception {
+		ProbeThrottle throttle = new ProbeThrottle(0, 0, 0, 0, 1);
+		config.setProbeThrottle(throttle);
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			//The only permit of the host is taken
+			assertEquals(0, throttle.tryAcquire(LOOPBACK));
+			Service s = monitor(LOOPBACK, server.getLocalPort());
+			await(() -> throttle.getThrottledByInFlight() > 1);
+			assertEquals(0, statistics(s).getProbes());
+			throttle.release(LOOPBACK);
+			await(() -> statistics(s).getConnected() > 0);
+		}
+	}
+
+	@Test
+	public void unresolvedHostDoesNotBlockTheSelectorThread() throws Exception {
+		CountDownLatch nameService = new CountDownLatch(1);
+		config.setHostResolver(host -> {
+			if(host.equals("slow.example")) {
+				try {
+					nameService.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new UnknownHostException(host);
+			}
+			return InetAddress.getAllByName(host);
+		});
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			Service slow = monitor("slow.example", 80);
+			Service up = monitor(LOOPBACK, server.getLocalPort());
+			//Checked while the resolution of the other host hangs
+			await(() -> statistics(up).getConnected() > 0);
+			assertEquals(0, statistics(slow).getProbes());
+			nameService.countDown();
+			await(() -> statistics(slow).getFailures() > 0);
+		}
+	}
+
+	@Test
+	public void shutdownStopsTheChecks() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			Service s = monitor(LOOPBACK, server.getLocalPort());
+			await(() -> statistics(s).getConnected() > 0);
+			engine.shutdown();
+			long deadline = System.currentTimeMillis() + 5000;
+			while(selectorThreads() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals(0, selectorThreads());
+			long probes = statistics(s).getProbes();
+			Thread.sleep(1500);
+			assertEquals(probes, statistics(s).getProbes());
+		}
+	}
+
+	private Service monitor(String host, int port) {
+		Service s = new Service(host, port);
+		services.add(s);
+		engine.monitor(s, 0);
+		return s;
+	}
+
+	private ProbeStatistics statistics(Service s) {
+		return config.getMetrics().forService(s).snapshot();
+	}
+
+	private static void assertState(ServiceState state, Service s) {
+		assertEquals(state, s.getState());
+	}
+
+	private static int closedPort() throws IOException {
+		try (ServerSocket closed = new ServerSocket()) {
+			closed.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			return closed.getLocalPort();
+		}
+	}
+
+	private static long selectorThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(t -> t.getName().startsWith("nio-probe") && t.isAlive()).count();
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while(!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
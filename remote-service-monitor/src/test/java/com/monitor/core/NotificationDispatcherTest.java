@@ -0,0 +1,208 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.monitor.interfaces.ServiceListener;
+import com.monitor.model.Client;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class NotificationDispatcherTest {
+
+	private NotificationDispatcher dispatcher;
+
+	@After
+	public void shutdown() {
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void slowListenerDoesNotBlockDispatchOrOtherListeners() throws Exception {
+		dispatcher = new NotificationDispatcher(2, 8, OverflowPolicy.DROP_OLDEST);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingListener slow = new BlockingListener(release);
+		CountingListener fast = new CountingListener();
+
+		long start = System.nanoTime();
+		for(int i = 0; i < 100; i++) {
+			dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		}
+		dispatcher.notifyListener(fast, ServiceState.UP, ServiceState.DOWN);
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+		assertTrue(fast.delivered.await(5, TimeUnit.SECONDS));
+
+		//One notification taken by the blocked listener, the queue holds at most 8 more
+		assertTrue(dispatcher.getQueueDepth(slow) <= 8);
+		assertTrue(dispatcher.getDropped() >= 100 - 1 - 8);
+		release.countDown();
+	}
+
+	@Test
+	public void coalesceMergesIntoTheLatestNotificationOfAFullQueue() throws Exception {
+		dispatcher = new NotificationDispatcher(1, 1, OverflowPolicy.COALESCE);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingListener slow = new BlockingListener(release);
+		dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+		for(int i = 0; i < 10; i++) {
+			dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		}
+		assertEquals(1, dispatcher.getQueueDepth(slow));
+		assertEquals(9, dispatcher.getCoalesced());
+		release.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while(dispatcher.getDelivered() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, dispatcher.getDelivered());
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	@Test
+	public void coalescedTransitionsBackToPreviousStateAreDropped() throws Exception {
+		dispatcher = new NotificationDispatcher(1, 1, OverflowPolicy.COALESCE);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingListener slow = new BlockingListener(release);
+		dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+		dispatcher.notifyListener(slow, ServiceState.DOWN, ServiceState.RECOVERING);
+		dispatcher.notifyListener(slow, ServiceState.RECOVERING, ServiceState.UP);
+		assertEquals(1, dispatcher.getQueueDepth(slow));
+		dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		//DOWN to DOWN tells nothing new
+		assertEquals(0, dispatcher.getQueueDepth(slow));
+		release.countDown();
+	}
+
+	@Test
+	public void coalesceQueuesUpToTheCapacity() throws Exception {
+		dispatcher = new NotificationDispatcher(1, 3, OverflowPolicy.COALESCE);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingListener slow = new BlockingListener(release);
+		dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+		dispatcher.notifyListener(slow, ServiceState.DOWN, ServiceState.RECOVERING);
+		dispatcher.notifyListener(slow, ServiceState.RECOVERING, ServiceState.UP);
+		assertEquals(2, dispatcher.getQueueDepth(slow));
+		assertEquals(0, dispatcher.getCoalesced());
+		dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		assertEquals(3, dispatcher.getQueueDepth(slow));
+		assertEquals(0, dispatcher.getCoalesced());
+		//Full, UP to DOWN becomes UP to RECOVERING
+		dispatcher.notifyListener(slow, ServiceState.DOWN, ServiceState.RECOVERING);
+		assertEquals(3, dispatcher.getQueueDepth(slow));
+		assertEquals(1, dispatcher.getCoalesced());
+		dispatcher.notifyListener(slow, ServiceState.RECOVERING, ServiceState.UP);
+		assertEquals(2, dispatcher.getQueueDepth(slow));
+		assertEquals(2, dispatcher.getCoalesced());
+		assertEquals(0, dispatcher.getDropped());
+		release.countDown();
+	}
+
+	@Test
+	public void notificationAfterDiscardWaitsForTheRunningDelivery() throws Exception {
+		dispatcher = new NotificationDispatcher(2, 8, OverflowPolicy.DROP_OLDEST);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingListener slow = new BlockingListener(release);
+		dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+		dispatcher.discard(slow);
+		dispatcher.notifyListener(slow, ServiceState.UP, ServiceState.DOWN);
+		Thread.sleep(100);
+		//Not handed to the idle pool thread while the first delivery runs
+		assertEquals(1, slow.updates.get());
+		assertEquals(1, dispatcher.getQueueDepth(slow));
+		release.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while(dispatcher.getDelivered() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, slow.updates.get());
+		assertEquals(1, slow.maxConcurrent.get());
+	}
+
+	@Test
+	public void unregisteredClientLeavesNoQueue() throws Exception {
+		dispatcher = new NotificationDispatcher(1, 8, OverflowPolicy.DROP_OLDEST);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch entered = new CountDownLatch(1);
+		AtomicInteger updates = new AtomicInteger();
+		Service service = new Service("127.0.0.1", 8080);
+		Client client = new Client(service, 1000, null) {
+			@Override
+			public void update() {
+				updates.incrementAndGet();
+				entered.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		service.registerClient(client);
+		service.setNotifier(dispatcher);
+		dispatcher.notifyListener(client, ServiceState.UP, ServiceState.DOWN);
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		dispatcher.notifyListener(client, ServiceState.UP, ServiceState.DOWN);
+		dispatcher.notifyListener(client, ServiceState.UP, ServiceState.DOWN);
+		assertEquals(1, dispatcher.getListenerCount());
+		assertEquals(2, dispatcher.getQueueDepth());
+
+		service.unregisterClient(client);
+		assertEquals(0, dispatcher.getQueueDepth());
+		release.countDown();
+		//Removed by its drain task once the running delivery ends
+		long deadline = System.currentTimeMillis() + 5000;
+		while(dispatcher.getListenerCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, dispatcher.getListenerCount());
+		Thread.sleep(100);
+		//Only the notification being delivered reached the listener
+		assertEquals(1, updates.get());
+	}
+
+	private static class BlockingListener extends ServiceListener {
+		final CountDownLatch release;
+		final CountDownLatch entered = new CountDownLatch(1);
+		final AtomicInteger updates = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+
+		BlockingListener(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void update() {
+			updates.incrementAndGet();
+			maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+
+	private static class CountingListener extends ServiceListener {
+		final CountDownLatch delivered = new CountDownLatch(1);
+
+		@Override
+		public void update() {
+			delivered.countDown();
+		}
+	}
+}
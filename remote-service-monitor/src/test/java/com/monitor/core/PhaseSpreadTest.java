@@ -0,0 +1,64 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.monitor.model.Service;
+
+public class PhaseSpreadTest {
+
+	private Service service(String host, int port, int interval) {
+		Service s = new Service(host, port);
+		s.setPollingInterval(interval);
+		return s;
+	}
+
+	@Test
+	public void phaseIsStableAndSpread() {
+		PhaseSpread spread = new PhaseSpread(0, 0);
+		assertEquals(spread.phaseOf(service("localhost", 8080, 10000), 10000),
+				new PhaseSpread(0, 0).phaseOf(service("LOCALHOST", 8080, 10000), 10000));
+		Set<Long> phases = new HashSet<>();
+		for(int port = 8000; port < 8100; port++) {
+			long phase = spread.phaseOf(service("localhost", port, 10000), 10000);
+			assertTrue(phase >= 0 && phase < 10000);
+			phases.add(phase);
+		}
+		assertTrue("Distinct phases: "+phases.size(), phases.size() > 90);
+	}
+
+	@Test
+	public void checksAreAlignedToThePhase() {
+		AtomicLong clock = new AtomicLong(1_000_000);
+		PhaseSpread spread = new PhaseSpread(0, 0, clock::get);
+		Service s = service("localhost", 8080, 1000);
+		long phase = spread.phaseOf(s, 1000);
+		long first = spread.initialDelay(s);
+		assertTrue(first >= 0 && first < 1000);
+		assertEquals(phase, Math.floorMod(clock.get() + first, 1000));
+		//Check performed at the slot, some milliseconds late
+		clock.addAndGet(first + 30);
+		assertEquals(970, spread.nextDelay(s));
+		//A check just before the slot does not get a second check right after it
+		clock.addAndGet(960);
+		assertEquals(1010, spread.nextDelay(s));
+	}
+
+	@Test
+	public void jitterIsBounded() {
+		PhaseSpread spread = new PhaseSpread(0.1, 50, () -> 0);
+		Service s = service("localhost", 8080, 1000);
+		long phase = spread.phaseOf(s, 1000);
+		long base = phase < 500 ? phase + 1000 : phase;
+		for(int i = 0; i < 100; i++) {
+			long delay = spread.nextDelay(s);
+			assertTrue("Delay "+delay, delay >= base && delay <= base + 50);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class ProbeHistoryLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Service db = new Service("10.0.3.7", 5432);
+	private final Service web = new Service("10.0.3.8", 80);
+
+	@Test
+	public void rollsSegmentsAndScansPerService() throws Exception {
+		File dir = folder.newFolder("history");
+		try (ProbeHistoryLog log = new ProbeHistoryLog(dir, 10, 100, Long.MAX_VALUE, 1000)) {
+			for(int i = 1; i <= 50; i++) {
+				long ts = 1_000_000L + i * 1000;
+				assertTrue(log.append(db, ts, i, i > 20 && i <= 30 ? ProbeOutcome.REFUSED : ProbeOutcome.CONNECTED,
+						i > 20 && i <= 30 ? ServiceState.DOWN : ServiceState.UP, i == 21 || i == 31));
+				log.append(web, ts, i, ProbeOutcome.CONNECTED, ServiceState.UP, false);
+			}
+			assertTrue(log.flush(5000));
+			assertEquals(100, log.getWritten());
+			assertEquals(10, log.getSegmentCount());
+
+			List<ProbeRecord> all = log.read("10.0.3.7", 5432, 0, Long.MAX_VALUE);
+			assertEquals(50, all.size());
+			List<ProbeRecord> range = log.read("10.0.3.7", 5432, 1_020_000L, 1_032_000L);
+			assertEquals(12, range.size());
+			assertEquals(1_020_000L, range.get(0).getTimestamp());
+			//When did it go down and for how long
+			long downAt = -1;
+			long upAt = -1;
+			for(ProbeRecord r : all) {
+				if(r.isTransition() && r.getState() == ServiceState.DOWN) {
+					downAt = r.getTimestamp();
+				}else if(r.isTransition() && r.getState() == ServiceState.UP) {
+					upAt = r.getTimestamp();
+				}
+			}
+			assertEquals(1_021_000L, downAt);
+			assertEquals(10_000L, upAt - downAt);
+			assertEquals(ProbeOutcome.REFUSED, all.get(25).getOutcome());
+			assertEquals(26, all.get(25).getLatencyMicros());
+		}
+	}
+
+	@Test
+	public void readSkipsTheRecordsOutsideTheRange() throws Exception {
+		File dir = folder.newFolder("indexed");
+		try (ProbeHistoryLog log = new ProbeHistoryLog(dir, 100_000, 10, Long.MAX_VALUE, 100_000)) {
+			//One check per second over a day, a few out of order
+			for(int i = 0; i < 86_400; i++) {
+				long ts = 1_000_000_000L + i * 1000L - (i % 50 == 0 ? 30_000 : 0);
+				log.append(i % 2 == 0 ? db : web, ts, i, ProbeOutcome.CONNECTED, ServiceState.UP, false);
+			}
+			assertTrue(log.flush(10000));
+			assertEquals(1, log.getSegmentCount());
+			long from = 1_000_000_000L + 3_600_000L;
+			List<ProbeRecord> hour = log.read("10.0.3.7", 5432, from, from + 3_600_000L);
+			assertEquals(1800, hour.size());
+			for(ProbeRecord r : hour) {
+				assertTrue(r.getTimestamp() >= from && r.getTimestamp() < from + 3_600_000L);
+			}
+			//The hour and the ordering slack around it, not the whole day
+			assertTrue(log.getScanned() < 3600 + 2 * 60 + 100);
+			assertEquals(43_200, log.read("10.0.3.7", 5432, Long.MIN_VALUE, Long.MAX_VALUE).size());
+		}
+	}
+
+	@Test
+	public void writeFailuresAreNotCountedAsDropped() throws Exception {
+		File dir = folder.newFolder("removed");
+		try (ProbeHistoryLog log = new ProbeHistoryLog(dir, 1, 10, Long.MAX_VALUE, 100)) {
+			assertTrue(log.append(db, 1_000_000L, 1, ProbeOutcome.CONNECTED, ServiceState.UP, false));
+			assertTrue(log.flush(5000));
+			//The next segment cannot be created
+			for(File segment : dir.listFiles()) {
+				assertTrue(segment.delete());
+			}
+			assertTrue(dir.delete());
+			assertTrue(log.append(db, 1_001_000L, 1, ProbeOutcome.CONNECTED, ServiceState.UP, false));
+			assertTrue(log.flush(5000));
+			assertEquals(1, log.getWriteFailures());
+			assertEquals(0, log.getDropped());
+		}
+	}
+
+	@Test
+	public void retentionDeletesOldestSegments() throws Exception {
+		File dir = folder.newFolder("history");
+		try (ProbeHistoryLog log = new ProbeHistoryLog(dir, 10, 3, Long.MAX_VALUE, 1000)) {
+			for(int i = 1; i <= 100; i++) {
+				log.append(db, 1_000_000L + i, 0, ProbeOutcome.CONNECTED, ServiceState.UP, false);
+			}
+			assertTrue(log.flush(5000));
+			assertEquals(3, log.getSegmentCount());
+			List<ProbeRecord> kept = log.read("10.0.3.7", 5432, 0, Long.MAX_VALUE);
+			assertEquals(30, kept.size());
+			assertEquals(1_000_071L, kept.get(0).getTimestamp());
+		}
+	}
+
+	@Test
+	public void reopenedLogContinuesAfterLastRecord() throws Exception {
+		File dir = folder.newFolder("history");
+		try (ProbeHistoryLog log = new ProbeHistoryLog(dir, 100, 10, Long.MAX_VALUE, 1000)) {
+			for(int i = 1; i <= 5; i++) {
+				log.append(db, 1_000_000L + i, 0, ProbeOutcome.CONNECTED, ServiceState.UP, false);
+			}
+			assertTrue(log.flush(5000));
+		}
+		try (ProbeHistoryLog log = new ProbeHistoryLog(dir, 100, 10, Long.MAX_VALUE, 1000)) {
+			log.append(db, 1_000_010L, 0, ProbeOutcome.TIMEOUT, ServiceState.SUSPECT, true);
+			assertTrue(log.flush(5000));
+			List<ProbeRecord> records = log.read("10.0.3.7", 5432, 0, Long.MAX_VALUE);
+			assertEquals(6, records.size());
+			assertEquals(ProbeOutcome.TIMEOUT, records.get(5).getOutcome());
+			assertEquals(1, log.getSegmentCount());
+		}
+	}
+
+	@Test
+	public void serviceIdIsStableAndNormalized() {
+		assertEquals(ProbeHistoryLog.serviceIdOf("Example.com", 443), ProbeHistoryLog.serviceIdOf("example.com ", 443));
+		assertTrue(ProbeHistoryLog.serviceIdOf("example.com", 443) != ProbeHistoryLog.serviceIdOf("example.com", 444));
+		assertTrue(ProbeHistoryLog.serviceIdOf("example.com", 443) != ProbeHistoryLog.serviceIdOf("example.org", 443));
+	}
+}
@@ -0,0 +1,97 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ProbeThrottleTest {
+
+	@Test
+	public void unlimitedThrottlePermitsEverything() {
+		ProbeThrottle throttle = new ProbeThrottle();
+		for(int i = 0; i < 1000; i++) {
+			assertEquals(0, throttle.tryAcquire("localhost"));
+		}
+		assertEquals(1000, throttle.getPermitted());
+		assertEquals(0, throttle.getThrottled());
+	}
+
+	@Test
+	public void hostRateLimitsEachHostSeparately() {
+		ProbeThrottle throttle = new ProbeThrottle(0, 0, 1, 2, 0);
+		assertEquals(0, throttle.tryAcquire("localhost"));
+		assertEquals(0, throttle.tryAcquire("LOCALHOST"));
+		long wait = throttle.tryAcquire("localhost");
+		assertTrue("Wait for the next token: "+wait, wait > 0 && wait <= 1000);
+		assertEquals(0, throttle.tryAcquire("otherhost"));
+		assertEquals(1, throttle.getThrottledByHostRate());
+	}
+
+	@Test
+	public void globalRateLimitsAllHosts() {
+		ProbeThrottle throttle = new ProbeThrottle(1, 1, 0, 0, 0);
+		assertEquals(0, throttle.tryAcquire("host1"));
+		assertTrue(throttle.tryAcquire("host2") > 0);
+		assertEquals(1, throttle.getThrottledByGlobalRate());
+	}
+
+	@Test
+	public void globalDenialIsNotCountedAgainstHost() {
+		ProbeThrottle throttle = new ProbeThrottle(1, 1, 1, 1, 0);
+		assertEquals(0, throttle.tryAcquire("host1"));
+		assertTrue(throttle.tryAcquire("host2") > 0);
+		assertEquals(1, throttle.getThrottledByGlobalRate());
+		assertEquals(0, throttle.getThrottledByHostRate());
+	}
+
+	@Test
+	public void inFlightLimitIsReleasedAfterCheck() {
+		ProbeThrottle throttle = new ProbeThrottle(0, 0, 0, 0, 2);
+		assertEquals(0, throttle.tryAcquire("localhost"));
+		assertEquals(0, throttle.tryAcquire("localhost"));
+		assertTrue(throttle.tryAcquire("localhost") > 0);
+		throttle.release("localhost");
+		assertEquals(0, throttle.tryAcquire("localhost"));
+		assertEquals(1, throttle.getThrottledByInFlight());
+	}
+
+	@Test
+	public void hostsAreLimitedByTheirNormalizedName() {
+		ProbeThrottle throttle = new ProbeThrottle(0, 0, 0, 0, 1);
+		assertEquals(0, throttle.tryAcquire(" LocalHost "));
+		assertTrue(throttle.tryAcquire("localhost") > 0);
+		//Released by any spelling of the host
+		throttle.release("LOCALHOST\t");
+		assertEquals(0, throttle.tryAcquire("localhost"));
+	}
+
+	@Test
+	public void idleHostsAreDropped() throws Exception {
+		ProbeThrottle inFlight = new ProbeThrottle(0, 0, 0, 0, 1);
+		for(int i = 0; i < 100; i++) {
+			assertEquals(0, inFlight.tryAcquire("host"+i));
+			inFlight.release("host"+i);
+		}
+		assertEquals(0, inFlight.getHostCount());
+		assertEquals(0, inFlight.tryAcquire("localhost"));
+		assertEquals(1, inFlight.getHostCount());
+		//The limit still holds for the host with a check in flight
+		assertTrue(inFlight.tryAcquire("localhost") > 0);
+		inFlight.release("localhost");
+		assertEquals(0, inFlight.getHostCount());
+
+		//Kept until the bucket of the host is full again
+		ProbeThrottle rate = new ProbeThrottle(0, 0, 100, 1, 0);
+		assertEquals(0, rate.tryAcquire("localhost"));
+		rate.release("localhost");
+		assertEquals(1, rate.getHostCount());
+		assertTrue(rate.tryAcquire("localhost") > 0);
+		Thread.sleep(1100);
+		//Swept when another host asks for a permit
+		assertEquals(0, rate.tryAcquire("otherhost"));
+		rate.release("otherhost");
+		assertEquals(1, rate.getHostCount());
+		assertEquals(0, rate.tryAcquire("localhost"));
+	}
+}
@@ -0,0 +1,97 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.monitor.model.Client;
+import com.monitor.model.HttpCheck;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class RegistrySnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void restoresServicesClientsWindowsAndState() throws Exception {
+		ServiceRegistry registry = new ServiceRegistry();
+		Service db = new Service("10.0.3.7", 5432);
+		db.setConnectTimeout(1500);
+		Client nightly = new Client(db, 5000, new OutageWindow(LocalDateTime.of(2019,1,20,1,0), LocalDateTime.of(2019,1,20,2,0), OutageWindow.Recurrence.DAILY));
+		nightly.addServiceOutage(new OutageWindow(LocalDateTime.of(2019,2,1,0,0,0,500), LocalDateTime.of(2019,2,1,6,0)));
+		db.registerClient(nightly);
+		db.registerClient(new Client(db, 2000, null));
+		db.transitionTo(ServiceState.DOWN);
+		registry.add(db);
+		Service web = new Service("web", 443);
+		web.setHttpCheck(new HttpCheck("/status", 204, true));
+		registry.add(web);
+
+		File file = folder.newFile("registry.snapshot");
+		assertEquals(2, RegistrySnapshot.write(registry, file));
+		List<Service> restored = RegistrySnapshot.read(file);
+		assertEquals(2, restored.size());
+
+		Service s = restored.get(0).getPort() == 5432 ? restored.get(0) : restored.get(1);
+		assertEquals(db, s);
+		assertEquals(2000, s.getPollingInterval());
+		assertEquals(1500, s.getConnectTimeout());
+		assertSame(ServiceState.DOWN, s.getState());
+		assertFalse(s.isStatus());
+		assertEquals(2, s.getLastClientIdTracker());
+		assertEquals(2, s.getClients().size());
+		Client c = s.getClients().get(0);
+		assertEquals(0, c.getId());
+		assertEquals(5000, c.getPollingInterval());
+		assertSame(s, c.getService());
+		assertEquals(2, c.getServiceOutages().size());
+		assertEquals(OutageWindow.Recurrence.DAILY, c.getServiceOutage().getRecurrence());
+		assertEquals(LocalDateTime.of(2019,1,20,1,0), c.getServiceOutage().getStartTime());
+		assertEquals(LocalDateTime.of(2019,2,1,0,0,0,500), c.getServiceOutages().get(1).getStartTime());
+		assertNull(s.getClients().get(1).getServiceOutage());
+		assertEquals(1, s.getClients().get(1).getId());
+		assertNull(s.getHttpCheck());
+		HttpCheck check = (s == restored.get(0) ? restored.get(1) : restored.get(0)).getHttpCheck();
+		assertEquals("/status", check.getPath());
+		assertEquals(204, check.getExpectedStatus());
+		assertTrue(check.isTls());
+		assertFalse(new File(file.getPath()+".tmp").exists());
+	}
+
+	@Test
+	public void clientsAreRestoredWithTheirClass() throws Exception {
+		Service s = new Service("10.0.3.7", 5432);
+		s.registerClient(new PagingClient());
+		s.registerClient(new OneOffClient(s));
+		File file = folder.newFile("registry.snapshot");
+		RegistrySnapshot.write(Collections.singletonList(s), file);
+		List<Client> clients = RegistrySnapshot.read(file).get(0).getClients();
+		assertEquals(PagingClient.class, clients.get(0).getClass());
+		//Without a no-argument constructor only the base class is restored
+		assertEquals(Client.class, clients.get(1).getClass());
+		assertEquals(1, clients.get(1).getId());
+	}
+
+	public static class PagingClient extends Client {
+	}
+
+	static class OneOffClient extends Client {
+		OneOffClient(Service service) {
+			super(service);
+		}
+	}
+}
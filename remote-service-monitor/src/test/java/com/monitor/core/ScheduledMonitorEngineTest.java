@@ -0,0 +1,90 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.monitor.model.Client;
+import com.monitor.model.ProbeStatistics;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class ScheduledMonitorEngineTest {
+
+	@Test
+	public void graceRechecksDoNotHoldWorkers() throws Exception {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		config.setProbeWorkerThreads(1);
+		config.setGracePeriod(60000);
+		List<Service> services = new ArrayList<>();
+		for(int i = 0; i < 50; i++) {
+			try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+				services.add(new Service(InetAddress.getLoopbackAddress().getHostAddress(), server.getLocalPort()));
+			}
+		}
+		ScheduledMonitorEngine engine = new ScheduledMonitorEngine(config);
+		engine.start();
+		try {
+			for(Service s : services) {
+				engine.monitor(s, 0);
+			}
+			//All services become SUSPECT within a fraction of the grace period on a single worker
+			long deadline = System.currentTimeMillis() + 10000;
+			ProbeStatistics totals = config.getMetrics().totals();
+			while(totals.getGraceRechecks() < services.size() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+				totals = config.getMetrics().totals();
+			}
+			assertEquals(services.size(), totals.getGraceRechecks());
+			assertEquals(services.size(), totals.getProbes());
+		} finally {
+			for(Service s : services) {
+				s.setContinuePolling(false);
+			}
+			engine.shutdown();
+		}
+	}
+
+	@Test
+	public void failingListenerDoesNotStopTheMonitoring() throws Exception {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		config.setProbeWorkerThreads(1);
+		config.setGracePeriod(100);
+		AtomicInteger notified = new AtomicInteger();
+		Service service;
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			service = new Service(InetAddress.getLoopbackAddress().getHostAddress(), server.getLocalPort());
+		}
+		service.registerClient(new Client(service, 50, null) {
+			@Override
+			public void onStateChange(ServiceState from, ServiceState to) {
+				notified.incrementAndGet();
+				throw new IllegalStateException("listener failure");
+			}
+		});
+		ScheduledMonitorEngine engine = new ScheduledMonitorEngine(config);
+		engine.start();
+		try {
+			engine.monitor(service, 0);
+			//The failure is confirmed after the listener threw on the SUSPECT transition
+			long deadline = System.currentTimeMillis() + 10000;
+			while(notified.get() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals(2, notified.get());
+			assertSame(ServiceState.DOWN, service.getState());
+			assertTrue(config.getMetrics().totals().getProbes() >= 2);
+		} finally {
+			service.setContinuePolling(false);
+			engine.shutdown();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.monitor.model.Service;
+
+public class ServiceRegistryTest {
+
+	@Test
+	public void lookupIsByNormalizedHostAndPort() {
+		ServiceRegistry registry = new ServiceRegistry();
+		Service registered = new Service("LocalHost", 8080);
+		assertTrue(registry.add(registered));
+		assertFalse(registry.add(new Service(" localhost ", 8080)));
+		assertSame(registered, registry.get(new Service("localhost", 8080)));
+		assertSame(registered, registry.get("LOCALHOST", 8080));
+		assertNull(registry.get("localhost", 8081));
+		assertSame(registered, registry.remove(new Service("localhost", 8080)));
+		assertTrue(registry.isEmpty());
+	}
+
+	@Test
+	public void servicesOnSamePortHashApart() {
+		assertNotEquals(new Service("10.0.0.1", 443).hashCode(), new Service("10.0.0.2", 443).hashCode());
+		assertEquals(new Service("Host", 443).hashCode(), new Service("host", 443).hashCode());
+		assertFalse(new Service("host", 443).equals("host:443"));
+	}
+
+	@Test
+	public void concurrentAddsWhileIterating() throws Exception {
+		ServiceRegistry registry = new ServiceRegistry();
+		int threads = 4;
+		int perThread = 5000;
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger added = new AtomicInteger();
+		List<Thread> writers = new ArrayList<>();
+		for(int t = 0; t < threads; t++) {
+			Thread writer = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				//All writers race for the same keys, each key is added once
+				for(int i = 0; i < perThread; i++) {
+					if(registry.add(new Service("10.0." + (i >> 8) + "." + (i & 0xFF), 443))) {
+						added.incrementAndGet();
+					}
+				}
+			});
+			writers.add(writer);
+			writer.start();
+		}
+		start.countDown();
+		while(writers.stream().anyMatch(Thread::isAlive)) {
+			for(Service s : registry) {
+				s.getKey();
+			}
+		}
+		assertEquals(perThread, added.get());
+		assertEquals(perThread, registry.size());
+	}
+}
@@ -0,0 +1,109 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.monitor.model.Client;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class ServiceStateMachineTest {
+
+	private static class RecordingClient extends Client {
+		final List<String> transitions = new ArrayList<>();
+		int updates;
+
+		RecordingClient(Service service) {
+			super(service);
+		}
+
+		@Override
+		public void onStateChange(ServiceState from, ServiceState to) {
+			transitions.add(from+">"+to);
+			super.onStateChange(from, to);
+		}
+
+		@Override
+		public void update() {
+			updates++;
+		}
+	}
+
+	private RecordingClient client(Service service) {
+		RecordingClient client = new RecordingClient(service);
+		service.registerClient(client);
+		return client;
+	}
+
+	@Test
+	public void notifiesOnTransitionsOnly() {
+		Service service = new Service("localhost", 8080);
+		RecordingClient client = client(service);
+		ServiceStateMachine machine = new ServiceStateMachine(service);
+		StatusPolicy policy = new StatusPolicy(2, 2, 60000, 3, 1);
+		long now = 0;
+		assertFalse(machine.onCheck(true, policy, now));
+		assertTrue(machine.onCheck(false, policy, now += 1000));
+		assertEquals(ServiceState.SUSPECT, service.getState());
+		assertTrue(machine.onCheck(false, policy, now += 1000));
+		assertEquals(ServiceState.DOWN, service.getState());
+		//Staying down does not notify again
+		for(int i = 0; i < 10; i++) {
+			assertFalse(machine.onCheck(false, policy, now += 1000));
+		}
+		assertTrue(machine.onCheck(true, policy, now += 1000));
+		assertEquals(ServiceState.RECOVERING, service.getState());
+		assertTrue(machine.onCheck(true, policy, now += 1000));
+		assertEquals(ServiceState.UP, service.getState());
+		assertEquals("[UP>SUSPECT, SUSPECT>DOWN, DOWN>RECOVERING, RECOVERING>UP]", client.transitions.toString());
+		assertEquals(1, client.updates);
+	}
+
+	@Test
+	public void suspectFalseAlarmReturnsToUp() {
+		Service service = new Service("localhost", 8080);
+		RecordingClient client = client(service);
+		ServiceStateMachine machine = new ServiceStateMachine(service);
+		StatusPolicy policy = new StatusPolicy(3, 1, 60000, 3, 1);
+		machine.onCheck(false, policy, 0);
+		machine.onCheck(false, policy, 1000);
+		machine.onCheck(true, policy, 2000);
+		assertEquals(ServiceState.UP, service.getState());
+		assertEquals(0, client.updates);
+		assertEquals(0, machine.getFlapPenalty(), 0);
+	}
+
+	@Test
+	public void flappingIsDampedUntilSettled() {
+		Service service = new Service("localhost", 8080);
+		RecordingClient client = client(service);
+		ServiceStateMachine machine = new ServiceStateMachine(service);
+		StatusPolicy policy = new StatusPolicy(1, 1, 60000, 2.5, 1);
+		long now = 0;
+		machine.onCheck(false, policy, now += 1000);
+		machine.onCheck(true, policy, now += 1000);
+		machine.onCheck(false, policy, now += 1000);
+		assertEquals(ServiceState.FLAPPING, service.getState());
+		//Changes while flapping are not notified
+		int notified = client.transitions.size();
+		for(int i = 0; i < 10; i++) {
+			machine.onCheck(i % 2 == 1, policy, now += 1000);
+		}
+		assertEquals(ServiceState.FLAPPING, service.getState());
+		assertEquals(notified, client.transitions.size());
+		//Penalty decays below the reuse threshold after a few half-lives of stability
+		machine.onCheck(true, policy, now += 2 * 60000);
+		assertEquals(ServiceState.FLAPPING, service.getState());
+		machine.onCheck(true, policy, now += 4 * 60000);
+		assertEquals(ServiceState.UP, service.getState());
+		assertEquals("[UP>DOWN, DOWN>UP, UP>FLAPPING, FLAPPING>UP]", client.transitions.toString());
+		//DOWN once, FLAPPING reached from UP once
+		assertEquals(2, client.updates);
+	}
+}
@@ -0,0 +1,81 @@
+package com.monitor.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import com.monitor.model.Client;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class ThreadPerServiceMonitorEngineTest {
+
+	@Test
+	public void failingListenerDoesNotEndTheThreadOfTheService() throws Exception {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		config.setGracePeriod(100);
+		AtomicInteger notified = new AtomicInteger();
+		Service service = new Service(InetAddress.getLoopbackAddress().getHostAddress(), closedPort());
+		service.registerClient(new Client(service, 50, null) {
+			@Override
+			public void onStateChange(ServiceState from, ServiceState to) {
+				notified.incrementAndGet();
+				throw new IllegalStateException("listener failure");
+			}
+		});
+		ThreadPerServiceMonitorEngine engine = new ThreadPerServiceMonitorEngine(config);
+		engine.start();
+		try {
+			engine.monitor(service, 0);
+			//The failure is confirmed after the listener threw on the SUSPECT transition
+			await(() -> notified.get() >= 2);
+			assertEquals(2, notified.get());
+			assertSame(ServiceState.DOWN, service.getState());
+		} finally {
+			service.setContinuePolling(false);
+			engine.shutdown();
+		}
+	}
+
+	@Test
+	public void shutdownEndsTheThreads() throws Exception {
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		ThreadPerServiceMonitorEngine engine = new ThreadPerServiceMonitorEngine(config, new MonitorThreadFactory("shutdown-test", true));
+		engine.start();
+		Service service = new Service(InetAddress.getLoopbackAddress().getHostAddress(), closedPort());
+		service.registerClient(new Client(service, 60000, null));
+		//Sleeps for a minute before the first check
+		engine.monitor(service, 60000);
+		await(() -> monitorThreads() == 1);
+		engine.shutdown();
+		await(() -> monitorThreads() == 0);
+		assertEquals(0, config.getMetrics().totals().getProbes());
+		assertTrue(service.isContinuePolling());
+	}
+
+	private static int closedPort() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			return server.getLocalPort();
+		}
+	}
+
+	private static long monitorThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(t -> t.getName().startsWith("shutdown-test") && t.isAlive()).count();
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while(!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
@@ -0,0 +1,110 @@
+package com.monitor.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.monitor.model.OutageWindow.Recurrence;
+
+public class OutageIndexTest {
+
+	private static final LocalDateTime DAY = LocalDateTime.of(2019, 1, 20, 0, 0);
+
+	@Test
+	public void singleAndRecurringWindowsOfManyClients() {
+		Service service = new Service("localhost", 8080);
+		//Daily maintenance from 02:00 to 03:00
+		Client nightly = new Client(service, 1000, new OutageWindow(DAY.plusHours(2), DAY.plusHours(3), Recurrence.DAILY));
+		//One-off window plus weekly window on the first day at 12:00 to 12:30
+		Client mixed = new Client(service, 1000, new OutageWindow(DAY.plusDays(1).plusHours(10), DAY.plusDays(1).plusHours(11)));
+		mixed.addServiceOutage(new OutageWindow(DAY.plusHours(12), DAY.plusHours(12).plusMinutes(30), Recurrence.WEEKLY));
+		Client never = new Client(service, 1000, new OutageWindow(DAY.minusDays(10), DAY.minusDays(9)));
+		OutageIndex index = new OutageIndex(Arrays.asList(nightly, mixed, never));
+
+		assertMask("[true, false, false]", index.suppressedAt(millis(DAY.plusDays(5).plusHours(2).plusMinutes(30))));
+		assertMask("[false, false, false]", index.suppressedAt(millis(DAY.plusDays(5).plusHours(3).plusMinutes(1))));
+		assertMask("[false, true, false]", index.suppressedAt(millis(DAY.plusDays(1).plusHours(10).plusMinutes(5))));
+		assertMask("[false, true, false]", index.suppressedAt(millis(DAY.plusDays(14).plusHours(12).plusMinutes(10))));
+		assertMask("[false, false, false]", index.suppressedAt(millis(DAY.plusDays(15).plusHours(12).plusMinutes(10))));
+		//Before the first occurrence nothing recurs
+		assertMask("[false, false, false]", index.suppressedAt(millis(DAY.minusDays(1).plusHours(2).plusMinutes(30))));
+	}
+
+	@Test
+	public void evaluationIsReusedUntilNextBoundary() {
+		Service service = new Service("localhost", 8080);
+		Client nightly = new Client(service, 1000, new OutageWindow(DAY.plusHours(2), DAY.plusHours(3), Recurrence.DAILY));
+		OutageIndex index = new OutageIndex(Arrays.asList(nightly));
+		boolean[] first = index.suppressedAt(millis(DAY.plusHours(4)));
+		assertSame(first, index.suppressedAt(millis(DAY.plusHours(20))));
+		boolean[] inWindow = index.suppressedAt(millis(DAY.plusDays(1).plusHours(2)));
+		assertTrue(inWindow[0]);
+		assertFalse(first[0]);
+	}
+
+	@Test
+	public void serviceRebuildsIndexWhenWindowsChange() {
+		Service service = new Service("localhost", 8080);
+		Client client = new Client(service, 1000, new OutageWindow(DAY.minusDays(10), DAY.minusDays(9)));
+		service.registerClient(client);
+		OutageIndex before = service.getOutageIndex();
+		assertFalse(Service.isOutageWindowOn(client));
+		client.addServiceOutage(new OutageWindow(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1)));
+		assertTrue(before != service.getOutageIndex());
+		assertTrue(Service.isOutageWindowOn(client));
+		assertTrue(service.getOutageIndex().suppressedAt(System.currentTimeMillis())[0]);
+	}
+
+	@Test
+	public void serviceRebuildsIndexWhenAWindowIsModified() {
+		Service service = new Service("localhost", 8080);
+		OutageWindow window = new OutageWindow(DAY.minusDays(10), DAY.minusDays(9));
+		Client client = new Client(service, 1000, window);
+		service.registerClient(client);
+		assertFalse(service.getOutageIndex().suppressedAt(System.currentTimeMillis())[0]);
+		window.setStartTime(LocalDateTime.now().minusHours(1));
+		window.setEndTime(LocalDateTime.now().plusHours(1));
+		assertTrue(service.getOutageIndex().suppressedAt(System.currentTimeMillis())[0]);
+		window.setRecurrence(Recurrence.DAILY);
+		window.setEndTime(window.getStartTime().plusMinutes(1));
+		assertFalse(service.getOutageIndex().suppressedAt(System.currentTimeMillis())[0]);
+		//A replaced window no longer affects the client
+		client.setServiceOutage(null);
+		window.setEndTime(LocalDateTime.now().plusHours(1));
+		assertFalse(service.getOutageIndex().suppressedAt(System.currentTimeMillis())[0]);
+	}
+
+	@Test
+	public void indexIsBuiltWhileWindowsAreAdded() throws Exception {
+		Service service = new Service("localhost", 8080);
+		Client client = new Client(service, 1000, null);
+		service.registerClient(client);
+		Thread adder = new Thread(() -> {
+			for(int i = 0; i < 5000; i++) {
+				client.addServiceOutage(new OutageWindow(DAY.plusMinutes(i), DAY.plusMinutes(i + 1)));
+			}
+		});
+		adder.start();
+		while(adder.isAlive()) {
+			OutageIndex index = new OutageIndex(Arrays.asList(client));
+			index.suppressedAt(millis(DAY));
+		}
+		adder.join();
+		assertTrue(new OutageIndex(Arrays.asList(client)).suppressedAt(millis(DAY.plusMinutes(5)))[0]);
+	}
+
+	private static void assertMask(String expected, boolean[] suppressed) {
+		assertEquals(expected, Arrays.toString(suppressed));
+	}
+
+	private static long millis(LocalDateTime time) {
+		return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+}
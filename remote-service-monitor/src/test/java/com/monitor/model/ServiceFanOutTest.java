@@ -0,0 +1,126 @@
+package com.monitor.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class ServiceFanOutTest {
+
+	@Test
+	public void slowerClientSeesStateSampledAtItsInterval() {
+		Service service = new Service("localhost", 8080);
+		RecordingClient fast = new RecordingClient(service, 1000);
+		RecordingClient slow = new RecordingClient(service, 10000);
+		service.registerClient(fast);
+		service.registerClient(slow);
+		assertEquals(1000, service.getPollingInterval());
+
+		service.transitionTo(ServiceState.DOWN);
+		long delivered = System.currentTimeMillis();
+		service.transitionTo(ServiceState.UP);
+		service.transitionTo(ServiceState.DOWN);
+		service.transitionTo(ServiceState.UP);
+		assertEquals("[UP>DOWN, DOWN>UP, UP>DOWN, DOWN>UP]", fast.changes.toString());
+		//The flap within its interval is not seen, the last change waits for its turn
+		assertEquals("[UP>DOWN]", slow.changes.toString());
+		assertEquals(ServiceState.DOWN, slow.getObservedState());
+
+		service.deliverPendingState(delivered + 5000);
+		assertEquals("[UP>DOWN]", slow.changes.toString());
+		service.deliverPendingState(delivered + 10000);
+		assertEquals("[UP>DOWN, DOWN>UP]", slow.changes.toString());
+		assertEquals(4, fast.changes.size());
+	}
+
+	@Test
+	public void sharedIntervalIsRecomputedWhenClientsLeave() {
+		Service service = new Service("localhost", 8080);
+		RecordingClient fast = new RecordingClient(service, 1000);
+		RecordingClient medium = new RecordingClient(service, 5000);
+		RecordingClient slow = new RecordingClient(service, 10000);
+		service.registerClient(slow);
+		service.registerClient(fast);
+		service.registerClient(medium);
+		assertEquals(1000, service.getPollingInterval());
+
+		assertTrue(service.unregisterClient(fast));
+		assertEquals(5000, service.getPollingInterval());
+		assertFalse(service.unregisterClient(fast));
+		assertTrue(service.unregisterClient(medium));
+		assertEquals(10000, service.getPollingInterval());
+		assertTrue(service.unregisterClient(slow));
+		assertEquals(10000, service.getPollingInterval());
+
+		//Removed clients are not notified anymore
+		service.transitionTo(ServiceState.DOWN);
+		assertTrue(fast.changes.isEmpty());
+	}
+
+	@Test
+	public void clientsRegisteredDuringTransitionsSeeConsistentChanges() throws InterruptedException {
+		Service service = new Service("localhost", 8080);
+		List<RecordingClient> registered = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		for(int t = 0; t < 4; t++) {
+			List<RecordingClient> clients = new ArrayList<>();
+			for(int i = 0; i < 250; i++) {
+				clients.add(new RecordingClient(service, 1000));
+			}
+			registered.addAll(clients);
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				clients.forEach(service::registerClient);
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for(int i = 0; i < 2000; i++) {
+			service.transitionTo(i % 2 == 0 ? ServiceState.DOWN : ServiceState.UP);
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		service.transitionTo(ServiceState.SUSPECT);
+		service.deliverPendingState(System.currentTimeMillis());
+
+		assertEquals(1000, service.getClients().size());
+		assertEquals(2001, service.getStateVersion());
+		BitSet ids = new BitSet();
+		for(RecordingClient c : registered) {
+			ids.set(c.getId());
+			assertEquals(ServiceState.SUSPECT, c.getObservedState());
+			//Every change starts from the state of the previous one
+			for(int i = 1; i < c.changes.size(); i++) {
+				String previous = c.changes.get(i - 1);
+				assertTrue(c.changes.get(i).startsWith(previous.substring(previous.indexOf('>') + 1) + ">"));
+			}
+		}
+		assertEquals(1000, ids.cardinality());
+	}
+
+	private static class RecordingClient extends Client {
+		final List<String> changes = new ArrayList<>();
+
+		RecordingClient(Service service, int pollingInterval) {
+			super(service, pollingInterval, null);
+		}
+
+		@Override
+		public void onStateChange(ServiceState from, ServiceState to) {
+			changes.add(from+">"+to);
+		}
+	}
+}
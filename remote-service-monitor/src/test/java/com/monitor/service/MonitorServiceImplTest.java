@@ -0,0 +1,239 @@
+package com.monitor.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.monitor.configuration.MonitorServiceBuilder;
+import com.monitor.core.RegistrySnapshot;
+import com.monitor.core.ServiceRegistry;
+import com.monitor.model.BulkRegistrationResult;
+import com.monitor.model.Client;
+import com.monitor.model.HttpCheck;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.ReloadResult;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+
+public class MonitorServiceImplTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void restoredStateIsMergedIntoTheConfiguredServices() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			int port = server.getLocalPort();
+			//Snapshot of the previous run: the service was DOWN, had a client and a window added at runtime,
+			//and another service was added at runtime
+			Service previous = new Service("127.0.0.1", port);
+			Client known = new Client(previous, 60000, window());
+			OutageWindow weekly = new OutageWindow(LocalDateTime.of(2019, 1, 21, 2, 0), LocalDateTime.of(2019, 1, 21, 3, 0), OutageWindow.Recurrence.WEEKLY);
+			known.addServiceOutage(weekly);
+			previous.registerClient(known);
+			previous.registerClient(new Client(previous, 30000, weekly));
+			previous.transitionTo(ServiceState.DOWN);
+			Service added = new Service("127.0.0.1", 1);
+			added.registerClient(new Client(added, 60000, window()));
+			File file = folder.newFile("registry.snapshot");
+			RegistrySnapshot.write(Arrays.asList(previous, added), file);
+
+			Service configured = new Service("127.0.0.1", port);
+			RecordingClient listener = new RecordingClient(configured, 1000);
+			configured.registerClient(listener);
+			MonitorServiceImpl monitor = MonitorServiceBuilder.create().addService(configured)
+					.configure(c -> c.setSnapshotFile(file)).configure(c -> c.setSnapshotInterval(0)).build();
+			try {
+				monitor.startServiceMonitor();
+				ServiceRegistry register = monitor.getServiceMonitorConfig().getServiceRegister();
+				assertEquals(2, register.size());
+				assertEquals(1, register.get("127.0.0.1", 1).getClients().size());
+				assertSame(configured, register.get("127.0.0.1", port));
+				assertEquals(1000, configured.getPollingInterval());
+				//The configured client keeps its class and gets the window added at runtime, the client added at runtime is back
+				List<Client> clients = configured.getClients();
+				assertEquals(2, clients.size());
+				assertSame(listener, clients.get(0));
+				assertEquals(2, listener.getServiceOutages().size());
+				assertEquals(OutageWindow.Recurrence.WEEKLY, listener.getServiceOutages().get(1).getRecurrence());
+				assertEquals(1, clients.get(1).getId());
+				assertEquals(30000, clients.get(1).getPollingInterval());
+				assertSame(configured, clients.get(1).getService());
+				assertEquals(2, configured.getLastClientIdTracker());
+				//The configured listener is told about the recovery from the restored state
+				long deadline = System.currentTimeMillis() + 10000;
+				while(listener.changes.isEmpty() && System.currentTimeMillis() < deadline) {
+					Thread.sleep(20);
+				}
+				assertTrue(listener.changes.toString(), !listener.changes.isEmpty() && listener.changes.get(0).startsWith("DOWN>"));
+			} finally {
+				monitor.stopServiceMonitoring();
+			}
+		}
+	}
+
+	@Test
+	public void unconfiguredServicesAreNotRestoredWhenTurnedOff() throws Exception {
+		Service added = new Service("127.0.0.1", 1);
+		added.registerClient(new Client(added, 60000, window()));
+		File file = folder.newFile("registry.snapshot");
+		RegistrySnapshot.write(Arrays.asList(added), file);
+		MonitorServiceImpl monitor = MonitorServiceBuilder.create().configure(c -> c.setSnapshotFile(file))
+				.configure(c -> c.setSnapshotInterval(0)).configure(c -> c.setRestoreUnconfiguredServices(false)).build();
+		try {
+			monitor.startServiceMonitor();
+			assertEquals(0, monitor.getServiceMonitorConfig().getServiceRegister().size());
+		} finally {
+			monitor.stopServiceMonitoring();
+		}
+	}
+
+	@Test
+	public void switchToHttpIsAppliedOnlyOnceTheReplacementIsValid() throws Exception {
+		int port;
+		try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			port = closed.getLocalPort();
+		}
+		Service tcp = new Service("127.0.0.1", port);
+		tcp.registerClient(new Client(tcp, 60000, window()));
+		MonitorServiceImpl monitor = MonitorServiceBuilder.create().addService(tcp).build();
+		try {
+			monitor.startServiceMonitor();
+			tcp.transitionTo(ServiceState.DOWN);
+			long version = tcp.getStateVersion();
+			ServiceRegistry register = monitor.getServiceMonitorConfig().getServiceRegister();
+
+			//Without an outage window the client is not valid, the TCP check goes on
+			Service invalid = new Service("127.0.0.1", port);
+			invalid.setHttpCheck(new HttpCheck("/health"));
+			invalid.registerClient(new Client(invalid, 60000, null));
+			ReloadResult result = monitor.reloadServices(Arrays.asList(invalid));
+			assertEquals(1, result.getFailures().size());
+			assertTrue(result.getRemoved().isEmpty());
+			assertTrue(result.getReconfigured().isEmpty());
+			assertSame(tcp, register.get("127.0.0.1", port));
+			assertTrue(tcp.isContinuePolling());
+
+			Service http = new Service("127.0.0.1", port);
+			http.setHttpCheck(new HttpCheck("/health"));
+			http.registerClient(new Client(http, 60000, window()));
+			result = monitor.reloadServices(Arrays.asList(http));
+			assertTrue(result.getFailures().isEmpty());
+			assertEquals(Arrays.asList(http), result.getReconfigured());
+			assertSame(http, register.get("127.0.0.1", port));
+			assertNotSame(tcp, http);
+			assertFalse(tcp.isContinuePolling());
+			//The replacement takes over the state, its client is not told about it again
+			assertSame(ServiceState.DOWN, http.getState());
+			assertTrue(http.getStateVersion() >= version);
+			assertSame(ServiceState.DOWN, http.getClients().get(0).getObservedState());
+		} finally {
+			monitor.stopServiceMonitoring();
+		}
+	}
+
+	@Test
+	public void bulkRegistrationReportsEachFailure() throws Exception {
+		MonitorServiceImpl monitor = MonitorServiceBuilder.create().hostResolver(MonitorServiceImplTest::resolve).build();
+		try {
+			Service db = service("10.0.0.1", 5432);
+			Service web = service("10.0.0.2", 80);
+			Service unknown = service("db.invalid", 5432);
+			Service noWindow = new Service("10.0.0.3", 22);
+			noWindow.registerClient(new Client(noWindow, 60000, null));
+			Service repeated = service("10.0.0.1", 5432);
+			BulkRegistrationResult<Service> added = monitor.addAndMonitorNewServices(Arrays.asList(db, web, unknown, noWindow, repeated));
+			assertEquals(Arrays.asList(db, web), added.getRegistered());
+			Map<Service, String> failures = added.getFailures();
+			assertEquals(3, failures.size());
+			assertTrue(failures.get(unknown), failures.get(unknown).contains("db.invalid"));
+			assertTrue(failures.containsKey(noWindow));
+			assertEquals("Service is already being monitored.", failures.get(repeated));
+
+			//Already monitored from the first batch
+			Service again = service("10.0.0.2", 80);
+			added = monitor.addAndMonitorNewServices(Arrays.asList(again, service("10.0.0.4", 443)));
+			assertEquals(1, added.getRegisteredCount());
+			assertEquals("Service is already being monitored.", added.getFailures().get(again));
+			ServiceRegistry register = monitor.getServiceMonitorConfig().getServiceRegister();
+			assertEquals(3, register.size());
+			assertSame(web, register.get("10.0.0.2", 80));
+
+			Client interest = new Client(new Service("10.0.0.1", 5432), 30000, window());
+			Client unmonitored = new Client(new Service("10.0.0.9", 5432), 30000, window());
+			Client invalid = new Client(new Service("10.0.0.2", 80), 30000, null);
+			BulkRegistrationResult<Client> registered = monitor.registerInterestInExistingServices(Arrays.asList(interest, unmonitored, invalid));
+			assertEquals(Arrays.asList(interest), registered.getRegistered());
+			assertSame(db, interest.getService());
+			assertEquals(2, db.getClients().size());
+			assertTrue(registered.getFailures().get(unmonitored).startsWith("Service is not being monitored"));
+			assertTrue(registered.getFailures().containsKey(invalid));
+			assertEquals(1, web.getClients().size());
+		} finally {
+			monitor.stopServiceMonitoring();
+		}
+		//The validator pool is shut down with the monitor
+		long deadline = System.currentTimeMillis() + 5000;
+		while(validatorThreads() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, validatorThreads());
+	}
+
+	private static long validatorThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(t -> t.getName().startsWith("validator") && t.isAlive()).count();
+	}
+
+	private static Service service(String host, int port) {
+		Service s = new Service(host, port);
+		s.registerClient(new Client(s, 60000, window()));
+		return s;
+	}
+
+	/**
+	 * Resolves the addresses without DNS
+	 */
+	private static InetAddress[] resolve(String host) throws UnknownHostException {
+		if(host.endsWith(".invalid")) {
+			throw new UnknownHostException(host);
+		}
+		return new InetAddress[] {InetAddress.getByName("127.0.0.1")};
+	}
+
+	static OutageWindow window() {
+		return new OutageWindow(LocalDateTime.of(2019, 1, 20, 2, 0), LocalDateTime.of(2019, 1, 20, 3, 0));
+	}
+
+	/**
+	 * Client subclass recording the transitions it is notified of
+	 */
+	static class RecordingClient extends Client {
+		final List<String> changes = new CopyOnWriteArrayList<>();
+
+		RecordingClient(Service service, int pollingInterval) {
+			super(service, pollingInterval, window());
+		}
+
+		@Override
+		public void onStateChange(ServiceState from, ServiceState to) {
+			changes.add(from+">"+to);
+		}
+	}
+}
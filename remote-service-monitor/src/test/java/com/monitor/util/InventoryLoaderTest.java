@@ -0,0 +1,149 @@
+package com.monitor.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.monitor.Exception.MonitorServiceException;
+import com.monitor.configuration.MonitorServiceBuilder;
+import com.monitor.core.ServiceRegistry;
+import com.monitor.model.Client;
+import com.monitor.model.InventoryLoadResult;
+import com.monitor.model.OutageWindow;
+import com.monitor.model.ReloadResult;
+import com.monitor.model.Service;
+import com.monitor.model.ServiceState;
+import com.monitor.service.MonitorServiceImpl;
+
+public class InventoryLoaderTest {
+
+	private static final String INVENTORY = String.join("\n",
+			"host,port,interval,outages",
+			"# database",
+			"10.0.0.1,5432,60000,2019-01-20T02:00/2019-01-20T03:00/DAILY;2019-02-01T00:00/2019-02-01T06:00",
+			"10.0.0.2,80,30000,2019-03-01T00:00/2019-03-01T01:00",
+			"",
+			"10.0.0.1,5432,20000,2019-03-01T00:00/2019-03-01T01:00",
+			"{\"host\":\"10.0.0.3\",\"port\":443,\"interval\":45000,\"outages\":[{\"start\":\"2019-01-20T02:00\",\"end\":\"2019-01-20T03:00\",\"recurrence\":\"weekly\"}]}",
+			"10.0.0.4,not-a-port,1000",
+			"{\"host\":\"10.0.0.5\",\"port\":22",
+			"unknown.invalid,22,1000,2019-03-01T00:00/2019-03-01T01:00",
+			"{\"host\":\"10.0.0.2\", \"port\": 80, \"interval\": 90000, \"outages\": [{\"start\": \"2019-03-01T00:00\", \"end\": \"2019-03-01T01:00\"}]}",
+			"10.0.0.1,5432,60000,2019-01-20T02:00");
+
+	@Test
+	public void streamsEntriesInBatchesAndReportsFailuresByLine() throws Exception {
+		MonitorServiceImpl monitor = MonitorServiceBuilder.create().hostResolver(InventoryLoaderTest::resolve).build();
+		try {
+			InventoryLoader loader = new InventoryLoader(monitor);
+			loader.setBatchSize(2);
+			InventoryLoadResult result = loader.load(new StringReader(INVENTORY));
+
+			assertEquals(3, result.getServicesAdded());
+			assertEquals(5, result.getClientsRegistered());
+			assertEquals(4, result.getFailureCount());
+			Map<Integer, String> failures = result.getFailures();
+			assertTrue(failures.get(8), failures.get(8).startsWith("Port value is not valid"));
+			assertTrue(failures.get(9), failures.get(9).startsWith("Malformed JSON"));
+			assertTrue(failures.get(10), failures.get(10).contains("unknown.invalid"));
+			assertTrue(failures.get(12), failures.get(12).startsWith("Expected outage"));
+
+			ServiceRegistry register = monitor.getServiceMonitorConfig().getServiceRegister();
+			assertEquals(3, register.size());
+			Service db = register.get("10.0.0.1", 5432);
+			//Declared again in a later batch, the client is added to the monitored service
+			assertEquals(2, db.getClients().size());
+			assertEquals(20000, db.getPollingInterval());
+			Client nightly = db.getClients().get(0);
+			assertEquals(2, nightly.getServiceOutages().size());
+			assertEquals(OutageWindow.Recurrence.DAILY, nightly.getServiceOutage().getRecurrence());
+			assertEquals(1, db.getClients().get(1).getServiceOutages().size());
+			assertEquals(2, register.get("10.0.0.2", 80).getClients().size());
+			OutageWindow weekly = register.get("10.0.0.3", 443).getClients().get(0).getServiceOutage();
+			assertEquals(OutageWindow.Recurrence.WEEKLY, weekly.getRecurrence());
+			assertEquals(LocalDateTime.of(2019, 1, 20, 3, 0), weekly.getEndTime());
+		} finally {
+			monitor.stopServiceMonitoring();
+		}
+	}
+
+	@Test
+	public void reloadAppliesOnlyTheDifference() throws Exception {
+		MonitorServiceImpl monitor = MonitorServiceBuilder.create().hostResolver(InventoryLoaderTest::resolve).build();
+		try {
+			InventoryLoader loader = new InventoryLoader(monitor);
+			String window = ",2019-03-01T00:00/2019-03-01T01:00";
+			loader.load(new StringReader(String.join("\n",
+					"10.0.0.1,5432,60000"+window,
+					"10.0.0.1,5432,20000"+window,
+					"10.0.0.2,80,30000"+window,
+					"10.0.0.3,443,45000"+window)));
+			ServiceRegistry register = monitor.getServiceMonitorConfig().getServiceRegister();
+			Service db = register.get("10.0.0.1", 5432);
+			Service web = register.get("10.0.0.2", 80);
+			Client kept = db.getClients().get(0);
+			List<Client> webClients = web.getClients();
+			db.transitionTo(ServiceState.DOWN);
+			web.transitionTo(ServiceState.DOWN);
+
+			ReloadResult result = loader.reload(new StringReader(String.join("\n",
+					"10.0.0.2,80,30000"+window,
+					"10.0.0.1,5432,60000"+window,
+					"10.0.0.1,5432,90000,2019-03-01T00:00/2019-03-01T01:00/DAILY",
+					"10.0.0.4,22,10000"+window)));
+
+			assertEquals(1, result.getUnchangedCount());
+			assertEquals(Arrays.asList(db), result.getReconfigured());
+			assertEquals(Arrays.asList(new Service("10.0.0.3", 443)), result.getRemoved());
+			assertEquals(Arrays.asList(new Service("10.0.0.4", 22)), result.getAdded());
+			assertTrue(result.getFailures().isEmpty());
+			assertEquals(3, register.size());
+			assertFalse(result.getRemoved().get(0).isContinuePolling());
+			//Unchanged service untouched
+			assertSame(web, register.get("10.0.0.2", 80));
+			assertEquals(webClients, web.getClients());
+			assertSame(ServiceState.DOWN, web.getState());
+			//Changed service reconfigured in place, keeping its state and the clients still desired
+			assertSame(db, register.get("10.0.0.1", 5432));
+			assertSame(ServiceState.DOWN, db.getState());
+			assertEquals(2, db.getClients().size());
+			assertSame(kept, db.getClients().get(0));
+			assertSame(db, db.getClients().get(1).getService());
+			assertEquals(OutageWindow.Recurrence.DAILY, db.getClients().get(1).getServiceOutage().getRecurrence());
+			assertEquals(60000, db.getPollingInterval());
+
+			//A line which cannot be parsed stops the whole reload
+			try {
+				loader.reload(new StringReader("10.0.0.2,80,30000"+window+"\n10.0.0.1,54x2,60000"+window));
+				fail("Reload with an invalid line");
+			} catch (MonitorServiceException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("line 2"));
+			}
+			assertEquals(3, register.size());
+		} finally {
+			monitor.stopServiceMonitoring();
+		}
+	}
+
+	/**
+	 * Resolves the addresses of the inventory without DNS
+	 */
+	private static InetAddress[] resolve(String host) throws UnknownHostException {
+		if(host.endsWith(".invalid")) {
+			throw new UnknownHostException(host);
+		}
+		return new InetAddress[] {InetAddress.getByName("127.0.0.1")};
+	}
+}
@@ -0,0 +1,168 @@
+package com.monitor.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.monitor.interfaces.HostResolver;
+
+public class ResolverCacheTest {
+
+	private final AtomicLong now = new AtomicLong(1000);
+	private final List<Runnable> refreshes = new ArrayList<>();
+	private StubResolver stub;
+	private ResolverCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		stub = new StubResolver();
+		stub.hosts.put("db.example", InetAddress.getByAddress("db.example", new byte[] {10, 0, 0, 1}));
+		//TTL 1000ms, negative TTL 200ms, refresh after 800ms, refreshes run when the test says so
+		cache = new ResolverCache(stub, 1000, 200, 0.8, refreshes::add, now::get);
+	}
+
+	@Test
+	public void cachesUntilTtlExpires() throws Exception {
+		InetAddress[] first = cache.resolve("db.example");
+		assertSame(first, cache.resolve("DB.example"));
+		assertEquals(1, stub.lookups);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		now.addAndGet(1000);
+		cache.resolve("db.example");
+		assertEquals(2, stub.lookups);
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void resolveIfKnownNeverAsksTheDelegate() throws Exception {
+		assertNull(cache.resolveIfKnown("db.example"));
+		assertEquals(0, stub.lookups);
+		InetAddress[] resolved = cache.resolve("db.example");
+		assertSame(resolved, cache.resolveIfKnown("db.example"));
+		now.addAndGet(1000);
+		assertNull(cache.resolveIfKnown("db.example"));
+		assertEquals(1, stub.lookups);
+		try {
+			cache.resolve("unknown.example");
+			fail("Unknown host resolved");
+		} catch (UnknownHostException e) {
+			//expected
+		}
+		try {
+			cache.resolveIfKnown("unknown.example");
+			fail("Unknown host known");
+		} catch (UnknownHostException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void refreshesAheadOfExpiryInBackground() throws Exception {
+		cache.resolve("db.example");
+		now.addAndGet(850);
+		stub.hosts.put("db.example", InetAddress.getByAddress("db.example", new byte[] {10, 0, 0, 2}));
+		//Served from cache, refresh is only scheduled
+		assertEquals("10.0.0.1", cache.resolve("db.example")[0].getHostAddress());
+		assertEquals("10.0.0.1", cache.resolve("db.example")[0].getHostAddress());
+		assertEquals(1, refreshes.size());
+		refreshes.get(0).run();
+		assertEquals(1, cache.getRefreshes());
+
+		now.addAndGet(500);
+		assertEquals("10.0.0.2", cache.resolve("db.example")[0].getHostAddress());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void failedRefreshKeepsPreviousAddresses() throws Exception {
+		cache.resolve("db.example");
+		now.addAndGet(900);
+		stub.hosts.clear();
+		cache.resolve("db.example");
+		refreshes.get(0).run();
+		assertEquals(1, cache.getRefreshFailures());
+		assertEquals("10.0.0.1", cache.resolve("db.example")[0].getHostAddress());
+		//The next use tries the refresh again
+		assertEquals(2, refreshes.size());
+	}
+
+	@Test
+	public void expiredAndSoonestExpiringEntriesAreEvicted() throws Exception {
+		for(int i = 0; i < 20; i++) {
+			stub.hosts.put("host"+i+".example", InetAddress.getByAddress(new byte[] {10, 0, 1, (byte) i}));
+		}
+		cache = new ResolverCache(stub, 1000, 200, 0.8, refreshes::add, now::get, 10);
+		for(int i = 0; i < 10; i++) {
+			cache.resolve("host"+i+".example");
+			now.addAndGet(10);
+		}
+		assertEquals(10, cache.size());
+		//Over the maximum, the soonest expiring entries go down to 90% of it
+		cache.resolve("host10.example");
+		assertEquals(9, cache.size());
+		assertEquals(2, cache.getEvictions());
+		assertNull(cache.resolveIfKnown("host0.example"));
+		assertNull(cache.resolveIfKnown("host1.example"));
+		assertEquals("10.0.1.10", cache.resolveIfKnown("host10.example")[0].getHostAddress());
+		//Expired entries go first, and when looked up
+		now.addAndGet(1000);
+		cache.resolve("host11.example");
+		cache.resolve("host12.example");
+		assertEquals(2, cache.size());
+		now.addAndGet(1000);
+		assertNull(cache.resolveIfKnown("host11.example"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void remembersUnknownHostsForNegativeTtl() throws Exception {
+		assertUnknown("nowhere.example");
+		assertUnknown("nowhere.example");
+		assertEquals(1, stub.lookups);
+		assertEquals(1, cache.getNegativeHits());
+		now.addAndGet(200);
+		assertUnknown("nowhere.example");
+		assertEquals(2, stub.lookups);
+	}
+
+	private void assertUnknown(String host) {
+		try {
+			cache.resolve(host);
+			fail("Expected unknown host "+host);
+		} catch (UnknownHostException e) {
+			//expected
+		}
+	}
+
+	/**
+	 * Local resolver stand-in
+	 */
+	private static class StubResolver implements HostResolver {
+		final Map<String, InetAddress> hosts = new HashMap<>();
+		int lookups;
+
+		@Override
+		public InetAddress[] resolve(String host) throws UnknownHostException {
+			lookups++;
+			InetAddress address = hosts.get(host);
+			if(address == null) {
+				throw new UnknownHostException(host);
+			}
+			return new InetAddress[] {address};
+		}
+	}
+}
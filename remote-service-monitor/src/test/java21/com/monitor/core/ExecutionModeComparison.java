@@ -0,0 +1,116 @@
+package com.monitor.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.monitor.interfaces.MonitorEngine;
+import com.monitor.model.Service;
+
+/**
+ * Compares memory and CPU of the execution modes.
+ * Monitors the given number of services against a loopback ServerSocket
+ * and reports threads, process CPU time, heap and resident memory.
+ * Usage: ExecutionModeComparison MODE SERVICES SECONDS
+ * e.g. ExecutionModeComparison VIRTUAL_THREAD 10000 30
+ * @author akshayhiremath
+ *
+ */
+public class ExecutionModeComparison {
+
+	public static void main(String[] args) throws Exception {
+		ExecutionMode mode = ExecutionMode.valueOf(args[0]);
+		int services = Integer.parseInt(args[1]);
+		int seconds = Integer.parseInt(args[2]);
+		PrintStream report = System.out;
+		//The checks log every attempt, keep the report readable
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+		System.setOut(discard);
+		System.setErr(discard);
+
+		ServerSocket server = new ServerSocket(0, 4096, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(() -> {
+			while(!server.isClosed()) {
+				try (Socket socket = server.accept()) {
+					//Connection accepted, nothing to serve
+				} catch (IOException e) {
+					//Server closed
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		ServiceMonitorConfig config = new ServiceMonitorConfig();
+		MonitorEngine engine;
+		switch(mode) {
+		case THREAD_PER_SERVICE:
+			engine = new ThreadPerServiceMonitorEngine(config);
+			break;
+		case VIRTUAL_THREAD:
+			engine = new VirtualThreadMonitorEngine(config);
+			break;
+		case NIO:
+			engine = new NioMonitorEngine(config);
+			break;
+		default:
+			engine = new ScheduledMonitorEngine(config);
+		}
+		engine.start();
+		List<Service> monitored = new ArrayList<>();
+		for(int i = 0; i < services; i++) {
+			Service service = new Service(server.getInetAddress().getHostAddress(), server.getLocalPort());
+			monitored.add(service);
+			engine.monitor(service);
+		}
+
+		//Warm up for half of the time, measure the other half
+		Thread.sleep(seconds * 500L);
+		com.sun.management.OperatingSystemMXBean os =
+				(com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+		long cpuStart = os.getProcessCpuTime();
+		long wallStart = System.nanoTime();
+		Thread.sleep(seconds * 500L);
+		double cpuPercent = 100.0 * (os.getProcessCpuTime() - cpuStart) / (System.nanoTime() - wallStart);
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		System.gc();
+		long heapMb = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20;
+
+		report.printf("mode=%s services=%d platformThreads=%d peakThreads=%d cpu=%.1f%% heapUsedMb=%d rssMb=%d%n",
+				mode, services, threads.getThreadCount(), threads.getPeakThreadCount(), cpuPercent, heapMb, residentMb());
+
+		monitored.forEach(s -> s.setContinuePolling(false));
+		engine.shutdown();
+		server.close();
+		System.exit(0);
+	}
+
+	/**
+	 * Resident set size of the process, -1 where /proc is not available
+	 */
+	private static long residentMb() {
+		try {
+			for(String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+				if(line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) >> 10;
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			//Not on Linux
+		}
+		return -1;
+	}
+}